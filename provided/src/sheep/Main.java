@@ -1,13 +1,15 @@
 package sheep;
 
+import sheep.core.SheetUpdate;
 import sheep.expression.CoreFactory;
 import sheep.expression.ExpressionFactory;
 import sheep.features.Feature;
 import sheep.fun.FunException;
 import sheep.games.life.Life;
 import sheep.games.tetros.Tetros;
+import sheep.parsing.CachingParser;
 import sheep.parsing.Parser;
-import sheep.parsing.SimpleParser;
+import sheep.parsing.PrattParser;
 import sheep.sheets.GameSheet;
 import sheep.sheets.Sheet;
 import sheep.ui.UI;
@@ -19,6 +21,8 @@ import sheep.games.random.RandomFreeCell;
 
 import sheep.features.files.*;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -31,12 +35,14 @@ public class Main {
 
     /**
      * Start the spreadsheet program.
-     * @param args Parameters to the program, currently not supported.
+     * Incremental calculation is enabled by the system property {@code sheep.incremental}.
+     * @param args Optionally, the path of a snapshot to recover the sheet from
+     *             and journal its updates to, see {@link SheetJournal}.
      * @throws FunException If a pre-populator fails to insert an expression.
      */
     public static void main(String[] args) throws FunException {
         ExpressionFactory factory = new CoreFactory();
-        Parser parser = new SimpleParser(factory);
+        Parser parser = new CachingParser(new PrattParser(factory));
 
         Sheet sheet = new GameSheet(parser, new HashMap<>(),
                 factory.createEmpty(),30, 30);
@@ -44,16 +50,44 @@ public class Main {
         Feature[] features = new Feature[]{
                 new FileLoading(sheet),
                 new FileSaving(sheet),
+                new AutoSave(sheet),
+                new CsvFiles(sheet),
                 new Life(sheet),
                 new Snake(sheet, new RandomFreeCell(sheet, new Random())),
                 new Tetros(sheet, new RandomTetrosTile(new Random()))
         };
 
 
-        UI ui = new GUI(sheet, sheet);
+        // games, saving and exporting read values while a calculation is in progress,
+        // so stale values are only shown when asked for
+        sheet.setIncrementalCalculation(Boolean.getBoolean("sheep.incremental"));
+        SheetUpdate updater = sheet;
+        SheetJournal journal = null;
+        if (args.length > 0) {
+            try {
+                journal = SheetJournal.open(sheet, Paths.get(args[0]));
+                updater = journal;
+            } catch (IOException e) {
+                System.err.println("Unable to open journal: " + e.getMessage());
+            }
+        }
+        GUI gui = new GUI(sheet, updater);
+        gui.calculateIncrementally(sheet);
+        UI ui = gui;
         for (Feature feature : features) {
             feature.register(ui);
         }
+        if (journal != null) {
+            journal.register(ui);
+            SheetJournal opened = journal;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    System.err.println("Unable to close journal: " + e.getMessage());
+                }
+            }));
+        }
 
         ui.render();
     }
@@ -0,0 +1,15 @@
+package sheep.core;
+
+/**
+ * Callback used to visit cells of a sheet, see {@link SheetView#forEachOccupied(CellVisitor)}.
+ */
+@FunctionalInterface
+public interface CellVisitor {
+    /**
+     * Called for each visited cell.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     */
+    void visit(int row, int column);
+}
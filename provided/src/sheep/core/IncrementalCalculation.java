@@ -0,0 +1,33 @@
+package sheep.core;
+
+/**
+ * A spreadsheet which brings the values of its cells up to date in bounded steps,
+ * so that a user interface may interleave calculation with its own events.
+ */
+public interface IncrementalCalculation {
+    /**
+     * Whether any cell of the spreadsheet is waiting to be calculated.
+     *
+     * @return True iff the value of some cell is out of date.
+     */
+    boolean isCalculating();
+
+    /**
+     * Whether the cell is waiting to be calculated.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return True iff the value of the cell is out of date.
+     */
+    boolean isCalculating(int row, int column);
+
+    /**
+     * Calculate cells which are waiting to be calculated until
+     * none are waiting or the time budget is spent.
+     * The time budget may be exceeded by the calculation of a single cell.
+     *
+     * @param budgetNanos The time, in nanoseconds, after which no further cells are calculated.
+     * @return True iff cells are still waiting to be calculated.
+     */
+    boolean calculate(long budgetNanos);
+}
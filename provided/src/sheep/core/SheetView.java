@@ -37,4 +37,50 @@ public interface SheetView {
      * @return A {@link ViewElement} that details how to render the cell's formula.
      */
     ViewElement formulaAt(int row, int column);
+
+    /**
+     * Render the values of a rectangular range of cells into the given buffer.
+     * <p>
+     * The content of the cell at ({@code row + r}, {@code column + c}) is stored
+     * at index {@code r * columns + c} of the buffer,
+     * and must equal the content of {@link #valueAt(int, int)} for that cell.
+     * Implementations may override this method to avoid allocating a
+     * {@link ViewElement} for every cell.
+     *
+     * @param row The row index of the top-left cell of the range.
+     * @param column The column index of the top-left cell of the range.
+     * @param rows The number of rows in the range.
+     * @param columns The number of columns in the range.
+     * @param contents The buffer to store the rendered values in.
+     * @requires the range is within the bounds of the spreadsheet
+     * @requires contents.length &geq; rows * columns
+     */
+    default void renderValues(int row, int column, int rows, int columns, String[] contents) {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                contents[r * columns + c] = valueAt(row + r, column + c).getContent();
+            }
+        }
+    }
+
+    /**
+     * Visit every occupied cell of the spreadsheet in row-major order.
+     * <p>
+     * A cell is occupied if its formula is not the default formula of the spreadsheet.
+     * Cells which are not visited are guaranteed to hold the default formula.
+     * By default, the default formula is assumed to be empty and every cell is inspected,
+     * implementations which track their occupied cells should override this method
+     * so that visiting is proportional to the number of occupied cells.
+     *
+     * @param visitor The callback to invoke with the row and column of each occupied cell.
+     */
+    default void forEachOccupied(CellVisitor visitor) {
+        for (int row = 0; row < getRows(); row++) {
+            for (int column = 0; column < getColumns(); column++) {
+                if (!formulaAt(row, column).getContent().isEmpty()) {
+                    visitor.visit(row, column);
+                }
+            }
+        }
+    }
 }
@@ -4,6 +4,7 @@ import sheep.expression.arithmetic.Arithmetic;
 import sheep.expression.basic.Constant;
 import sheep.expression.basic.Nothing;
 import sheep.expression.basic.Reference;
+import sheep.expression.function.FunctionRegistry;
 
 /**
  * An expression factory for the core expressions.
@@ -12,6 +13,25 @@ import sheep.expression.basic.Reference;
  * @stage1
  */
 public class CoreFactory implements ExpressionFactory {
+    private final FunctionRegistry functions;
+
+    /**
+     * Construct a factory of the core expressions and the standard functions,
+     * see {@link FunctionRegistry#standard()}.
+     */
+    public CoreFactory() {
+        this(FunctionRegistry.standard());
+    }
+
+    /**
+     * Construct a factory of the core expressions and the given functions.
+     *
+     * @param functions Functions which may be created by {@link #createOperator(String, Object[])}.
+     */
+    public CoreFactory(FunctionRegistry functions) {
+        this.functions = functions;
+    }
+
     /**
      * An instance of {@link Reference} that stores the given identifier.
      *
@@ -56,6 +76,13 @@ public class CoreFactory implements ExpressionFactory {
         return arguments;
     }
 
+    private static boolean isOperator(String name) {
+        return switch (name) {
+            case "+", "-", "*", "/", "<", "=" -> true;
+            default -> false;
+        };
+    }
+
     /**
      * An instance of {@link Arithmetic} based on the given operator name.
      * <p>
@@ -68,21 +95,26 @@ public class CoreFactory implements ExpressionFactory {
      *     <li>&lt;, or</li>
      *     <li>=;</li>
      * </ul>
-     * and create the appropriate {@link Arithmetic} subclass.
-     * If the operator name is not listed above, {@link InvalidExpression} should be thrown.
+     * and create the appropriate {@link Arithmetic} subclass,
+     * which evaluates one or two arguments without an array of their values.
+     * Any other name is looked up in the registered functions,
+     * which may accept no arguments.
+     * If the name is neither an operator nor a registered function,
+     * {@link InvalidExpression} should be thrown.
      *
      * @param name An identifier for the operator, e.g. +, *.
      * @param args A list of {@link Expression} instances as arguments to the {@link Arithmetic} instance.
      * @return An appropriate operator expression.
-     * @throws InvalidExpression If the operator name is unknown or
+     * @throws InvalidExpression If the operator name is unknown,
+     * if a function cannot be called with the amount of arguments given, or
      * if any of the given {@link Object} arguments are not subclasses of {@link Expression} or
-     * if there are no arguments given.
+     * if there are no arguments given to an operator.
      * @hint The {@code instanceof} operator can determine if an instance is a subclass of a class.
      * @stage2
      */
     @Override
     public Expression createOperator(String name, Object[] args) throws InvalidExpression {
-        if (args.length < 1) {
+        if (args.length < 1 && (isOperator(name) || !functions.contains(name))) {
             throw new InvalidExpression("No arguments provided");
         }
         return switch (name) {
@@ -92,8 +124,12 @@ public class CoreFactory implements ExpressionFactory {
             case "/" -> Arithmetic.divide(castArguments(name, args));
             case "<" -> Arithmetic.less(castArguments(name, args));
             case "=" -> Arithmetic.equal(castArguments(name, args));
-            default ->
-                throw new InvalidExpression("Unknown operator: " + name);
+            default -> {
+                if (!functions.contains(name)) {
+                    throw new InvalidExpression("Unknown operator: " + name);
+                }
+                yield functions.create(name, castArguments(name, args));
+            }
         };
     }
 }
@@ -71,6 +71,28 @@ public abstract class Expression {
         return false;
     }
 
+    /**
+     * True if the expression is a numeric value,
+     * that is, calling {@link #value()} will not throw a {@link TypeError}.
+     * The abstract class, expression, should return false by default.
+     * The method will be overwritten by subclasses that are numeric values.
+     * @return true if the expression is a numeric value.
+     */
+    public boolean isNumeric() {
+        return false;
+    }
+
+    /**
+     * True if the expression is an error value, such as division by zero,
+     * which propagates through the expressions that use it instead of being thrown.
+     * The abstract class, expression, should return false by default.
+     * The method will be overwritten by subclasses that are errors.
+     * @return true if the expression is an error value.
+     */
+    public boolean isError() {
+        return false;
+    }
+
     /**
      * The string representation of an expression when rendered within a cell.
      * @return the string representation of the expression.
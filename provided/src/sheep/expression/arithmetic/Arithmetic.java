@@ -3,10 +3,14 @@ package sheep.expression.arithmetic;
 import sheep.expression.basic.Constant;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
+import sheep.expression.basic.ErrorValue;
 import sheep.expression.basic.Nothing;
+import sheep.expression.function.BinaryFunction;
+import sheep.expression.function.UnaryFunction;
 
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
 
@@ -14,11 +18,19 @@ import java.util.StringJoiner;
 /**
  * An arithmetic expression.
  * Performs arithmetic operations on a sequence of sub-expressions.
+ * <p>
+ * Operations may also supply functions of exactly one and two numbers,
+ * like the calls of a {@link sheep.expression.function.FunctionRegistry},
+ * which are applied to expressions of that many arguments
+ * without collecting their values into an array for {@link #perform(long[])}.
  * @stage2
  */
 public abstract class Arithmetic extends Expression {
     private final String operator;
     private final Expression[] arguments;
+    /* The operation over exactly one or two numbers, or null to always use perform(long[]). */
+    private final UnaryFunction unary;
+    private final BinaryFunction binary;
 
     /**
      * Construct a new arithmetic expression.
@@ -28,8 +40,27 @@ public abstract class Arithmetic extends Expression {
      * @requires arguments.length &gt; 0
      */
     protected Arithmetic(String operator, Expression[] arguments) {
+        this(operator, arguments, null, null);
+    }
+
+    /**
+     * Construct a new arithmetic expression with dedicated implementations
+     * of the operation over one and two numbers, which must give the same results as
+     * {@link #check(long[])} and {@link #perform(long[])}, except that an operation
+     * which cannot be performed throws {@link ArithmeticException}, e.g. division by zero.
+     *
+     * @param operator The name of the arithmetic operation, e.g. plus.
+     * @param arguments A sequence of sub-expressions to perform the operation upon.
+     * @param unary The operation over a single number.
+     * @param binary The operation over two numbers.
+     * @requires arguments.length &gt; 0
+     */
+    protected Arithmetic(String operator, Expression[] arguments,
+                         UnaryFunction unary, BinaryFunction binary) {
         this.operator = operator;
         this.arguments = arguments;
+        this.unary = unary;
+        this.binary = binary;
     }
 
     /**
@@ -127,20 +158,74 @@ public abstract class Arithmetic extends Expression {
      * <p>
      * During evaluation the arithmetic expression should evaluate each sub-expression
      * and convert the resulting values to numeric values to perform the operation.
+     * <p>
+     * If a sub-expression evaluates to an {@link ErrorValue}, the first such error is the result.
+     * If a sub-expression evaluates to any other value that is not numeric,
+     * the result is {@link ErrorValue#TYPE}.
+     * If the operation cannot be performed on the numeric values, e.g. division by zero,
+     * the result is the error reported by {@link #check(long[])}.
      *
      * @param state A mapping of references to the expression they hold.
-     * @return A constant expression of the result.
-     * @throws TypeError If any of the sub-expressions cannot be converted to a numeric value.
+     * @return A constant expression of the result, or an error value.
+     * @throws TypeError If evaluating a sub-expression throws a type error.
      */
     @Override
     public Expression value(Map<String, Expression> state) throws TypeError {
+        if (arguments.length == 1 && unary != null) {
+            Expression value = arguments[0].value(state);
+            if (!value.isNumeric()) {
+                return value.isError() ? value : ErrorValue.TYPE;
+            }
+            return new Constant(unary.apply(value.value()));
+        }
+        if (arguments.length == 2 && binary != null) {
+            return valueOfBinary(state);
+        }
         long[] values = new long[arguments.length];
         for (int i = 0; i < arguments.length; i++) {
-            values[i] = arguments[i].value(state).value();
+            Expression value = arguments[i].value(state);
+            if (value.isError()) {
+                return value;
+            }
+            if (!value.isNumeric()) {
+                return ErrorValue.TYPE;
+            }
+            values[i] = value.value();
+        }
+        Optional<ErrorValue> error = check(values);
+        if (error.isPresent()) {
+            return error.get();
         }
         return new Constant(perform(values));
     }
 
+    private Expression valueOfBinary(Map<String, Expression> state) throws TypeError {
+        Expression first = arguments[0].value(state);
+        if (!first.isNumeric()) {
+            return first.isError() ? first : ErrorValue.TYPE;
+        }
+        Expression second = arguments[1].value(state);
+        if (!second.isNumeric()) {
+            return second.isError() ? second : ErrorValue.TYPE;
+        }
+        try {
+            return new Constant(binary.apply(first.value(), second.value()));
+        } catch (ArithmeticException e) {
+            return ErrorValue.DIV0;
+        }
+    }
+
+    /**
+     * Check whether the arithmetic operation can be performed over a list of numbers.
+     * By default, every operation can be performed.
+     *
+     * @param arguments A list of numbers to perform the operation upon.
+     * @return The error resulting from the operation, if it cannot be performed.
+     */
+    protected Optional<ErrorValue> check(long[] arguments) {
+        return Optional.empty();
+    }
+
     /**
      * Evaluate the expression to a numeric value.
      * For arithmetic expressions, a type error will always be thrown.
@@ -1,6 +1,9 @@
 package sheep.expression.arithmetic;
 
 import sheep.expression.Expression;
+import sheep.expression.basic.ErrorValue;
+
+import java.util.Optional;
 
 /**
  * A division operation.
@@ -15,7 +18,23 @@ class Divide extends Arithmetic {
      * @requires arguments.length &gt; 0
      */
     public Divide(Expression[] arguments) {
-        super("/", arguments);
+        super("/", arguments, argument -> argument, (first, second) -> first / second);
+    }
+
+    /**
+     * Division cannot be performed if any divisor is zero.
+     *
+     * @param arguments A list of numbers to perform the operation upon.
+     * @return {@link ErrorValue#DIV0} if any number after the first is zero.
+     */
+    @Override
+    protected Optional<ErrorValue> check(long[] arguments) {
+        for (int i = 1; i < arguments.length; i++) {
+            if (arguments[i] == 0) {
+                return Optional.of(ErrorValue.DIV0);
+            }
+        }
+        return Optional.empty();
     }
 
     /**
@@ -15,7 +15,7 @@ class Equal extends Arithmetic {
      * @requires arguments.length &gt; 0
      */
     public Equal(Expression[] arguments) {
-        super("=", arguments);
+        super("=", arguments, argument -> 1, (first, second) -> first == second ? 1 : 0);
     }
 
     /**
@@ -15,7 +15,7 @@ class Less extends Arithmetic {
      * @requires arguments.length &gt; 0
      */
     public Less(Expression[] arguments) {
-        super("<", arguments);
+        super("<", arguments, argument -> 1, (first, second) -> first < second ? 1 : 0);
     }
 
     /**
@@ -15,7 +15,7 @@ class Minus extends Arithmetic {
      * @requires arguments.length &gt; 0
      */
     public Minus(Expression[] arguments) {
-        super("-", arguments);
+        super("-", arguments, argument -> argument, (first, second) -> first - second);
     }
 
     /**
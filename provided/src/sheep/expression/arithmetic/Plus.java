@@ -15,7 +15,7 @@ class Plus extends Arithmetic {
      * @requires arguments.length &gt; 0
      */
     public Plus(Expression[] arguments) {
-        super("+", arguments);
+        super("+", arguments, argument -> argument, Long::sum);
     }
 
     /**
@@ -15,7 +15,7 @@ class Times extends Arithmetic {
      * @requires arguments.length &gt; 0
      */
     public Times(Expression[] arguments) {
-        super("*", arguments);
+        super("*", arguments, argument -> argument, (first, second) -> first * second);
     }
 
     /**
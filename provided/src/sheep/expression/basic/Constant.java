@@ -90,7 +90,7 @@ public class Constant extends Expression {
      */
     @Override
     public Set<String> dependencies() {
-        return new HashSet<>();
+        return Set.of();
     }
 
     /**
@@ -121,6 +121,16 @@ public class Constant extends Expression {
         return number;
     }
 
+    /**
+     * Returns whether the expression is a numeric value.
+     * For the constant expression, this must return true.
+     * @return true
+     */
+    @Override
+    public boolean isNumeric() {
+        return true;
+    }
+
     /**
      * The string representation of an expression when rendered within a cell.
      * For constants, this is the number as a string.
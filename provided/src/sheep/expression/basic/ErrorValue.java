@@ -0,0 +1,115 @@
+package sheep.expression.basic;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The value of an expression which could not be evaluated to a number, e.g. #DIV0.
+ * <p>
+ * Errors are ordinary values: an expression that uses an error evaluates to that error,
+ * so errors propagate through arithmetic without throwing and are rendered within the cell.
+ */
+public class ErrorValue extends Expression {
+    /** An operand could not be converted to a numeric value. */
+    public static final ErrorValue TYPE = new ErrorValue("#TYPE");
+    /** A number was divided by zero. */
+    public static final ErrorValue DIV0 = new ErrorValue("#DIV0");
+
+    private final String code;
+
+    /**
+     * Construct a new error value.
+     *
+     * @param code The code rendered for the error, e.g. #TYPE.
+     */
+    public ErrorValue(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Returns the code of the error.
+     * @return the code of the error.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Dependencies of the error value.
+     * Error values have no dependencies.
+     *
+     * @return An empty set to represent no dependencies.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return Set.of();
+    }
+
+    /**
+     * The result of evaluating this expression.
+     * An error value cannot be further evaluated, therefore this method will return itself.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return Itself.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) {
+        return this;
+    }
+
+    /**
+     * Evaluate the expression to a numeric value.
+     * For error values, a type error will always be thrown.
+     * @return Nothing will be returned as a {@link TypeError} is always thrown.
+     * @throws TypeError Will always be thrown by {@link ErrorValue}.
+     */
+    @Override
+    public long value() throws TypeError {
+        throw new TypeError();
+    }
+
+    /**
+     * @return true, as error values are errors.
+     */
+    @Override
+    public boolean isError() {
+        return true;
+    }
+
+    /**
+     * The string representation of an error when rendered within a cell is its code.
+     * @return the code of the error.
+     */
+    @Override
+    public String render() {
+        return code;
+    }
+
+    /**
+     * The string representation of the error, e.g. "ERROR(#DIV0)".
+     * @return the string representation of the error.
+     */
+    @Override
+    public String toString() {
+        return "ERROR(" + code + ")";
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object == null || getClass() != object.getClass()) {
+            return false;
+        }
+        return code.equals(((ErrorValue) object).code);
+    }
+
+    @Override
+    public int hashCode() {
+        return code.hashCode();
+    }
+}
@@ -18,7 +18,7 @@ public class Nothing extends Expression {
      */
     @Override
     public Set<String> dependencies() {
-        return new HashSet<>();
+        return Set.of();
     }
 
     /**
@@ -0,0 +1,55 @@
+package sheep.expression.function;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A call of a function with two arguments.
+ */
+class BinaryCall extends FunctionCall {
+    private final BinaryFunction function;
+    private final Expression first;
+    private final Expression second;
+
+    BinaryCall(String name, BinaryFunction function, Expression first, Expression second) {
+        super(name);
+        this.function = function;
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public Expression[] getArguments() {
+        return new Expression[]{first, second};
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        Set<String> dependencies = new HashSet<>(first.dependencies());
+        dependencies.addAll(second.dependencies());
+        return dependencies;
+    }
+
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        Expression firstValue = first.value(state);
+        if (!firstValue.isNumeric()) {
+            return error(firstValue);
+        }
+        Expression secondValue = second.value(state);
+        if (!secondValue.isNumeric()) {
+            return error(secondValue);
+        }
+        try {
+            return new Constant(function.apply(firstValue.value(), secondValue.value()));
+        } catch (ArithmeticException e) {
+            return ErrorValue.DIV0;
+        }
+    }
+}
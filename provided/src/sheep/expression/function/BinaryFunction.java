@@ -0,0 +1,16 @@
+package sheep.expression.function;
+
+/**
+ * Implementation of a function of two numbers, see {@link FunctionRegistry}.
+ */
+@FunctionalInterface
+public interface BinaryFunction {
+    /**
+     * Apply the function.
+     *
+     * @param first The first argument of the function.
+     * @param second The second argument of the function.
+     * @return The result of the function.
+     */
+    long apply(long first, long second);
+}
@@ -0,0 +1,92 @@
+package sheep.expression.function;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.ErrorValue;
+
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * A call of a named function registered in a {@link FunctionRegistry}.
+ * <p>
+ * Calls with one, two or three arguments are represented by dedicated subclasses
+ * that store their arguments in fields and apply a function of exactly that arity,
+ * so evaluating them never allocates an array of arguments.
+ * Calls with any other amount of arguments apply a {@link VariadicFunction}.
+ * <p>
+ * Like arithmetic, a call evaluates to the first error value among its arguments,
+ * to {@link ErrorValue#TYPE} if an argument is not numeric,
+ * and to {@link ErrorValue#DIV0} if the function divides by zero.
+ */
+public abstract class FunctionCall extends Expression {
+    private final String name;
+
+    /**
+     * Construct a new function call.
+     *
+     * @param name The name of the function being called.
+     */
+    protected FunctionCall(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the function being called.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The sub-expressions passed as arguments to the function.
+     */
+    public abstract Expression[] getArguments();
+
+    /**
+     * The result of a call with an argument that evaluated to a value that is not numeric.
+     *
+     * @param value The value of the argument.
+     * @return The argument if it is an error value, otherwise {@link ErrorValue#TYPE}.
+     */
+    protected static Expression error(Expression value) {
+        return value.isError() ? value : ErrorValue.TYPE;
+    }
+
+    /**
+     * Evaluate the expression to a numeric value.
+     * For function calls, a type error will always be thrown.
+     *
+     * @return Nothing will be returned as a {@link TypeError} is always thrown.
+     * @throws TypeError Will always be thrown by {@link FunctionCall}.
+     */
+    @Override
+    public long value() throws TypeError {
+        throw new TypeError();
+    }
+
+    /**
+     * The string representation of the expression when rendered within a cell.
+     *
+     * @return The string representation of the expression.
+     */
+    @Override
+    public String render() {
+        return toString();
+    }
+
+    /**
+     * The string representation of a function call is the function name
+     * followed by the rendered arguments, e.g. "MAX(A1, 4)".
+     *
+     * @return The string representation of the expression.
+     */
+    @Override
+    public String toString() {
+        StringJoiner builder = new StringJoiner(", ", name + "(", ")");
+        for (Expression argument : getArguments()) {
+            builder.add(argument.render());
+        }
+        return builder.toString();
+    }
+}
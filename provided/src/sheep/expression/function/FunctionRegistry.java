@@ -0,0 +1,190 @@
+package sheep.expression.function;
+
+import sheep.expression.Expression;
+import sheep.expression.InvalidExpression;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A collection of named functions over numbers.
+ * <p>
+ * A function may be registered with any combination of a fixed arity of one,
+ * two or three arguments, and a variadic implementation accepting a minimum
+ * amount of arguments. When a call is created, an implementation of the exact arity
+ * is preferred over the variadic implementation, so common calls are evaluated
+ * without an array of arguments.
+ * <pre>
+ * {@code
+ * FunctionRegistry functions = new FunctionRegistry()
+ *         .registerBinary("MAX", Math::max)
+ *         .registerVariadic("MAX", 1, arguments -> Arrays.stream(arguments).max().getAsLong());
+ * functions.create("MAX", new Expression[]{new Constant(1), new Constant(2)}); // MAX(1, 2)
+ * }</pre>
+ * Functions should be registered before the registry is used to create calls.
+ */
+public class FunctionRegistry {
+    private final Map<String, Overloads> functions = new HashMap<>();
+
+    /**
+     * Implementations of a single function name.
+     */
+    private static class Overloads {
+        private UnaryFunction unary;
+        private BinaryFunction binary;
+        private TernaryFunction ternary;
+        private VariadicFunction variadic;
+        private int minimum;
+    }
+
+    private Overloads overloads(String name) {
+        return functions.computeIfAbsent(name, key -> new Overloads());
+    }
+
+    /**
+     * Register the implementation of a function called with one argument.
+     *
+     * @param name The name of the function.
+     * @param function The implementation of the function.
+     * @return This registry.
+     */
+    public FunctionRegistry registerUnary(String name, UnaryFunction function) {
+        overloads(name).unary = function;
+        return this;
+    }
+
+    /**
+     * Register the implementation of a function called with two arguments.
+     *
+     * @param name The name of the function.
+     * @param function The implementation of the function.
+     * @return This registry.
+     */
+    public FunctionRegistry registerBinary(String name, BinaryFunction function) {
+        overloads(name).binary = function;
+        return this;
+    }
+
+    /**
+     * Register the implementation of a function called with three arguments.
+     *
+     * @param name The name of the function.
+     * @param function The implementation of the function.
+     * @return This registry.
+     */
+    public FunctionRegistry registerTernary(String name, TernaryFunction function) {
+        overloads(name).ternary = function;
+        return this;
+    }
+
+    /**
+     * Register the implementation of a function called with at least the minimum amount
+     * of arguments, used whenever there is no implementation of the exact arity.
+     *
+     * @param name The name of the function.
+     * @param minimum The least amount of arguments accepted by the function.
+     * @param function The implementation of the function.
+     * @return This registry.
+     */
+    public FunctionRegistry registerVariadic(String name, int minimum, VariadicFunction function) {
+        Overloads overloads = overloads(name);
+        overloads.variadic = function;
+        overloads.minimum = minimum;
+        return this;
+    }
+
+    /**
+     * Whether a function has been registered with the given name.
+     *
+     * @param name The name of the function.
+     * @return True iff a function with the name is registered.
+     */
+    public boolean contains(String name) {
+        return functions.containsKey(name);
+    }
+
+    /**
+     * Create a call to a registered function.
+     *
+     * @param name The name of the function.
+     * @param arguments The sub-expressions to pass as arguments to the function.
+     * @return An expression which calls the function.
+     * @throws InvalidExpression If no function is registered with the name,
+     * or the function cannot be called with the given amount of arguments.
+     */
+    public FunctionCall create(String name, Expression[] arguments) throws InvalidExpression {
+        Overloads overloads = functions.get(name);
+        if (overloads == null) {
+            throw new InvalidExpression("Unknown function: " + name);
+        }
+        if (arguments.length == 1 && overloads.unary != null) {
+            return new UnaryCall(name, overloads.unary, arguments[0]);
+        }
+        if (arguments.length == 2 && overloads.binary != null) {
+            return new BinaryCall(name, overloads.binary, arguments[0], arguments[1]);
+        }
+        if (arguments.length == 3 && overloads.ternary != null) {
+            return new TernaryCall(name, overloads.ternary,
+                    arguments[0], arguments[1], arguments[2]);
+        }
+        if (overloads.variadic != null && arguments.length >= overloads.minimum) {
+            return new VariadicCall(name, overloads.variadic, arguments);
+        }
+        throw new InvalidExpression("Function " + name + " cannot be called with "
+                + arguments.length + " arguments");
+    }
+
+    /**
+     * A registry of the standard function library:
+     * <ul>
+     *     <li>ABS(x), the absolute value of x,</li>
+     *     <li>SIGN(x), -1, 0 or 1 according to the sign of x,</li>
+     *     <li>MOD(x, y), the remainder of dividing x by y,</li>
+     *     <li>CLAMP(x, low, high), x limited to between low and high,</li>
+     *     <li>MIN(x, ...) and MAX(x, ...), the least and greatest arguments, and</li>
+     *     <li>SUM(...), the sum of the arguments.</li>
+     * </ul>
+     *
+     * @return A new registry containing the standard functions.
+     */
+    public static FunctionRegistry standard() {
+        return new FunctionRegistry()
+                .registerUnary("ABS", Math::abs)
+                .registerUnary("SIGN", Long::signum)
+                .registerBinary("MOD", (x, y) -> x % y)
+                .registerTernary("CLAMP", (x, low, high) -> Math.max(low, Math.min(x, high)))
+                .registerUnary("MIN", x -> x)
+                .registerBinary("MIN", Math::min)
+                .registerVariadic("MIN", 1, FunctionRegistry::minimum)
+                .registerUnary("MAX", x -> x)
+                .registerBinary("MAX", Math::max)
+                .registerVariadic("MAX", 1, FunctionRegistry::maximum)
+                .registerUnary("SUM", x -> x)
+                .registerBinary("SUM", Long::sum)
+                .registerVariadic("SUM", 0, FunctionRegistry::sum);
+    }
+
+    private static long minimum(long[] arguments) {
+        long result = arguments[0];
+        for (long argument : arguments) {
+            result = Math.min(result, argument);
+        }
+        return result;
+    }
+
+    private static long maximum(long[] arguments) {
+        long result = arguments[0];
+        for (long argument : arguments) {
+            result = Math.max(result, argument);
+        }
+        return result;
+    }
+
+    private static long sum(long[] arguments) {
+        long result = 0;
+        for (long argument : arguments) {
+            result += argument;
+        }
+        return result;
+    }
+}
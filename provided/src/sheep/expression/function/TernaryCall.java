@@ -0,0 +1,64 @@
+package sheep.expression.function;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A call of a function with three arguments.
+ */
+class TernaryCall extends FunctionCall {
+    private final TernaryFunction function;
+    private final Expression first;
+    private final Expression second;
+    private final Expression third;
+
+    TernaryCall(String name, TernaryFunction function,
+                Expression first, Expression second, Expression third) {
+        super(name);
+        this.function = function;
+        this.first = first;
+        this.second = second;
+        this.third = third;
+    }
+
+    @Override
+    public Expression[] getArguments() {
+        return new Expression[]{first, second, third};
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        Set<String> dependencies = new HashSet<>(first.dependencies());
+        dependencies.addAll(second.dependencies());
+        dependencies.addAll(third.dependencies());
+        return dependencies;
+    }
+
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        Expression firstValue = first.value(state);
+        if (!firstValue.isNumeric()) {
+            return error(firstValue);
+        }
+        Expression secondValue = second.value(state);
+        if (!secondValue.isNumeric()) {
+            return error(secondValue);
+        }
+        Expression thirdValue = third.value(state);
+        if (!thirdValue.isNumeric()) {
+            return error(thirdValue);
+        }
+        try {
+            return new Constant(function.apply(firstValue.value(),
+                    secondValue.value(), thirdValue.value()));
+        } catch (ArithmeticException e) {
+            return ErrorValue.DIV0;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package sheep.expression.function;
+
+/**
+ * Implementation of a function of three numbers, see {@link FunctionRegistry}.
+ */
+@FunctionalInterface
+public interface TernaryFunction {
+    /**
+     * Apply the function.
+     *
+     * @param first The first argument of the function.
+     * @param second The second argument of the function.
+     * @param third The third argument of the function.
+     * @return The result of the function.
+     */
+    long apply(long first, long second, long third);
+}
@@ -0,0 +1,46 @@
+package sheep.expression.function;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A call of a function with one argument.
+ */
+class UnaryCall extends FunctionCall {
+    private final UnaryFunction function;
+    private final Expression argument;
+
+    UnaryCall(String name, UnaryFunction function, Expression argument) {
+        super(name);
+        this.function = function;
+        this.argument = argument;
+    }
+
+    @Override
+    public Expression[] getArguments() {
+        return new Expression[]{argument};
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return argument.dependencies();
+    }
+
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        Expression value = argument.value(state);
+        if (!value.isNumeric()) {
+            return error(value);
+        }
+        try {
+            return new Constant(function.apply(value.value()));
+        } catch (ArithmeticException e) {
+            return ErrorValue.DIV0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package sheep.expression.function;
+
+/**
+ * Implementation of a function of one number, see {@link FunctionRegistry}.
+ */
+@FunctionalInterface
+public interface UnaryFunction {
+    /**
+     * Apply the function.
+     *
+     * @param argument The argument of the function.
+     * @return The result of the function.
+     */
+    long apply(long argument);
+}
@@ -0,0 +1,55 @@
+package sheep.expression.function;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A call of a function with any amount of arguments.
+ */
+class VariadicCall extends FunctionCall {
+    private final VariadicFunction function;
+    private final Expression[] arguments;
+
+    VariadicCall(String name, VariadicFunction function, Expression[] arguments) {
+        super(name);
+        this.function = function;
+        this.arguments = arguments.clone();
+    }
+
+    @Override
+    public Expression[] getArguments() {
+        return arguments.clone();
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        Set<String> dependencies = new HashSet<>();
+        for (Expression argument : arguments) {
+            dependencies.addAll(argument.dependencies());
+        }
+        return dependencies;
+    }
+
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        long[] values = new long[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            Expression value = arguments[i].value(state);
+            if (!value.isNumeric()) {
+                return error(value);
+            }
+            values[i] = value.value();
+        }
+        try {
+            return new Constant(function.apply(values));
+        } catch (ArithmeticException e) {
+            return ErrorValue.DIV0;
+        }
+    }
+}
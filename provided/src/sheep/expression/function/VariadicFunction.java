@@ -0,0 +1,15 @@
+package sheep.expression.function;
+
+/**
+ * Implementation of a function of any amount of numbers, see {@link FunctionRegistry}.
+ */
+@FunctionalInterface
+public interface VariadicFunction {
+    /**
+     * Apply the function.
+     *
+     * @param arguments The arguments of the function.
+     * @return The result of the function.
+     */
+    long apply(long[] arguments);
+}
@@ -0,0 +1,4 @@
+/**
+ * Named functions over numbers which may be registered with an expression factory.
+ */
+package sheep.expression.function;
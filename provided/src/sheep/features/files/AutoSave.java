@@ -0,0 +1,172 @@
+package sheep.features.files;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sheep.features.Feature;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetSnapshot;
+import sheep.ui.Prompt;
+import sheep.ui.UI;
+
+/**
+ * Feature which saves the sheet to a file whenever it changes, without blocking editing.
+ * <p>
+ * After each change made through the user interface and on each tick, if the sheet has changed
+ * since it was last saved, a {@link SheetSnapshot} of the sheet is taken and written
+ * on a background thread, in the format {@link FileSaving} would choose for the file.
+ * Taking the snapshot only copies references to the occupied cells, so the user interface
+ * thread never waits for the sheet to be encoded or written, and the snapshot is consistent
+ * as it is taken between changes, rather than while a tick updates the sheet.
+ * <p>
+ * Only one save is written at a time, and saves start at least {@link #SAVE_INTERVAL_NANOS}
+ * apart, so changes made while a save is written, or soon after, are saved together
+ * on a later tick. Each save is written to a temporary file and moved over the file,
+ * so the file always holds a complete save.
+ */
+public class AutoSave implements Feature {
+    /** The least time between the end of one save and the start of the next. */
+    public static final long SAVE_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Sheet sheet;
+    private final int compressionLevel;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sheet-autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Path path;
+    /* The modification count of the sheet when last saved, or -1 to save regardless. */
+    private volatile long savedModifications = -1;
+    private volatile boolean saving = false;
+    /* When the last save finished, by System.nanoTime(). */
+    private volatile long finished;
+    /* The exception thrown by the last save, until it is reported. */
+    private volatile IOException failure;
+
+    /**
+     * Initialises autosaving for a sheet, compressing files at the default level of
+     * {@link SheetCompression}. Autosaving starts once a file is chosen.
+     *
+     * @param sheet The sheet to save whenever it changes.
+     */
+    public AutoSave(Sheet sheet) {
+        this(sheet, SheetCompression.DEFAULT);
+    }
+
+    /**
+     * Initialises autosaving for a sheet. Autosaving starts once a file is chosen.
+     *
+     * @param sheet The sheet to save whenever it changes.
+     * @param compressionLevel The level to compress files at, see {@link SheetCompression}.
+     */
+    public AutoSave(Sheet sheet, int compressionLevel) {
+        this.sheet = sheet;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Registers autosaving in the feature menu, and checks for changes
+     * after each change made through the user interface and on each tick.
+     *
+     * @param ui the UI object to register the feature to.
+     */
+    @Override
+    public void register(UI ui) {
+        ui.addFeature("autosave", "Autosave to a file",
+            (row, column, prompt) -> this.start(prompt));
+        ui.onChange(prompt -> this.save());
+        ui.onTick(prompt -> {
+            IOException failed = failure;
+            if (failed != null) {
+                failure = null;
+                prompt.message("Autosave failed: " + failed.getMessage());
+            }
+            save();
+            return false;
+        });
+    }
+
+    /**
+     * Asks the user for a file to autosave to, then saves the sheet to it.
+     *
+     * @param prompt the prompt object the user enters input into and through which error
+     *               messages pop up.
+     */
+    public void start(Prompt prompt) {
+        try {
+            Optional<String> pathInput = prompt.ask("Autosave path:");
+            if (pathInput.isEmpty()) { //if autosave is cancelled
+                return;
+            }
+            path = Paths.get(pathInput.get());
+            savedModifications = -1;
+            finished = System.nanoTime() - SAVE_INTERVAL_NANOS;
+            save();
+        } catch (InvalidPathException e) {
+            prompt.message("Invalid path entered.");
+        }
+    }
+
+    /**
+     * Start saving the sheet in the background if it has changed since it was last saved,
+     * unless a save is being written or has just finished,
+     * in which case the changes are saved by a later call.
+     * Should be called on the thread which changes the sheet.
+     */
+    public void save() {
+        Path target = path;
+        if (target == null || saving || System.nanoTime() - finished < SAVE_INTERVAL_NANOS) {
+            return;
+        }
+        long modifications = sheet.getModificationCount();
+        if (modifications == savedModifications) {
+            return;
+        }
+        SheetSnapshot snapshot = sheet.snapshot();
+        saving = true;
+        savedModifications = modifications;
+        writer.execute(() -> write(snapshot, target));
+    }
+
+    /**
+     * @return True iff a save is being written in the background.
+     */
+    boolean isSaving() {
+        return saving;
+    }
+
+    /**
+     * @return The exception thrown by the last save, until it is reported, or null.
+     */
+    IOException getFailure() {
+        return failure;
+    }
+
+    private void write(SheetSnapshot snapshot, Path target) {
+        Path temporary = Paths.get(target + ".tmp");
+        try {
+            FileSaving.save(snapshot, target, Files.newOutputStream(temporary), compressionLevel);
+            Files.move(temporary, target,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            failure = e; //retried once the sheet changes again
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // the partial save is overwritten by the next attempt
+            }
+        } finally {
+            finished = System.nanoTime();
+            saving = false;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package sheep.features.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import sheep.sheets.CellSink;
+import sheep.sheets.CellSource;
+
+/**
+ * Reads a sheet file in the format of {@link BinarySheetFormat}.
+ * <p>
+ * The dimensions and formula table are read when the reader is opened,
+ * the cells are then supplied directly to a sheet while it loads,
+ * with literal numbers supplied as numbers rather than text.
+ */
+public class BinarySheetFileReader implements CellSource<IOException>, Closeable {
+    private final InputStream stream;
+    private final BinarySheetFormat.Decoder input;
+    private final int rows;
+    private final int columns;
+    private final String[] table;
+
+    /**
+     * Construct a reader of a binary sheet, reading its header and formula table.
+     *
+     * @param stream The stream of the sheet file, positioned at the magic number.
+     *               It is read in blocks and need not be buffered.
+     * @throws SheetFileReadingException If the stream is not a binary sheet
+     *                                   of a supported version, or is malformed.
+     * @throws IOException If the stream cannot be read.
+     */
+    public BinarySheetFileReader(InputStream stream) throws IOException {
+        this.stream = stream;
+        this.input = new BinarySheetFormat.Decoder(stream);
+        for (byte expected : BinarySheetFormat.MAGIC) {
+            if (input.readByte() != expected) {
+                throw new SheetFileReadingException("Not a binary sheet file");
+            }
+        }
+        int version = input.readByte();
+        if (version != BinarySheetFormat.VERSION) {
+            throw new SheetFileReadingException("Unsupported sheet file version " + version);
+        }
+        rows = input.readInt(Integer.MAX_VALUE);
+        columns = input.readInt(Integer.MAX_VALUE);
+        if (rows == 0 || columns == 0) {
+            throw new SheetFileReadingException("Cannot read dimensions of sheet file");
+        }
+        int formulas = input.readInt(Integer.MAX_VALUE);
+        // the table grows as it is read, so a malformed size cannot allocate a huge table
+        List<String> read = new ArrayList<>();
+        for (int index = 0; index < formulas; index++) {
+            read.add(input.readString(input.readInt(Integer.MAX_VALUE)));
+        }
+        table = read.toArray(new String[0]);
+    }
+
+    /**
+     * Open a binary sheet file and read its header and formula table.
+     *
+     * @param path The path of the sheet file.
+     * @return A reader of the sheet file, which must be closed.
+     * @throws SheetFileReadingException If the file is not a binary sheet of a supported version.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public static BinarySheetFileReader open(Path path) throws IOException {
+        InputStream stream = Files.newInputStream(path);
+        try {
+            return new BinarySheetFileReader(stream);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The amount of rows of the sheet in the file.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The amount of columns of the sheet in the file.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Pass every cell of the file to the sink.
+     *
+     * @param sink The callback to pass each cell to.
+     * @throws SheetFileReadingException If the cells are malformed or outside the dimensions.
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public void supply(CellSink sink) throws IOException {
+        long cells = input.readVarint();
+        int row = 0;
+        int nextColumn = 0;
+        for (long cell = 0; cell < cells; cell++) {
+            int rowDelta = input.readInt(rows - 1 - row);
+            row += rowDelta;
+            int tagged = input.readInt(2L * columns - 1);
+            int tag = tagged & 1;
+            int column = (tagged >>> 1) + (rowDelta == 0 ? nextColumn : 0);
+            if (column >= columns) {
+                throw new SheetFileReadingException("Cell outside of sheet in file");
+            }
+            if (tag == BinarySheetFormat.NUMBER) {
+                sink.acceptNumber(row, column, BinarySheetFormat.unzigzag(input.readVarint()));
+            } else {
+                sink.accept(row, column, table[input.readInt(table.length - 1)]);
+            }
+            nextColumn = column + 1;
+        }
+    }
+
+    /**
+     * Close the underlying file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
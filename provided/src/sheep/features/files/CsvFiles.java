@@ -0,0 +1,178 @@
+package sheep.features.files;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import sheep.features.Feature;
+import sheep.sheets.Sheet;
+import sheep.ui.Prompt;
+import sheep.ui.UI;
+
+/**
+ * Feature which imports and exports files of comma separated values, see {@link CsvReader}
+ * and {@link CsvWriter}, on a worker thread, see {@link FileTask}.
+ * <p>
+ * The delimiter of fields is asked along with the path, and is the delimiter
+ * this feature was initialised with if none is given. A tab may be entered as {@code \t}.
+ */
+public class CsvFiles implements Feature {
+    private final Sheet activeSheet;
+    private final char delimiter;
+    /* The import or export in progress, if any. */
+    private FileTask task;
+
+    /**
+     * Initialises importing and exporting for a sheet, separating fields with commas by default.
+     *
+     * @param sheet the sheet to import to and export from.
+     */
+    public CsvFiles(Sheet sheet) {
+        this(sheet, CsvReader.DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Initialises importing and exporting for a sheet.
+     *
+     * @param sheet the sheet to import to and export from.
+     * @param delimiter the character separating fields if the user does not give one.
+     */
+    public CsvFiles(Sheet sheet, char delimiter) {
+        this.activeSheet = sheet;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Registers importing, exporting and cancelling either in the feature menu,
+     * and reports their progress on each tick.
+     *
+     * @param ui the UI object to register the feature to.
+     */
+    @Override
+    public void register(UI ui) {
+        ui.addFeature("import-csv", "Import a CSV file",
+            (row, column, prompt) -> this.importCsv(prompt));
+        ui.addFeature("export-csv", "Export to a CSV file",
+            (row, column, prompt) -> this.exportCsv(prompt));
+        ui.addFeature("cancel-csv", "Cancel importing or exporting a CSV file",
+            (row, column, prompt) -> this.cancel());
+        ui.onTick(prompt -> this.report(ui, prompt));
+    }
+
+    /**
+     * Starts importing a CSV file specified by the user into the sheet,
+     * replacing its cells and dimensions once the whole file is read.
+     *
+     * @param prompt the prompt object the user enters input into and through which error
+     *               messages pop up.
+     */
+    public void importCsv(Prompt prompt) {
+        if (task != null) {
+            prompt.message("A CSV file is already being imported or exported.");
+            return;
+        }
+        try {
+            Optional<String[]> input = prompt.askMany(new String[]{
+                "CSV path:", "Delimiter (default " + describe(delimiter) + "):"});
+            if (input.isEmpty()) {
+                return;
+            }
+            Path path = Paths.get(input.get()[0]);
+            task = FileTask.importCsv(activeSheet, path, parseDelimiter(input.get()[1]));
+        } catch (InvalidPathException e) {
+            prompt.message("Invalid path entered.");
+        } catch (IllegalArgumentException e) {
+            prompt.message(e.getMessage());
+        } catch (IOException e) {
+            prompt.message("An IOException was thrown. Type:" + e.getClass().getName());
+        }
+    }
+
+    /**
+     * Starts exporting a snapshot of the sheet to a CSV file specified by the user,
+     * writing either the values or the formulas of the cells.
+     *
+     * @param prompt the prompt object the user enters input into and through which error
+     *               messages pop up.
+     */
+    public void exportCsv(Prompt prompt) {
+        if (task != null) {
+            prompt.message("A CSV file is already being imported or exported.");
+            return;
+        }
+        try {
+            Optional<String[]> input = prompt.askMany(new String[]{
+                "CSV path:", "Delimiter (default " + describe(delimiter) + "):"});
+            if (input.isEmpty()) {
+                return;
+            }
+            Path path = Paths.get(input.get()[0]);
+            char chosen = parseDelimiter(input.get()[1]);
+            boolean values = prompt.askYesNo("Export values? (otherwise formulas are exported)");
+            task = FileTask.exportCsv(activeSheet.snapshot(), path, chosen, values);
+        } catch (InvalidPathException e) {
+            prompt.message("Invalid path entered.");
+        } catch (IllegalArgumentException e) {
+            prompt.message(e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels the import or export in progress. A cancelled import leaves the sheet as it was,
+     * and a cancelled export leaves any existing file as it was.
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    private char parseDelimiter(String input) {
+        if (input == null || input.isEmpty()) {
+            return delimiter;
+        }
+        if (input.equals("\\t")) {
+            return '\t';
+        }
+        char chosen = input.charAt(0);
+        if (input.length() > 1 || chosen > 0x7f || chosen == '"'
+                || chosen == '\r' || chosen == '\n') {
+            throw new IllegalArgumentException("Invalid delimiter entered.");
+        }
+        return chosen;
+    }
+
+    private static String describe(char delimiter) {
+        return delimiter == '\t' ? "\\t" : String.valueOf(delimiter);
+    }
+
+    /**
+     * Shows the progress of the current import or export, and once it finishes,
+     * reports whether it failed or left cells blank.
+     *
+     * @return True iff an import finished, so the sheet should be rendered again.
+     */
+    private boolean report(UI ui, Prompt prompt) {
+        FileTask current = task;
+        if (current == null) {
+            return false;
+        }
+        if (!current.isDone()) {
+            ui.status(current.describe());
+            return false;
+        }
+        task = null;
+        ui.status("");
+        Exception failure = current.getFailure();
+        if (failure instanceof SheetFileReadingException) {
+            prompt.message("File cannot be read \nReason:" + failure.getMessage());
+        } else if (failure != null) {
+            prompt.message("An IOException was thrown. Type:" + failure.getClass().getName());
+        } else if (current.getWarning() != null) {
+            prompt.message("Some cells were left blank \nReason:" + current.getWarning());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,325 @@
+package sheep.features.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import sheep.sheets.CellSink;
+import sheep.sheets.CellSource;
+
+/**
+ * Reads comma separated values, as described by RFC 4180, as the cells of a sheet.
+ * <p>
+ * Each record is a row of the sheet and each field of a record is a cell.
+ * Records end with a line feed, optionally preceded by a carriage return,
+ * and fields are separated by a delimiter, a comma by default.
+ * A field enclosed in double quotes may contain delimiters, line breaks,
+ * and double quotes written twice. Quotes within a field which is not enclosed in quotes
+ * are read as they are. UTF-8 encoded files are read.
+ * <p>
+ * As the file has no header, the dimensions of the sheet are only known
+ * once every cell has been supplied, see {@link #getRows()} and {@link #getColumns()}.
+ * The file is scanned a block of bytes at a time and only non-empty fields are supplied.
+ * Fields which are integers, written as {@link Long#toString(long)} would write them,
+ * are passed to {@link CellSink#acceptNumber(int, int, long)} without creating their text.
+ */
+public class CsvReader implements CellSource<IOException>, Closeable {
+    /** The delimiter of fields if none is given. */
+    public static final char DEFAULT_DELIMITER = ',';
+
+    /** The bytes of the file scanned at once, the buffer grows for longer fields. */
+    static final int BUFFER_SIZE = 1 << 20;
+    /* Longer numbers may not fit in a long, and are passed to the sink as text. */
+    private static final int MAX_NUMBER_DIGITS = 18;
+
+    private final InputStream input;
+    private final byte delimiter;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    /* The bytes of the buffer which have been read from the input. */
+    private int limit = 0;
+    private boolean end = false;
+    /* Holds the contents of a quoted field with its escaped quotes removed. */
+    private byte[] unquoted = new byte[256];
+    private int rows = 0;
+    private int columns = 0;
+
+    /**
+     * Construct a reader of comma separated values.
+     *
+     * @param input The stream of the file, which is read in blocks and need not be buffered.
+     * @param delimiter The character separating fields, which must be ASCII
+     *                  and not a double quote, carriage return or line feed.
+     * @throws IllegalArgumentException If the delimiter cannot separate fields.
+     */
+    public CsvReader(InputStream input, char delimiter) {
+        if (delimiter > 0x7f || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Unsupported delimiter: " + delimiter);
+        }
+        this.input = input;
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * Open a file of comma separated values.
+     *
+     * @param path The path of the file.
+     * @param delimiter The character separating fields.
+     * @return A reader of the file, which must be closed.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static CsvReader open(Path path, char delimiter) throws IOException {
+        return new CsvReader(Files.newInputStream(path), delimiter);
+    }
+
+    /**
+     * @return The amount of records read so far, which once every cell has been supplied
+     *         is the amount of rows of the sheet.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The most fields in any record read so far, which once every cell has been supplied
+     *         is the amount of columns of the sheet.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Pass every non-empty field of the file to the sink, record by record.
+     *
+     * @param sink The callback to pass each cell to.
+     * @throws SheetFileReadingException If a quoted field is not closed before the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public void supply(CellSink sink) throws IOException {
+        int position = 0;
+        int column = 0;
+        while (true) {
+            if (position == limit) {
+                position = fill(position, position);
+                if (position == limit) {
+                    // the last record, unless the file ended with a line break
+                    if (column > 0) {
+                        endRecord(column);
+                    }
+                    return;
+                }
+            }
+            int next;
+            if (buffer[position] == '"') {
+                next = readQuoted(position, column, sink);
+            } else {
+                next = readField(position, column, sink);
+            }
+            // next is the position of the delimiter or line feed ending the field, or the limit
+            if (next < limit && buffer[next] == delimiter) {
+                column++;
+                position = next + 1;
+                if (position == limit) {
+                    position = fill(position, position);
+                    if (position == limit) {
+                        // the file ended after a delimiter, with an empty last field
+                        endRecord(column + 1);
+                        return;
+                    }
+                }
+            } else {
+                endRecord(column + 1);
+                column = 0;
+                position = next < limit ? next + 1 : next;
+            }
+        }
+    }
+
+    private void endRecord(int fields) {
+        rows++;
+        columns = Math.max(columns, fields);
+    }
+
+    /**
+     * Pass the field which is not quoted at the position to the sink, if it is not empty.
+     *
+     * @return The position of the delimiter or line feed after the field, or the limit.
+     */
+    private int readField(int start, int column, CellSink sink) throws IOException {
+        int index = start;
+        byte separator = delimiter;
+        while (true) {
+            byte[] bytes = buffer;
+            int bound = limit;
+            while (index < bound) {
+                byte b = bytes[index];
+                if (b == separator || b == '\n') {
+                    break;
+                }
+                index++;
+            }
+            if (index < limit || end) {
+                break;
+            }
+            // the field continues past the buffer
+            index = fill(start, index);
+            start = 0;
+        }
+        int fieldEnd = index;
+        if (fieldEnd > start && buffer[fieldEnd - 1] == '\r'
+                && (fieldEnd == limit || buffer[fieldEnd] == '\n')) {
+            fieldEnd--;
+        }
+        if (fieldEnd > start) {
+            if (isNumber(start, fieldEnd)) {
+                sink.acceptNumber(rows, column, parseNumber(start, fieldEnd));
+            } else {
+                sink.accept(rows, column,
+                        new String(buffer, start, fieldEnd - start, StandardCharsets.UTF_8));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Whether the bytes are a number exactly as {@link Long#toString(long)} renders it,
+     * of at most {@link #MAX_NUMBER_DIGITS} digits, so it can be passed to the sink
+     * without creating its text.
+     */
+    private boolean isNumber(int start, int end) {
+        int index = buffer[start] == '-' ? start + 1 : start;
+        int digits = end - index;
+        if (digits == 0 || digits > MAX_NUMBER_DIGITS
+                || (buffer[index] == '0' && (digits > 1 || index > start))) {
+            return false;
+        }
+        for (; index < end; index++) {
+            if (buffer[index] < '0' || buffer[index] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseNumber(int start, int end) {
+        boolean negative = buffer[start] == '-';
+        long number = 0;
+        for (int index = negative ? start + 1 : start; index < end; index++) {
+            number = number * 10 + (buffer[index] - '0');
+        }
+        return negative ? -number : number;
+    }
+
+    /**
+     * Pass the quoted field at the position to the sink, without its quotes,
+     * if it is not empty. Any characters after the closing quote, up to the next
+     * delimiter or line feed, are kept as they are.
+     *
+     * @return The position of the delimiter or line feed after the field, or the limit.
+     */
+    private int readQuoted(int start, int column, CellSink sink) throws IOException {
+        int length = 0;
+        int index = start + 1;
+        boolean quoted = true;
+        while (true) {
+            // keep the current byte and the one after it in the buffer, as both may be needed
+            if (index + 1 >= limit && !end) {
+                index = fill(index, index);
+            }
+            if (index == limit) {
+                if (quoted) {
+                    throw new SheetFileReadingException(
+                            "Quoted field is not closed in record " + (rows + 1));
+                }
+                break;
+            }
+            byte b = buffer[index];
+            if (quoted) {
+                if (b != '"') {
+                    // copy up to the next quote, or the end of the buffer, at once
+                    int run = index + 1;
+                    byte[] bytes = buffer;
+                    int bound = limit;
+                    while (run < bound && bytes[run] != '"') {
+                        run++;
+                    }
+                    length = append(length, index, run);
+                    index = run;
+                } else if (index + 1 < limit && buffer[index + 1] == '"') {
+                    length = append(length, index, index + 1);
+                    index += 2;
+                } else {
+                    quoted = false;
+                    index++;
+                }
+                continue;
+            } else if (b == delimiter || b == '\n') {
+                break;
+            } else if (b == '\r' && (index + 1 == limit || buffer[index + 1] == '\n')) {
+                index++;
+                continue;
+            }
+            length = append(length, index, index + 1);
+            index++;
+        }
+        if (length > 0) {
+            sink.accept(rows, column, new String(unquoted, 0, length, StandardCharsets.UTF_8));
+        }
+        return index;
+    }
+
+    /**
+     * Append the bytes of the buffer from start to end to the contents of the quoted field.
+     *
+     * @return The length of the contents.
+     */
+    private int append(int length, int start, int end) {
+        int added = end - start;
+        if (length + added > unquoted.length) {
+            unquoted = Arrays.copyOf(unquoted, Math.max(length + added, unquoted.length * 2));
+        }
+        System.arraycopy(buffer, start, unquoted, length, added);
+        return length + added;
+    }
+
+    /**
+     * Read more of the input into the buffer, keeping the bytes from the start
+     * of the field being read, which are moved to the beginning of the buffer.
+     * The buffer grows if the field fills it.
+     *
+     * @param keep The position of the first byte to keep.
+     * @param position A position at or after keep.
+     * @return The position, moved along with the bytes kept.
+     */
+    private int fill(int keep, int position) throws IOException {
+        int kept = limit - keep;
+        if (kept == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, kept);
+        }
+        limit = kept;
+        if (!end) {
+            int read = input.readNBytes(buffer, limit, buffer.length - limit);
+            if (read == 0) {
+                end = true;
+            }
+            limit += read;
+        }
+        return position - keep;
+    }
+
+    /**
+     * Close the underlying file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
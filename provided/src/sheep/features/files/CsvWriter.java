@@ -0,0 +1,154 @@
+package sheep.features.files;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import sheep.core.SheetView;
+
+/**
+ * Writes the cells of a sheet as comma separated values, as described by RFC 4180,
+ * so they can be read by {@link CsvReader} or other programs.
+ * <p>
+ * Each row of the sheet is written as a record ending in a carriage return and line feed,
+ * with a field for every column, so the dimensions of the sheet are kept.
+ * A field containing the delimiter, a double quote, a carriage return or a line feed
+ * is enclosed in double quotes, with any double quote within it doubled.
+ */
+public class CsvWriter {
+    /* The most cells of values rendered at once. */
+    private static final int RENDER_CELLS = 1 << 14;
+
+    private CsvWriter() {
+    }
+
+    /**
+     * Write the values of every cell of the sheet, as they are rendered.
+     * Values are rendered a block of rows at a time, see
+     * {@link SheetView#renderValues(int, int, int, int, String[])}, and written straight
+     * to the writer.
+     *
+     * @param sheet The sheet to write, which should not change while writing,
+     *              see {@link sheep.sheets.Sheet#snapshot()}.
+     * @param writer The writer to write to, which should be buffered. It is flushed but not closed.
+     * @param delimiter The character separating fields.
+     * @throws IOException If the writer fails.
+     */
+    public static void writeValues(SheetView sheet, Writer writer, char delimiter)
+            throws IOException {
+        int rows = sheet.getRows();
+        int columns = sheet.getColumns();
+        if (columns == 0) {
+            // each row is an empty record, as written by writeFormulas
+            for (int row = 0; row < rows; row++) {
+                writer.write("\r\n");
+            }
+            writer.flush();
+            return;
+        }
+        int block = Math.max(1, RENDER_CELLS / columns);
+        String[] contents = new String[block * columns];
+        for (int row = 0; row < rows; row += block) {
+            int count = Math.min(block, rows - row);
+            sheet.renderValues(row, 0, count, columns, contents);
+            for (int index = 0; index < count * columns; index++) {
+                writeField(writer, contents[index], index % columns, delimiter);
+                if (index % columns == columns - 1) {
+                    writer.write("\r\n");
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the formula of every cell of the sheet. Only the formulas of occupied cells
+     * are requested from the sheet, the other cells are written as the default formula.
+     *
+     * @param sheet The sheet to write, which should not change while writing,
+     *              see {@link sheep.sheets.Sheet#snapshot()}.
+     * @param writer The writer to write to, which should be buffered. It is flushed but not closed.
+     * @param delimiter The character separating fields.
+     * @throws IOException If the writer fails.
+     */
+    public static void writeFormulas(SheetView sheet, Writer writer, char delimiter)
+            throws IOException {
+        int rows = sheet.getRows();
+        int columns = sheet.getColumns();
+        String[] formulas = new String[columns];
+        int[] next = {0};
+        // cells which are not occupied hold the default formula
+        String[] blanks = {null};
+        try {
+            sheet.forEachOccupied((row, column) -> {
+                try {
+                    while (next[0] < row) {
+                        writeRecord(sheet, writer, formulas, next[0], blanks, delimiter);
+                        next[0]++;
+                    }
+                    formulas[column] = sheet.formulaAt(row, column).getContent();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            while (next[0] < rows) {
+                writeRecord(sheet, writer, formulas, next[0], blanks, delimiter);
+                next[0]++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the formulas of a row, where null formulas are not occupied, then clear them.
+     */
+    private static void writeRecord(SheetView sheet, Writer writer, String[] formulas, int row,
+                                    String[] blank, char delimiter) throws IOException {
+        for (int column = 0; column < formulas.length; column++) {
+            String formula = formulas[column];
+            if (formula == null) {
+                if (blank[0] == null) {
+                    blank[0] = sheet.formulaAt(row, column).getContent();
+                }
+                formula = blank[0];
+            }
+            writeField(writer, formula, column, delimiter);
+        }
+        writer.write("\r\n");
+        Arrays.fill(formulas, null);
+    }
+
+    private static void writeField(Writer writer, String field, int column, char delimiter)
+            throws IOException {
+        if (column > 0) {
+            writer.write(delimiter);
+        }
+        if (!needsQuotes(field, delimiter)) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        for (int index = 0; index < field.length(); index++) {
+            char character = field.charAt(index);
+            if (character == '"') {
+                writer.write('"');
+            }
+            writer.write(character);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String field, char delimiter) {
+        for (int index = 0; index < field.length(); index++) {
+            char character = field.charAt(index);
+            if (character == delimiter || character == '"'
+                    || character == '\r' || character == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,11 +1,9 @@
 package sheep.features.files;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
 import java.util.Optional;
 
 import sheep.features.Feature;
@@ -18,7 +16,15 @@ import sheep.ui.UI;
  */
 public class FileLoading implements Feature {
 
+    /**
+     * Files of at least this many bytes are memory-mapped and tokenized in parallel,
+     * see {@link MappedSheetFileReader}.
+     */
+    public static final long MAPPED_LOADING_SIZE = 64L << 20;
+
     private Sheet activeSheet;
+    /* The load in progress, if any. */
+    private FileTask task;
     
     /**
      * Initialises a FileLoading object with a sheet to load to.
@@ -32,7 +38,8 @@ public class FileLoading implements Feature {
     }
 
     /**
-     * Registers file loading as another feature in the feature menu.
+     * Registers file loading as another feature in the feature menu,
+     * along with cancelling a load, and reports the progress of a load on each tick.
      * 
      * @param ui the UI object to register the feature to.
      */
@@ -40,12 +47,20 @@ public class FileLoading implements Feature {
     public void register(UI ui) {
         ui.addFeature("load-file", "Load a file", 
             (row, column, prompt) -> this.loadSheet(prompt));
+        ui.addFeature("cancel-load-file", "Cancel loading a file",
+            (row, column, prompt) -> this.cancel());
+        ui.onTick(prompt -> this.report(ui, prompt));
     }
 
     /**
-     * Loads a sheet from a file specified by user input. If an issue occurs while loading
-     * the file, an appropriate error message popup will be delivered to the user. 
-     * Additionally, if an error occurs during loading, the sheet will revert to its state 
+     * Starts loading a sheet from a file specified by user input on a worker thread,
+     * see {@link FileTask#load(Sheet, Path)}. Files beginning with the magic number
+     * of {@link BinarySheetFormat} are read in that format, otherwise in the text format.
+     * Compressed files, see {@link SheetCompression}, are decompressed as they are read.
+     * If an issue occurs while loading
+     * the file, an appropriate error message popup will be delivered to the user
+     * on the following tick. 
+     * Additionally, if an error occurs during loading, the sheet will remain in its state 
      * before the user tried to load anything.
      * 
      * @param prompt the prompt object the user enters input into and through which error
@@ -53,6 +68,10 @@ public class FileLoading implements Feature {
      */
     public void loadSheet(Prompt prompt) {
 
+        if (task != null) {
+            prompt.message("A file is already being loaded.");
+            return;
+        }
         try {
             //obtain Path object from user input
             Optional<String> pathInput = prompt.ask("Sheet path:");
@@ -61,43 +80,64 @@ public class FileLoading implements Feature {
             }
             Path sheetPath = Paths.get(pathInput.get()); 
 
-            //read in and verify that sheet file is encoded properly
-            List<String> encodedLines = Files.readAllLines(sheetPath);
-            int[] dimensions = SheetFileFormat.readDimensions(encodedLines);
-            String[][] cellValues = SheetFileFormat.readCells(dimensions, encodedLines);
-            
-            //load pre-read sheet information into sheet
-            activeSheet.clear();
-            activeSheet.updateDimensions(dimensions[0], dimensions[1]);
-            loadCellValues(activeSheet, cellValues, dimensions); 
+            //read the file on a worker thread, then load its cells into the sheet together
+            task = FileTask.load(activeSheet, sheetPath);
 
         } catch (InvalidPathException e) {
             prompt.message("Invalid path entered.");
 
-        } catch (SheetFileReadingException e) {
-            prompt.message("File cannot be read \nReason:" + e.getMessage());
-
         } catch (IOException e) {
             prompt.message("An IOException was thrown. Type:" + e.getClass().getName());
         }
         
     }
-       
+
+    /**
+     * Cancels loading a file, leaving the sheet as it was.
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Shows the progress of the current load, and once it finishes,
+     * reports whether it failed or left cells blank.
+     *
+     * @return True iff a load finished, so the sheet should be rendered again.
+     */
+    private boolean report(UI ui, Prompt prompt) {
+        FileTask current = task;
+        if (current == null) {
+            return false;
+        }
+        if (!current.isDone()) {
+            ui.status(current.describe());
+            return false;
+        }
+        task = null;
+        ui.status("");
+        Exception failure = current.getFailure();
+        if (failure instanceof SheetFileReadingException) {
+            prompt.message("File cannot be read \nReason:" + failure.getMessage());
+        } else if (failure != null) {
+            prompt.message("An IOException was thrown. Type:" + failure.getClass().getName());
+        } else if (current.getWarning() != null) {
+            prompt.message("Some cells were left blank \nReason:" + current.getWarning());
+        }
+        return true;
+    }
+
     /**
      * Load cell values into a given sheet based on pre-read cell values.
      * 
-     * @requires the dimensions of the parameter cellValues to agree with the parameter
-     *           dimensions
+     * @requires the dimensions of the parameter cellValues to be within the sheet
      * @param cellValues the value of every cell in the sheet to load.
-     * @param dimensions the dimensions of the sheet to load.
      */
-    public void loadCellValues(Sheet sheet, String[][] cellValues, int[] dimensions) {
+    public void loadCellValues(Sheet sheet, String[][] cellValues) {
 
-        for (int i = 0; i < dimensions[0]; i++) {
-            for (int j = 0; j < dimensions[1]; j++) {
-                sheet.update(i, j, cellValues[i][j]);
-            }
-        }
+        sheet.load(cellValues);
 
     }
 
@@ -1,13 +1,19 @@
 package sheep.features.files;
 
+import sheep.core.SheetView;
 import sheep.features.Feature;
 import sheep.sheets.Sheet;
 import sheep.ui.Prompt;
 import sheep.ui.UI;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -16,26 +22,56 @@ import java.util.Optional;
 public class FileSaving implements Feature {
 
     private Sheet activeSheet;
+    private final int compressionLevel;
+    /* The save in progress, if any. */
+    private FileTask task;
 
 
     /**
-     * Initialises a FileSaving object for a particular sheet.
+     * Initialises a FileSaving object for a particular sheet,
+     * compressing files at the default level of {@link SheetCompression}.
      * @param sheet the sheet to save to a file.
      */
     public FileSaving(Sheet sheet) {
+        this(sheet, SheetCompression.DEFAULT);
+    }
+
+    /**
+     * Initialises a FileSaving object for a particular sheet.
+     * @param sheet the sheet to save to a file.
+     * @param compressionLevel the level to compress files at, see {@link SheetCompression}.
+     */
+    public FileSaving(Sheet sheet, int compressionLevel) {
         this.activeSheet = sheet;
+        this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * Registers file saving as another feature in the feature menu,
+     * along with cancelling a save, and reports the progress of a save on each tick.
+     *
+     * @param ui the UI object to register the feature to.
+     */
     @Override
     public void register(UI ui) {
 
         ui.addFeature("save-file", "Save sheet", (row, column, prompt) -> this.saveSheet(prompt));
+        ui.addFeature("cancel-save-file", "Cancel saving sheet",
+            (row, column, prompt) -> this.cancel());
+        ui.onTick(prompt -> this.report(ui, prompt));
     }
 
     /**
-     * Saves the current sheet to a file specified by the user. If an issue occurs while saving
-     * the file, an appropriate error message popup will be delivered to the user. The file will
-     * saved with a format dictated by the SheetFileFormat class. 
+     * Saves the current sheet to a file specified by the user, writing a snapshot of the sheet
+     * on a worker thread, see {@link FileTask#save(SheetView, Path, int)}.
+     * If an issue occurs while saving
+     * the file, an appropriate error message popup will be delivered to the user
+     * on the following tick. The file will
+     * saved with a format dictated by the SheetFileFormat class, unless the path has the
+     * extension of {@link BinarySheetFormat} or names an existing binary sheet file,
+     * in which case it is saved in the binary format.
+     * The file is compressed as it is written if the path has the extension of
+     * {@link SheetCompression} or names an existing compressed file.
      * If a file already exists with that name, it will be overwritten by the newly saved sheet
      * file.
      * 
@@ -43,21 +79,89 @@ public class FileSaving implements Feature {
      *               pop up.
      */
     public void saveSheet(Prompt prompt) {
-        try {
-            Optional<Path> sheetPathOptional = getSheetPathFromUser(prompt);
-            
-            if (sheetPathOptional.isEmpty()) { //if save attempt is cancelled
-                return;
-            }
-            Path sheetPath = sheetPathOptional.get();
+        if (task != null) {
+            prompt.message("The sheet is already being saved.");
+            return;
+        }
+        Optional<Path> sheetPathOptional = getSheetPathFromUser(prompt);
 
-            List<String> encodedLines = SheetFileFormat.encodeSheet(activeSheet);
-            //create and load encoding into file.
-            Files.write(sheetPath, encodedLines);
+        if (sheetPathOptional.isEmpty()) { //if save attempt is cancelled
+            return;
+        }
+        Path sheetPath = sheetPathOptional.get();
+
+        //encode a snapshot so the sheet cannot change part way through
+        task = FileTask.save(activeSheet.snapshot(), sheetPath, compressionLevel);
+    }
 
-        } catch (IOException e) {
+    /**
+     * Cancels saving the sheet, leaving any existing file as it was.
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Shows the progress of the current save, and once it finishes,
+     * reports whether it failed.
+     *
+     * @return False, as saving does not change the sheet.
+     */
+    private boolean report(UI ui, Prompt prompt) {
+        FileTask current = task;
+        if (current == null) {
+            return false;
+        }
+        if (!current.isDone()) {
+            ui.status(current.describe());
+            return false;
+        }
+        task = null;
+        ui.status("");
+        if (current.getFailure() != null) {
             prompt.message("An error occurred. Are you sure that directory exists?");
         }
+        return false;
+    }
+
+    /**
+     * Write the sheet to a file, in the format {@link #saveSheet(Prompt)} chooses for the target.
+     *
+     * @param sheet The sheet to write.
+     * @param target The path whose name and existing contents choose the format.
+     * @param file The file to write, of the target itself or a file to be moved over it.
+     *             It is closed once written, or if the format of the target cannot be read.
+     * @param compressionLevel The level to compress the file at, if it is compressed.
+     * @throws IOException If the format of the target cannot be read or the file cannot be written.
+     */
+    static void save(SheetView sheet, Path target, OutputStream file, int compressionLevel)
+            throws IOException {
+        try (file) {
+            //keep the format of an existing file, new files are binary or compressed by extension
+            boolean compressed = SheetCompression.isCompressed(target)
+                    || SheetCompression.hasExtension(target);
+            String name = target.toString();
+            if (SheetCompression.hasExtension(target)) {
+                name = name.substring(0, name.length() - SheetCompression.EXTENSION.length());
+            }
+            boolean binary = BinarySheetFormat.isBinary(target)
+                    || name.endsWith(BinarySheetFormat.EXTENSION);
+
+            try (OutputStream output = compressed
+                    ? SheetCompression.compress(file, compressionLevel)
+                    : new BufferedOutputStream(file)) {
+                if (binary) {
+                    BinarySheetFormat.write(sheet, output);
+                    return;
+                }
+                //stream the encoding into the file row by row
+                Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                SheetFileFormat.writeSheet(sheet, writer);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,530 @@
+package sheep.features.files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import sheep.core.CellVisitor;
+import sheep.core.SheetView;
+import sheep.core.UpdateResponse;
+import sheep.core.ViewElement;
+import sheep.sheets.CellSink;
+import sheep.sheets.CellReferences;
+import sheep.sheets.CellSource;
+import sheep.sheets.Sheet;
+
+/**
+ * Loads or saves a sheet file on a worker thread, so the user interface stays responsive,
+ * reporting progress in rows and bytes and stopping early if cancelled.
+ * <p>
+ * A load reads and tokenizes the whole file on the worker thread before touching the sheet,
+ * then loads the cells into the sheet in one batch, see {@link Sheet#load(int, int, CellSource)}.
+ * Cancelling stops the read and leaves the sheet as it was, but once the cells are being
+ * loaded into the sheet the load finishes.
+ * The cells read are buffered until then, which costs memory proportional to the occupied
+ * cells of the file in exchange for a cancel never leaving a partly loaded sheet.
+ * Blank cells are not buffered, they hold the default formula of the sheet once loaded.
+ * A save writes a snapshot of the sheet to a temporary file which is moved over the file
+ * once complete, so cancelling leaves any existing file as it was.
+ */
+public class FileTask {
+    private final String action;
+    private final Path path;
+    /* The size of the file being loaded, or -1 when saving. */
+    private final long size;
+
+    private volatile long bytes = 0;
+    private volatile int rows = 0;
+    private volatile boolean applying = false;
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+    private volatile Exception failure;
+    /* Why some cells could not be loaded into the sheet, or null if every cell was. */
+    private volatile String warning;
+
+    /**
+     * Work performed by a task on its worker thread.
+     */
+    @FunctionalInterface
+    private interface Work {
+        void run() throws IOException;
+    }
+
+    private FileTask(String action, Path path, long size) {
+        this.action = action;
+        this.path = path;
+        this.size = size;
+    }
+
+    /**
+     * Start loading a sheet file into the sheet on a worker thread.
+     * Files beginning with the magic number of {@link BinarySheetFormat} are read in that format,
+     * otherwise in the text format, and compressed files are decompressed as they are read.
+     *
+     * @param sheet The sheet to load the file into.
+     * @param path The path of the file.
+     * @return The running task.
+     * @throws IOException If the file does not exist or its size cannot be read.
+     */
+    public static FileTask load(Sheet sheet, Path path) throws IOException {
+        FileTask task = new FileTask("Loading", path, Files.size(path));
+        task.start(() -> task.load(sheet));
+        return task;
+    }
+
+    /**
+     * Start saving a sheet to a file on a worker thread,
+     * in the format {@link FileSaving} chooses for the path.
+     *
+     * @param sheet The sheet to save, which should not change while saving,
+     *              see {@link Sheet#snapshot()}.
+     * @param path The path of the file.
+     * @param compressionLevel The level to compress the file at, if it is compressed.
+     * @return The running task.
+     */
+    public static FileTask save(SheetView sheet, Path path, int compressionLevel) {
+        FileTask task = new FileTask("Saving", path, -1);
+        task.start(() -> task.save(sheet, compressionLevel));
+        return task;
+    }
+
+    /**
+     * Start importing a file of comma separated values into the sheet on a worker thread,
+     * see {@link CsvReader}. The dimensions of the sheet are those of the file,
+     * found as the file is read, and every cell is loaded into the sheet in one batch.
+     *
+     * @param sheet The sheet to import the file into.
+     * @param path The path of the file.
+     * @param delimiter The character separating fields.
+     * @return The running task.
+     * @throws IOException If the file does not exist or its size cannot be read.
+     */
+    public static FileTask importCsv(Sheet sheet, Path path, char delimiter) throws IOException {
+        FileTask task = new FileTask("Importing", path, Files.size(path));
+        task.start(() -> task.importCsv(sheet, delimiter));
+        return task;
+    }
+
+    /**
+     * Start exporting the sheet as comma separated values on a worker thread,
+     * see {@link CsvWriter}.
+     *
+     * @param sheet The sheet to export, which should not change while exporting,
+     *              see {@link Sheet#snapshot()}.
+     * @param path The path of the file.
+     * @param delimiter The character separating fields.
+     * @param values True to export the values of cells, false to export their formulas.
+     * @return The running task.
+     */
+    public static FileTask exportCsv(SheetView sheet, Path path, char delimiter, boolean values) {
+        FileTask task = new FileTask("Exporting", path, -1);
+        task.start(() -> task.exportCsv(sheet, delimiter, values));
+        return task;
+    }
+
+    private void start(Work work) {
+        Thread worker = new Thread(() -> {
+            try {
+                work.run();
+            } catch (IOException | RuntimeException e) {
+                if (!cancelled) {
+                    failure = e;
+                }
+            } finally {
+                done = true;
+            }
+        }, "sheet-file-task");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void load(Sheet sheet) throws IOException {
+        CellBuffer cells = new CellBuffer();
+        int[] dimensions;
+        if (SheetCompression.isCompressed(path)) {
+            try (InputStream input = SheetCompression.decompress(
+                    new CountingInputStream(Files.newInputStream(path)))) {
+                dimensions = read(input, cells);
+            }
+        } else if (BinarySheetFormat.isBinary(path) || size < FileLoading.MAPPED_LOADING_SIZE) {
+            try (InputStream input = new CountingInputStream(Files.newInputStream(path))) {
+                dimensions = read(input, cells);
+            }
+        } else {
+            try (MappedSheetFileReader reader = MappedSheetFileReader.open(path)) {
+                cells.mapped = reader;
+                reader.supply(cells);
+                dimensions = new int[]{reader.getRows(), reader.getColumns()};
+            }
+        }
+        startApplying();
+        warn(sheet.load(dimensions[0], dimensions[1], cells));
+    }
+
+    /**
+     * Read the cells of a sheet file from the stream into the buffer.
+     *
+     * @return The dimensions of the sheet.
+     */
+    private static int[] read(InputStream stream, CellBuffer cells) throws IOException {
+        InputStream input = stream.markSupported() ? stream : new BufferedInputStream(stream);
+        input.mark(BinarySheetFormat.MAGIC.length);
+        boolean binary = BinarySheetFormat.hasMagic(input);
+        input.reset();
+        if (binary) {
+            BinarySheetFileReader reader = new BinarySheetFileReader(input);
+            reader.supply(cells);
+            return new int[]{reader.getRows(), reader.getColumns()};
+        }
+        SheetFileReader reader = new SheetFileReader(new BufferedReader(
+                new InputStreamReader(input, StandardCharsets.UTF_8)));
+        reader.supply(cells);
+        return new int[]{reader.getRows(), reader.getColumns()};
+    }
+
+    private void importCsv(Sheet sheet, char delimiter) throws IOException {
+        CellBuffer cells = new CellBuffer();
+        int[] dimensions;
+        try (CsvReader reader = new CsvReader(
+                new CountingInputStream(Files.newInputStream(path)), delimiter)) {
+            reader.supply(cells);
+            dimensions = new int[]{reader.getRows(), reader.getColumns()};
+        }
+        if (dimensions[1] > CellReferences.MAX_COLUMNS) {
+            throw new SheetFileReadingException("A record has more than "
+                    + CellReferences.MAX_COLUMNS + " fields");
+        }
+        startApplying();
+        warn(sheet.load(Math.max(1, dimensions[0]), Math.max(1, dimensions[1]), cells));
+    }
+
+    /**
+     * Keep the message of a load which left some cells with the default formula.
+     */
+    private void warn(UpdateResponse response) {
+        if (!response.isSuccess()) {
+            warning = response.getMessage();
+        }
+    }
+
+    private void exportCsv(SheetView sheet, char delimiter, boolean values) throws IOException {
+        Path temporary = Paths.get(path + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new CountingOutputStream(Files.newOutputStream(temporary)),
+                    StandardCharsets.UTF_8), 1 << 16)) {
+                SheetView tracked = new TrackedView(sheet);
+                if (values) {
+                    CsvWriter.writeValues(tracked, writer, delimiter);
+                } else {
+                    CsvWriter.writeFormulas(tracked, writer, delimiter);
+                }
+            }
+            Files.move(temporary, path,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void save(SheetView sheet, int compressionLevel) throws IOException {
+        Path temporary = Paths.get(path + ".tmp");
+        try {
+            FileSaving.save(new TrackedView(sheet), path,
+                    new CountingOutputStream(Files.newOutputStream(temporary)), compressionLevel);
+            Files.move(temporary, path,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Stop the task as soon as possible, unless it is a load which is already loading
+     * cells into the sheet, which finishes regardless.
+     */
+    public synchronized void cancel() {
+        if (!applying) {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Begin loading the cells read into the sheet, after which the task cannot be cancelled.
+     *
+     * @throws InterruptedIOException If the task was cancelled before loading began.
+     */
+    private synchronized void startApplying() throws InterruptedIOException {
+        checkCancelled();
+        applying = true;
+    }
+
+    /**
+     * @return True iff the task was cancelled before it finished.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return True iff the task has finished, whether it succeeded, failed or was cancelled.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return The exception which stopped the task, or null if it did not fail.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return Why some cells of the file could not be loaded into the sheet,
+     *         e.g. "3 cells could not be loaded, the first at C1",
+     *         or null if every cell was loaded or the task did not load cells.
+     */
+    public String getWarning() {
+        return warning;
+    }
+
+    /**
+     * @return The amount of bytes of the file read or written so far.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The amount of rows of the sheet read or written so far.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return A short description of the progress of the task,
+     *         e.g. "Loading big.sheet: 1200 rows, 3.2 of 10.0 MB".
+     */
+    public String describe() {
+        String name = path.getFileName() == null ? path.toString() : path.getFileName().toString();
+        if (applying) {
+            return action + " " + name + ": calculating " + rows + " rows";
+        }
+        String progress = action + " " + name + ": " + rows + " rows, " + megabytes(bytes);
+        return size < 0 ? progress + " MB" : progress + " of " + megabytes(size) + " MB";
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f", bytes / (double) (1 << 20));
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException(action + " cancelled");
+        }
+    }
+
+    /**
+     * Counts the bytes read from a file, stopping the task once it is cancelled.
+     */
+    private class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            int read = super.read();
+            if (read >= 0) {
+                bytes = ++count;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            checkCancelled();
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+                bytes = count;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long amount) throws IOException {
+            long skipped = super.skip(amount);
+            count += skipped;
+            bytes = count;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Counts the bytes written to a file, stopping the task once it is cancelled.
+     */
+    private class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+            bytes = ++count;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            checkCancelled();
+            out.write(buffer, offset, length);
+            count += length;
+            bytes = count;
+        }
+    }
+
+    /**
+     * Holds the cells read from a file until they are loaded into the sheet,
+     * counting the rows read and stopping the read once the task is cancelled.
+     */
+    private class CellBuffer implements CellSink, CellSource<RuntimeException> {
+        private int size = 0;
+        private int[] cellRows = new int[1024];
+        private int[] cellColumns = new int[1024];
+        /* The source of each cell, or null if the cell holds the number. */
+        private String[] sources = new String[1024];
+        private long[] numbers = new long[1024];
+        /* The reader supplying the cells, if it is mapped, to report its position. */
+        private MappedSheetFileReader mapped;
+
+        @Override
+        public void accept(int row, int column, String source) {
+            if (source.isBlank()) {
+                progress(row);
+                return;
+            }
+            add(row, column, source, 0);
+        }
+
+        @Override
+        public void acceptNumber(int row, int column, long number) {
+            add(row, column, null, number);
+        }
+
+        private void add(int row, int column, String source, long number) {
+            progress(row);
+            if (size == sources.length) {
+                int capacity = size * 2;
+                cellRows = Arrays.copyOf(cellRows, capacity);
+                cellColumns = Arrays.copyOf(cellColumns, capacity);
+                sources = Arrays.copyOf(sources, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+            }
+            cellRows[size] = row;
+            cellColumns[size] = column;
+            sources[size] = source;
+            numbers[size] = number;
+            size++;
+        }
+
+        private void progress(int row) {
+            if (cancelled) {
+                throw new CancellationException(action + " cancelled");
+            }
+            if (row >= rows) {
+                rows = row + 1;
+                if (mapped != null) {
+                    bytes = mapped.getPosition();
+                }
+            }
+        }
+
+        @Override
+        public void supply(CellSink sink) {
+            for (int index = 0; index < size; index++) {
+                if (sources[index] == null) {
+                    sink.acceptNumber(cellRows[index], cellColumns[index], numbers[index]);
+                } else {
+                    sink.accept(cellRows[index], cellColumns[index], sources[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A view of the sheet being saved, counting the rows written.
+     */
+    private class TrackedView implements SheetView {
+        private final SheetView sheet;
+
+        TrackedView(SheetView sheet) {
+            this.sheet = sheet;
+        }
+
+        @Override
+        public int getRows() {
+            return sheet.getRows();
+        }
+
+        @Override
+        public int getColumns() {
+            return sheet.getColumns();
+        }
+
+        @Override
+        public ViewElement valueAt(int row, int column) {
+            return sheet.valueAt(row, column);
+        }
+
+        @Override
+        public ViewElement formulaAt(int row, int column) {
+            return sheet.formulaAt(row, column);
+        }
+
+        @Override
+        public void renderValues(int row, int column, int rows, int columns, String[] contents) {
+            sheet.renderValues(row, column, rows, columns, contents);
+            FileTask.this.rows = row + rows;
+        }
+
+        @Override
+        public void forEachOccupied(CellVisitor visitor) {
+            sheet.forEachOccupied((row, column) -> {
+                if (rows != row + 1) {
+                    rows = row + 1;
+                }
+                visitor.visit(row, column);
+            });
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package sheep.features.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import sheep.sheets.CellSink;
+import sheep.sheets.CellSource;
+
+/**
+ * Reads a sheet file, in the format of {@link SheetFileFormat}, by memory-mapping it
+ * and tokenizing chunks of lines in parallel.
+ * <p>
+ * The file is mapped in segments of at most {@link #SEGMENT_SIZE} bytes, each ending at a newline,
+ * and each segment is split at newlines into chunks that are tokenized on a {@link ForkJoinPool}.
+ * The tokenized chunks are passed to the sink in file order, so rows keep their numbering.
+ * A bounded amount of chunks is tokenized ahead of the chunk being passed to the sink,
+ * so memory use does not grow with the size of the file.
+ * <p>
+ * Suited to large files, for which reading lines on a single thread is the bottleneck,
+ * see {@link SheetFileReader} for smaller files.
+ */
+public class MappedSheetFileReader implements CellSource<IOException>, Closeable {
+    /** The largest region of the file mapped at once. */
+    public static final long SEGMENT_SIZE = 1L << 30;
+    /** The smallest chunk of a segment tokenized as a single task. */
+    public static final int MIN_CHUNK_SIZE = 1 << 16;
+    /** The largest chunk of a segment tokenized as a single task. */
+    public static final int MAX_CHUNK_SIZE = 1 << 23;
+
+    private static final String MALFORMED = "Incorrect encoding of sheet values in file";
+
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    private final long size;
+    /* The position of the first line after the dimensions. */
+    private final long start;
+    private final int rows;
+    private final int columns;
+    /* Whether each line holds a single occupied cell rather than a row. */
+    private final boolean sparse;
+    /* The position after the last chunk passed to the sink. */
+    private volatile long position;
+
+    /**
+     * Tokenized lines of a chunk, or a note that a line of the chunk is malformed,
+     * and the position in the file after the chunk.
+     */
+    private record Chunk(List<String[]> lines, boolean malformed, long end) {
+    }
+
+    private MappedSheetFileReader(FileChannel channel, ForkJoinPool pool) throws IOException {
+        this.channel = channel;
+        this.pool = pool;
+        this.size = channel.size();
+        MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(size, MAX_CHUNK_SIZE));
+        int newline = indexOf(head, 0, head.limit(), (byte) '\n');
+        int end = newline < 0 ? head.limit() : newline;
+        if (end == 0) {
+            throw new SheetFileReadingException("Cannot read dimensions on first line of file.");
+        }
+        byte[] header = new byte[end];
+        head.get(0, header);
+        String firstLine = new String(header, StandardCharsets.UTF_8).stripTrailing();
+        int[] dimensions = SheetFileFormat.readDimensions(List.of(firstLine));
+        this.rows = dimensions[0];
+        this.columns = dimensions[1];
+        this.sparse = SheetFileFormat.isSparse(firstLine);
+        this.start = newline < 0 ? size : newline + 1;
+        this.position = start;
+    }
+
+    /**
+     * Open a sheet file and read its dimensions,
+     * tokenizing lines on the common {@link ForkJoinPool}.
+     *
+     * @param path The path of the sheet file.
+     * @return A reader of the sheet file, which must be closed.
+     * @throws SheetFileReadingException If the dimensions cannot be read.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static MappedSheetFileReader open(Path path) throws IOException {
+        return open(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Open a sheet file and read its dimensions.
+     *
+     * @param path The path of the sheet file.
+     * @param pool The pool to tokenize lines on.
+     * @return A reader of the sheet file, which must be closed.
+     * @throws SheetFileReadingException If the dimensions cannot be read.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static MappedSheetFileReader open(Path path, ForkJoinPool pool) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedSheetFileReader(channel, pool);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The amount of rows of the sheet in the file.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The amount of columns of the sheet in the file.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The amount of bytes of the file whose cells have been passed to the sink.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Pass every cell after the dimensions to the sink, row by row.
+     * If the file only stores occupied cells, only those are passed.
+     *
+     * @param sink The callback to pass each cell to.
+     * @throws SheetFileReadingException If a line has fewer cells than the sheet has columns,
+     *                                   the file has more lines than the sheet has rows,
+     *                                   an occupied cell is malformed,
+     *                                   or a single line is longer than a segment.
+     * @throws IOException If the file cannot be mapped.
+     */
+    @Override
+    public void supply(CellSink sink) throws IOException {
+        int ahead = 2 * pool.getParallelism();
+        Deque<ForkJoinTask<Chunk>> tasks = new ArrayDeque<>();
+        int row = 0;
+        try {
+            long segmentStart = start;
+            while (segmentStart < size) {
+                MappedByteBuffer segment = mapSegment(segmentStart);
+                int chunkSize = (int) Math.max(MIN_CHUNK_SIZE,
+                        Math.min(MAX_CHUNK_SIZE, segment.limit() / (4L * pool.getParallelism())));
+                int from = 0;
+                while (from < segment.limit()) {
+                    int to = chunkEnd(segment, from, chunkSize);
+                    int chunkStart = from;
+                    long end = segmentStart + to;
+                    tasks.add(pool.submit(() -> tokenize(segment, chunkStart, to, end)));
+                    from = to;
+                    while (tasks.size() > ahead) {
+                        row = pass(tasks.poll().join(), row, sink);
+                    }
+                }
+                segmentStart += segment.limit();
+            }
+            while (!tasks.isEmpty()) {
+                row = pass(tasks.poll().join(), row, sink);
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Map the region of the file from the position up to and including the last newline
+     * within {@link #SEGMENT_SIZE} bytes, or up to the end of the file.
+     */
+    private MappedByteBuffer mapSegment(long position) throws IOException {
+        long length = Math.min(SEGMENT_SIZE, size - position);
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        if (position + length == size) {
+            return segment;
+        }
+        int last = lastIndexOf(segment, (int) length, (byte) '\n');
+        if (last < 0) {
+            throw new SheetFileReadingException("Line of sheet file is too long");
+        }
+        return segment.slice(0, last + 1);
+    }
+
+    /**
+     * The index after the first newline at or after the preferred chunk size.
+     */
+    private static int chunkEnd(MappedByteBuffer segment, int from, int chunkSize) {
+        if (segment.limit() - from <= chunkSize) {
+            return segment.limit();
+        }
+        int newline = indexOf(segment, from + chunkSize, segment.limit(), (byte) '\n');
+        return newline < 0 ? segment.limit() : newline + 1;
+    }
+
+    /**
+     * Split a chunk of whole lines into their comma separated cells,
+     * or decode each line of a sparse file as is, to be read when passed to the sink.
+     */
+    private Chunk tokenize(MappedByteBuffer segment, int from, int to, long end) {
+        byte[] bytes = new byte[to - from];
+        segment.get(from, bytes);
+        List<String[]> lines = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (sparse) {
+                lines.add(new String[]{new String(bytes, lineStart, lineEnd - lineStart,
+                        StandardCharsets.UTF_8)});
+                lineStart = next;
+                continue;
+            }
+            String[] cells = new String[columns];
+            if (contains(bytes, lineStart, lineEnd, (byte) '"')) {
+                // quoted cells may contain commas, tokenize the decoded line
+                String line = new String(bytes, lineStart, lineEnd - lineStart,
+                        StandardCharsets.UTF_8);
+                StringBuilder cell = new StringBuilder();
+                int start = 0;
+                for (int column = 0; column < columns; column++) {
+                    if (start > line.length()) {
+                        return new Chunk(lines, true, end);
+                    }
+                    start = SheetFileFormat.readCell(line, start, cell);
+                    cells[column] = cell.toString();
+                }
+                lines.add(cells);
+                lineStart = next;
+                continue;
+            }
+            int cellStart = lineStart;
+            for (int column = 0; column < columns; column++) {
+                if (cellStart > lineEnd) {
+                    return new Chunk(lines, true, end);
+                }
+                int cellEnd = cellStart;
+                while (cellEnd < lineEnd && bytes[cellEnd] != ',') {
+                    cellEnd++;
+                }
+                cells[column] = new String(bytes, cellStart, cellEnd - cellStart,
+                        StandardCharsets.UTF_8);
+                cellStart = cellEnd + 1;
+            }
+            lines.add(cells);
+            lineStart = next;
+        }
+        return new Chunk(lines, false, end);
+    }
+
+    /**
+     * Pass the cells of a tokenized chunk to the sink.
+     *
+     * @return The row after the last line of the chunk.
+     */
+    private int pass(Chunk chunk, int row, CellSink sink) throws SheetFileReadingException {
+        for (String[] cells : chunk.lines()) {
+            if (sparse) {
+                SheetFileFormat.readRecord(cells[0], rows, columns, sink);
+                continue;
+            }
+            if (row >= rows) {
+                throw new SheetFileReadingException(MALFORMED);
+            }
+            for (int column = 0; column < cells.length; column++) {
+                sink.accept(row, column, cells[column]);
+            }
+            row++;
+        }
+        if (chunk.malformed()) {
+            throw new SheetFileReadingException(MALFORMED);
+        }
+        position = chunk.end();
+        return row;
+    }
+
+    private static boolean contains(byte[] bytes, int from, int to, byte target) {
+        for (int index = from; index < to; index++) {
+            if (bytes[index] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, byte target) {
+        for (int index = from; index < to; index++) {
+            if (buffer.get(index) == target) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(MappedByteBuffer buffer, int to, byte target) {
+        for (int index = to - 1; index >= 0; index--) {
+            if (buffer.get(index) == target) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Close the underlying file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
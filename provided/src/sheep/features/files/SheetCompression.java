@@ -0,0 +1,135 @@
+package sheep.features.files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compression of sheet files, applied as a streaming layer beneath
+ * the text and binary formats, so a sheet is compressed as it is written and
+ * decompressed as it is read, without the whole file held uncompressed in memory.
+ * <p>
+ * Compressed files are recognised by the gzip magic number, whatever their name,
+ * and new files are compressed if their name ends with {@link #EXTENSION}.
+ */
+public final class SheetCompression {
+    /** New files with this extension are compressed. */
+    public static final String EXTENSION = ".gz";
+    /** The level of compression which produces the smallest files, but is slowest. */
+    public static final int SMALLEST = Deflater.BEST_COMPRESSION;
+    /** The default level of compression of gzip, a balance of size and speed. */
+    public static final int DEFAULT = Deflater.DEFAULT_COMPRESSION;
+    /** The level of compression which is fastest, but produces larger files. */
+    public static final int FASTEST = Deflater.BEST_SPEED;
+
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SheetCompression() {
+    }
+
+    /**
+     * Whether the file exists and begins with the gzip magic number.
+     *
+     * @param path The path of the file.
+     * @return True iff the file is compressed.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public static boolean isCompressed(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (InputStream input = Files.newInputStream(path)) {
+            return input.read() == GZIP_MAGIC_FIRST && input.read() == GZIP_MAGIC_SECOND;
+        }
+    }
+
+    /**
+     * Whether a new file at the path should be compressed, judging by its name.
+     *
+     * @param path The path of the file.
+     * @return True iff the name of the file ends with {@link #EXTENSION}.
+     */
+    public static boolean hasExtension(Path path) {
+        return path.toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * Open a file for reading, decompressing it as it is read if it is compressed.
+     * The returned stream is buffered and supports {@link InputStream#mark(int)}.
+     *
+     * @param path The path of the file.
+     * @return The contents of the file, which must be closed.
+     * @throws IOException If the file cannot be opened, or its gzip header is malformed.
+     */
+    public static InputStream newInputStream(Path path) throws IOException {
+        boolean compressed = isCompressed(path);
+        InputStream input = Files.newInputStream(path);
+        if (!compressed) {
+            return new BufferedInputStream(input, BUFFER_SIZE);
+        }
+        return decompress(input);
+    }
+
+    /**
+     * Decompress a compressed stream as it is read.
+     * The returned stream is buffered and supports {@link InputStream#mark(int)}.
+     *
+     * @param input The compressed stream, which is closed if its gzip header is malformed.
+     * @return The decompressed contents of the stream, which must be closed.
+     * @throws IOException If the gzip header is malformed.
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        try {
+            return new BufferedInputStream(new GZIPInputStream(input, BUFFER_SIZE), BUFFER_SIZE);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a file for writing, compressing what is written at the given level.
+     * The file is created, or truncated if it exists.
+     *
+     * @param path The path of the file.
+     * @param level The level of compression, from {@link #FASTEST} to {@link #SMALLEST},
+     *              or {@link #DEFAULT}.
+     * @return A buffered stream to the file, which must be closed to finish compression.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static OutputStream newOutputStream(Path path, int level) throws IOException {
+        return compress(Files.newOutputStream(path), level);
+    }
+
+    /**
+     * Compress what is written to a stream at the given level.
+     *
+     * @param output The stream to write the compressed contents to,
+     *               which is closed if compression cannot start.
+     * @param level The level of compression, from {@link #FASTEST} to {@link #SMALLEST},
+     *              or {@link #DEFAULT}.
+     * @return A buffered stream to the output, which must be closed to finish compression.
+     * @throws IOException If the gzip header cannot be written.
+     */
+    public static OutputStream compress(OutputStream output, int level) throws IOException {
+        try {
+            return new BufferedOutputStream(new GZIPOutputStream(output, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            }, BUFFER_SIZE);
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package sheep.features.files;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
 
-import sheep.sheets.CellLocation;
-import sheep.sheets.Sheet;
+import sheep.core.SheetView;
+import sheep.sheets.CellSink;
 
 /**
  * Static class that encodes and decodes files based on a format. This allows for a user
@@ -13,33 +17,224 @@ import sheep.sheets.Sheet;
  * lines of the sheet file.
  */
 public class SheetFileFormat {
+    /** The start of the first line of a file which stores every cell of the sheet. */
+    public static final String DENSE_HEADER = "Dimensions:";
+    /** The start of the first line of a file which stores only the occupied cells of the sheet. */
+    public static final String SPARSE_HEADER = "Sparse:";
 
     /**
      * Encodes the sheet to a list of strings. Each string is assumed to be a line of the
      * sheet file that this sheet will be saved to. 
      * In this format, the dimensions are encoded in the first string as "Dimensions:x,y".
-     * Each following string encodes a line of the sheet, with each value seperated by commas.
+     * Each following string encodes a line of the sheet, with the formula of each cell
+     * seperated by commas. Sheets which are mostly empty are instead encoded as "Sparse:x,y"
+     * followed by a string for each occupied cell, see {@link #writeSheet(SheetView, Writer)}.
      * 
      * @param sheetToEncode Sheet to encode
      * @requires Path and file to be existing
      */
-    public static List<String> encodeSheet(Sheet sheetToEncode) {
-        List<String> encodedLines = new ArrayList<>();
+    public static List<String> encodeSheet(SheetView sheetToEncode) {
+        StringWriter encoded = new StringWriter();
+        try {
+            writeSheet(sheetToEncode, encoded);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringWriter never throws
+        }
+        return encoded.toString().lines().toList();
+    }
+
+    /**
+     * Writes the sheet to a writer line by line, in the format of {@link #encodeSheet(SheetView)}.
+     * <p>
+     * If at least half of the cells of the sheet are occupied, every cell is written:
+     * each line holds the formulas of a row, stripped of surrounding whitespace,
+     * and cells are seperated by ", ". A formula containing a comma or a double quote is
+     * enclosed in double quotes, with any double quote within it doubled, e.g. {@code "MAX(A0, 4)"}.
+     * <p>
+     * Otherwise, only the occupied cells are written, one per line, as the row, the column and
+     * the formula seperated by commas, e.g. {@code 3,1,A2 + B1}. Cells which are not written
+     * hold the default formula when loaded. The size of the file and the time taken to write
+     * and read it are then proportional to the amount of occupied cells, not the size of the sheet.
+     * <p>
+     * Only the formulas of occupied cells are requested from the sheet and they are written
+     * straight to the writer, so no more memory is used than the buffer of the writer.
+     *
+     * @param sheet Sheet to write.
+     * @param writer The writer to write to, which should be buffered. It is flushed but not closed.
+     * @throws IOException If the writer fails.
+     */
+    public static void writeSheet(SheetView sheet, Writer writer) throws IOException {
+        long[] occupied = {0};
+        sheet.forEachOccupied((row, column) -> occupied[0]++);
+        if (occupied[0] * 2 < (long) sheet.getRows() * sheet.getColumns()) {
+            writeSparseSheet(sheet, writer);
+        } else {
+            writeDenseSheet(sheet, writer);
+        }
+        writer.flush();
+    }
+
+    private static void writeDenseSheet(SheetView sheet, Writer writer) throws IOException {
+        int rows = sheet.getRows();
+        int columns = sheet.getColumns();
+        writer.write(DENSE_HEADER + rows + "," + columns + "\n");
+
+        // the next cell to write, preceded by blank cells up to each occupied cell
+        int[] next = {0, 0};
+        String[] blank = {null};
+        try {
+            sheet.forEachOccupied((row, column) -> {
+                try {
+                    writeBlanks(sheet, writer, next, row, column, columns, blank);
+                    writeCell(writer, sheet.formulaAt(row, column).getContent(), column);
+                    next[0] = row;
+                    next[1] = column + 1;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeBlanks(sheet, writer, next, rows, 0, columns, blank);
+    }
 
-        int rows = sheetToEncode.getRows();
-        int columns = sheetToEncode.getColumns();
+    private static void writeSparseSheet(SheetView sheet, Writer writer) throws IOException {
+        writer.write(SPARSE_HEADER + sheet.getRows() + "," + sheet.getColumns() + "\n");
+        try {
+            sheet.forEachOccupied((row, column) -> {
+                try {
+                    writer.write(row + "," + column + ",");
+                    writer.write(sheet.formulaAt(row, column).getContent().strip());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        encodedLines.add("Dimensions:" + rows + "," + columns);
-        for (int i = 0; i < rows; i++) {
-            String encodedRow = "";
-            for (int j = 0; j < columns; j++) {
+    /**
+     * Write blank cells from the next cell up to, but excluding, the cell at the row and column,
+     * ending each completed line.
+     */
+    private static void writeBlanks(SheetView sheet, Writer writer, int[] next,
+                                    int row, int column, int columns, String[] blank)
+            throws IOException {
+        while (next[0] < row || (next[0] == row && next[1] < column)) {
+            if (next[1] == columns) {
+                writer.write('\n');
+                next[0]++;
+                next[1] = 0;
+                continue;
+            }
+            if (blank[0] == null) {
+                // cells which are not occupied hold the default formula
+                blank[0] = sheet.formulaAt(next[0], next[1]).getContent();
+            }
+            writeCell(writer, blank[0], next[1]);
+            next[1]++;
+        }
+    }
 
-                String cellValue = sheetToEncode.valueAt(new CellLocation(i, j)).render();
-                encodedRow = encodedRow + ", " + cellValue.strip(); //avoid whitespace
+    private static void writeCell(Writer writer, String formula, int column) throws IOException {
+        if (column > 0) {
+            writer.write(", ");
+        }
+        String stripped = formula.strip(); //avoid whitespace
+        if (stripped.indexOf(',') < 0 && stripped.indexOf('"') < 0) {
+            writer.write(stripped);
+            return;
+        }
+        writer.write('"');
+        for (int index = 0; index < stripped.length(); index++) {
+            char character = stripped.charAt(index);
+            if (character == '"') {
+                writer.write('"');
             }
-            encodedLines.add(encodedRow.substring(1));
+            writer.write(character);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Read the cell of a line which starts at the given index, as written by
+     * {@link #writeSheet(SheetView, Writer)}, removing the quotes around a quoted cell.
+     *
+     * @param line A line of a sheet file.
+     * @param start The index of the first character of the cell.
+     * @param cell The builder to store the text of the cell in, it is cleared first.
+     * @return The index after the comma ending the cell, or after the end of the line.
+     */
+    static int readCell(String line, int start, StringBuilder cell) {
+        cell.setLength(0);
+        int index = start;
+        while (index < line.length() && line.charAt(index) == ' ') {
+            index++;
+        }
+        if (index == line.length() || line.charAt(index) != '"') {
+            int end = line.indexOf(',', start);
+            end = end < 0 ? line.length() : end;
+            cell.append(line, start, end);
+            return end + 1;
+        }
+        for (index++; index < line.length(); index++) {
+            char character = line.charAt(index);
+            if (character == '"') {
+                if (index + 1 < line.length() && line.charAt(index + 1) == '"') {
+                    index++;
+                } else {
+                    break;
+                }
+            }
+            cell.append(character);
+        }
+        int end = line.indexOf(',', index);
+        return (end < 0 ? line.length() : end) + 1;
+    }
+
+    /**
+     * Whether the first line of a sheet file begins a file which only stores occupied cells.
+     *
+     * @param header The first line of a sheet file.
+     * @return True iff the cells of the file are written in the sparse format.
+     */
+    public static boolean isSparse(String header) {
+        return header.startsWith(SPARSE_HEADER);
+    }
+
+    /**
+     * Read an occupied cell from a line of a sparse sheet file, as written by
+     * {@link #writeSheet(SheetView, Writer)}, and pass it to the sink. Empty lines are ignored.
+     *
+     * @param line A line of a sparse sheet file after the dimensions.
+     * @param rows The amount of rows of the sheet.
+     * @param columns The amount of columns of the sheet.
+     * @param sink The callback to pass the cell to.
+     * @throws SheetFileReadingException If the line does not hold a cell within the dimensions.
+     */
+    static void readRecord(String line, int rows, int columns, CellSink sink)
+            throws SheetFileReadingException {
+        if (line.isEmpty()) {
+            return;
+        }
+        int rowEnd = line.indexOf(',');
+        int columnEnd = rowEnd < 0 ? -1 : line.indexOf(',', rowEnd + 1);
+        try {
+            if (columnEnd < 0) {
+                throw new NumberFormatException();
+            }
+            int row = Integer.parseInt(line, 0, rowEnd, 10);
+            int column = Integer.parseInt(line, rowEnd + 1, columnEnd, 10);
+            if (row < 0 || row >= rows || column < 0 || column >= columns) {
+                throw new NumberFormatException();
+            }
+            sink.accept(row, column, line.substring(columnEnd + 1));
+        } catch (NumberFormatException e) {
+            throw new SheetFileReadingException("Incorrect encoding of sheet values in file");
         }
-        return encodedLines;
     }
 
     /**
@@ -72,6 +267,7 @@ public class SheetFileFormat {
     /**
      * Reads the cell values from a list of strings. This list of
      * strings is assumed to be the lines of a saved sheet file to be loaded.
+     * If the file only stores occupied cells, every other cell is read as empty.
      * 
      * @param dimensions the dimensions of the sheet file to be loaded
      * @param encodedLines the lines read from the sheet file
@@ -82,13 +278,28 @@ public class SheetFileFormat {
         throws SheetFileReadingException {
         String[][] cellValues = new String[dimensions[0]][dimensions[1]];
         int rows = encodedLines.size();
+        if (isSparse(encodedLines.get(0))) {
+            for (String[] row : cellValues) {
+                Arrays.fill(row, "");
+            }
+            for (int i = 1; i < rows; i++) {
+                readRecord(encodedLines.get(i), dimensions[0], dimensions[1],
+                        (row, column, source) -> cellValues[row][column] = source);
+            }
+            return cellValues;
+        }
 
+        StringBuilder cell = new StringBuilder();
         try {
             for (int i = 1; i < rows; i++) {
-                String[] lineValues = encodedLines.get(i).split(",");
+                String line = encodedLines.get(i);
+                int start = 0;
                 for (int j = 0; j < dimensions[1]; j++) {
-                    cellValues[i - 1][j] = lineValues[j]; 
-
+                    if (start > line.length()) {
+                        throw new ArrayIndexOutOfBoundsException(j);
+                    }
+                    start = readCell(line, start, cell);
+                    cellValues[i - 1][j] = cell.toString();
                 }
             }
         } catch (ArrayIndexOutOfBoundsException e) {
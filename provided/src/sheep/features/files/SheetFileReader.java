@@ -0,0 +1,172 @@
+package sheep.features.files;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import sheep.sheets.CellSink;
+import sheep.sheets.CellSource;
+
+/**
+ * Reads a sheet file, in the format of {@link SheetFileFormat}, one line at a time.
+ * <p>
+ * The dimensions are read when the reader is opened. The cells are then supplied
+ * directly to a sheet while it loads, see {@link sheep.sheets.Sheet#load(int, int, CellSource)}.
+ * While the cells of one line are being tokenized and loaded, a background thread reads
+ * the following lines into a bounded queue, so reading the file overlaps with parsing
+ * and at most {@link #QUEUE_CAPACITY} lines are held in memory, whatever the size of the file.
+ */
+public class SheetFileReader implements CellSource<IOException>, Closeable {
+    /** The most lines read ahead of the line being loaded. */
+    public static final int QUEUE_CAPACITY = 256;
+
+    /* Marks the end of the lines in the queue, compared by identity. */
+    private static final String END = new String();
+
+    private final BufferedReader reader;
+    private final int rows;
+    private final int columns;
+    /* Whether each line holds a single occupied cell rather than a row. */
+    private final boolean sparse;
+    /* Reused to hold the text of each cell being tokenized. */
+    private final StringBuilder cell = new StringBuilder();
+    /* The exception thrown while reading ahead, if any. */
+    private volatile IOException failure;
+
+    /**
+     * Construct a reader over the lines of a sheet file, reading the dimensions of the sheet.
+     *
+     * @param reader The reader of the sheet file.
+     * @throws SheetFileReadingException If the dimensions cannot be read.
+     * @throws IOException If the first line cannot be read.
+     */
+    public SheetFileReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        String header = reader.readLine();
+        if (header == null) {
+            throw new SheetFileReadingException("Cannot read dimensions on first line of file.");
+        }
+        int[] dimensions = SheetFileFormat.readDimensions(List.of(header));
+        this.rows = dimensions[0];
+        this.columns = dimensions[1];
+        this.sparse = SheetFileFormat.isSparse(header);
+    }
+
+    /**
+     * Open a sheet file and read its dimensions.
+     *
+     * @param path The path of the sheet file.
+     * @return A reader of the sheet file, which must be closed.
+     * @throws SheetFileReadingException If the dimensions cannot be read.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public static SheetFileReader open(Path path) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(path);
+        try {
+            return new SheetFileReader(reader);
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The amount of rows of the sheet in the file.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The amount of columns of the sheet in the file.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Pass every cell in the remainder of the file to the sink, row by row.
+     * If the file only stores occupied cells, only those are passed.
+     *
+     * @param sink The callback to pass each cell to.
+     * @throws SheetFileReadingException If a line has fewer cells than the sheet has columns,
+     *                                   the file has more lines than the sheet has rows,
+     *                                   or an occupied cell is malformed.
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public void supply(CellSink sink) throws IOException {
+        BlockingQueue<String> lines = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Thread readAhead = new Thread(() -> readAhead(lines), "sheet-file-reader");
+        readAhead.setDaemon(true);
+        readAhead.start();
+        try {
+            int row = 0;
+            for (String line = lines.take(); line != END; line = lines.take()) {
+                if (sparse) {
+                    SheetFileFormat.readRecord(line, rows, columns, sink);
+                    continue;
+                }
+                if (row >= rows) {
+                    throw new SheetFileReadingException("Incorrect encoding of sheet values in file");
+                }
+                tokenize(row, line, sink);
+                row++;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading sheet file");
+        } finally {
+            readAhead.interrupt();
+        }
+    }
+
+    private void readAhead(BlockingQueue<String> lines) {
+        try {
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    lines.put(line);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            lines.put(END);
+        } catch (InterruptedException e) {
+            // loading stopped early, nothing is waiting for further lines
+        }
+    }
+
+    /**
+     * Pass each comma separated cell of a line to the sink,
+     * without splitting the line into an intermediate array.
+     */
+    private void tokenize(int row, String line, CellSink sink) throws SheetFileReadingException {
+        int start = 0;
+        for (int column = 0; column < columns; column++) {
+            if (start > line.length()) {
+                throw new SheetFileReadingException("Incorrect encoding of sheet values in file");
+            }
+            start = SheetFileFormat.readCell(line, start, cell);
+            sink.accept(row, column, cell.toString());
+        }
+    }
+
+    /**
+     * Close the underlying file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,352 @@
+package sheep.features.files;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import sheep.core.SheetUpdate;
+import sheep.core.SheetView;
+import sheep.core.UpdateResponse;
+import sheep.features.Feature;
+import sheep.sheets.Sheet;
+import sheep.ui.UI;
+
+/**
+ * Persists a sheet by appending each successful update to a log file,
+ * rather than saving the whole sheet after every change.
+ * <p>
+ * Each update made through the journal is passed to the sheet and, if it succeeds,
+ * appended to the log as a line holding the row, the column and the input,
+ * as in the sparse format of {@link SheetFileFormat}, so the cost of each update
+ * does not depend on the size of the sheet.
+ * Once the log holds a given amount of updates, it is moved aside and a new log started,
+ * while a snapshot of the whole sheet is written in the background in the format of
+ * {@link BinarySheetFormat}. Once the snapshot is written, the old log is deleted.
+ * <p>
+ * Opening a journal recovers the sheet from the snapshot and the logs written since,
+ * ignoring an update which was being written when the program stopped.
+ * Replaying an update sets a cell to its input, so updates which are also in the
+ * snapshot may safely be replayed.
+ * <p>
+ * Only updates made through the journal are logged. Loading a file into the sheet,
+ * resizing or clearing it changes many cells at once and is not logged, instead
+ * a snapshot is written and the logs started again before the next update is logged,
+ * or when the journal is closed, so updates are never replayed onto the sheet
+ * as it was before it was replaced. Other changes made directly to the sheet
+ * are persisted by the next snapshot, see {@link #checkpoint()}.
+ * Failures to write the log or a snapshot are reported on the next tick of the user interface.
+ */
+public class SheetJournal implements SheetUpdate, Feature, Closeable {
+    /** The default amount of updates logged before a snapshot is written. */
+    public static final int COMPACTION_RECORDS = 10_000;
+    /** Appended to the path of the snapshot to name the log. */
+    public static final String LOG_SUFFIX = ".log";
+    /** Appended to the path of the log to name the log being compacted into a snapshot. */
+    public static final String OLD_SUFFIX = ".old";
+
+    private final Sheet sheet;
+    private final Path snapshot;
+    private final Path log;
+    private final Path oldLog;
+    private final int compactionRecords;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sheet-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /* Guarded by this. */
+    private Writer writer;
+    private int records = 0;
+    private boolean compacting = false;
+    /* The load count of the sheet, see Sheet#getLoadCount(), as of the last snapshot. */
+    private long loads;
+    /* The exception thrown while last writing to the log or a snapshot, until it is reported. */
+    private volatile IOException failure;
+
+    private SheetJournal(Sheet sheet, Path snapshot, int compactionRecords) {
+        this.sheet = sheet;
+        this.snapshot = snapshot;
+        this.log = Path.of(snapshot + LOG_SUFFIX);
+        this.oldLog = Path.of(log + OLD_SUFFIX);
+        this.compactionRecords = compactionRecords;
+    }
+
+    /**
+     * Open the journal of a sheet, logging a snapshot after every
+     * {@link #COMPACTION_RECORDS} updates, see {@link #open(Sheet, Path, int)}.
+     *
+     * @param sheet The sheet to recover and persist.
+     * @param snapshot The path of the snapshot, the logs are stored alongside it.
+     * @return The journal, which must be closed.
+     * @throws SheetFileReadingException If the snapshot or logs are malformed.
+     * @throws IOException If the snapshot or logs cannot be read or written.
+     */
+    public static SheetJournal open(Sheet sheet, Path snapshot) throws IOException {
+        return open(sheet, snapshot, COMPACTION_RECORDS);
+    }
+
+    /**
+     * Open the journal of a sheet, recovering the sheet from the snapshot and logs if they exist,
+     * then writing a new snapshot and starting an empty log.
+     *
+     * @param sheet The sheet to recover and persist.
+     * @param snapshot The path of the snapshot, the logs are stored alongside it.
+     * @param compactionRecords The amount of updates logged before a snapshot is written.
+     * @return The journal, which must be closed.
+     * @throws SheetFileReadingException If the snapshot or logs are malformed.
+     * @throws IOException If the snapshot or logs cannot be read or written.
+     * @requires compactionRecords &gt; 0
+     */
+    public static SheetJournal open(Sheet sheet, Path snapshot, int compactionRecords)
+            throws IOException {
+        SheetJournal journal = new SheetJournal(sheet, snapshot, compactionRecords);
+        journal.recover();
+        journal.loads = sheet.getLoadCount();
+        journal.writeSnapshot(sheet.snapshot());
+        Files.deleteIfExists(journal.oldLog);
+        journal.writer = Files.newBufferedWriter(journal.log, StandardCharsets.UTF_8);
+        return journal;
+    }
+
+    /**
+     * Load the snapshot, if any, then replay the old log and the log over it.
+     */
+    private void recover() throws IOException {
+        if (Files.exists(snapshot)) {
+            try (BinarySheetFileReader reader = BinarySheetFileReader.open(snapshot)) {
+                sheet.load(reader.getRows(), reader.getColumns(), reader);
+            }
+        }
+        replay(oldLog);
+        replay(log);
+    }
+
+    /**
+     * Apply each complete line of a log to the sheet,
+     * ignoring a last line which was not completely written.
+     */
+    private void replay(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            for (int character = reader.read(); character >= 0; character = reader.read()) {
+                if (character != '\n') {
+                    line.append((char) character);
+                    continue;
+                }
+                SheetFileFormat.readRecord(line.toString(), sheet.getRows(), sheet.getColumns(),
+                        sheet::update);
+                line.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Update the cell of the sheet and log the update if it succeeds.
+     * The log is flushed before returning, so the update survives the program stopping.
+     * Updates whose input spans lines are applied but not logged.
+     * <p>
+     * If the sheet has been loaded, resized or cleared since the last snapshot,
+     * a snapshot is written and the logs started again first, see {@link #restart()}.
+     * If that fails, the update is applied but not logged, and the snapshot is attempted
+     * again with the next update.
+     *
+     * @param row The row index to update.
+     * @param column The column index to update.
+     * @param input The value as a string to replace within the sheet.
+     * @return Information about the status of performing the update.
+     */
+    @Override
+    public synchronized UpdateResponse update(int row, int column, String input) {
+        boolean restarted = true;
+        if (sheet.getLoadCount() != loads) {
+            try {
+                restart();
+            } catch (IOException e) {
+                failure = e;
+                restarted = false;
+            }
+        }
+        UpdateResponse response = sheet.update(row, column, input);
+        if (!restarted || !response.isSuccess() || input.indexOf('\n') >= 0) {
+            return response;
+        }
+        try {
+            writer.write(row + "," + column + "," + input + "\n");
+            writer.flush();
+            records++;
+            if (records >= compactionRecords) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        return response;
+    }
+
+    /**
+     * Start writing a snapshot of the sheet in the background, unless one is being written.
+     * The log is moved aside and a new log started, and once the snapshot is written
+     * the old log is deleted.
+     * If the previous snapshot failed, the old log is kept until a snapshot succeeds,
+     * and the next snapshot is attempted once the log again holds enough updates.
+     *
+     * @throws IOException If the log cannot be moved aside or a new log started.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (compacting) {
+            return;
+        }
+        if (!Files.exists(oldLog)) {
+            writer.close();
+            Files.move(log, oldLog);
+            writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8);
+        }
+        records = 0;
+        compacting = true;
+        // the sheet as it is now, with every update logged before the new log
+        SheetView view = sheet.snapshot();
+        compactor.execute(() -> compact(view));
+    }
+
+    private void compact(SheetView view) {
+        try {
+            writeSnapshot(view);
+            Files.deleteIfExists(oldLog);
+            failure = null;
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            synchronized (this) {
+                compacting = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of the sheet, which has been loaded, resized or cleared,
+     * then delete the logs and start a new one, as the updates logged before
+     * no longer apply to the sheet.
+     * Waits for a snapshot being written in the background first, so it cannot
+     * replace the new snapshot.
+     * <p>
+     * The logs are deleted before the new snapshot replaces the old one, so if the program
+     * stops in between, the sheet is recovered as it was when the old snapshot was written,
+     * rather than with the updates to the old sheet replayed onto the new one.
+     *
+     * @throws IOException If the snapshot cannot be written or the logs cannot be restarted.
+     */
+    private synchronized void restart() throws IOException {
+        while (compacting) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a snapshot");
+            }
+        }
+        long count = sheet.getLoadCount();
+        Path temporary = writeTemporary(sheet.snapshot());
+        writer.close();
+        Files.deleteIfExists(oldLog);
+        writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8);
+        records = 0;
+        Files.move(temporary, snapshot,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loads = count;
+    }
+
+    /**
+     * Write the view to a temporary file and move it over the snapshot,
+     * so an existing snapshot is only replaced by a complete one.
+     */
+    private void writeSnapshot(SheetView view) throws IOException {
+        Files.move(writeTemporary(view), snapshot,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write the view to the temporary file of the snapshot.
+     *
+     * @return The path of the temporary file.
+     */
+    private Path writeTemporary(SheetView view) throws IOException {
+        Path temporary = Path.of(snapshot + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary)) {
+            BinarySheetFormat.write(view, output);
+        }
+        return temporary;
+    }
+
+    /**
+     * @return True iff a snapshot is being written in the background.
+     */
+    synchronized boolean isCompacting() {
+        return compacting;
+    }
+
+    /**
+     * @return The exception thrown while last writing to the log or a snapshot,
+     *         or null if it succeeded or has been reported.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Reports a failure to write the log or a snapshot on each tick, once per failure.
+     *
+     * @param ui the UI object to register the feature to.
+     */
+    @Override
+    public void register(UI ui) {
+        ui.onTick(prompt -> {
+            IOException failed = failure;
+            if (failed != null) {
+                failure = null;
+                prompt.message("Journal failed: " + failed.getMessage());
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Wait for a snapshot being written, then close the log.
+     * If the sheet has been loaded, resized or cleared since the last snapshot,
+     * a snapshot is written first, see {@link #restart()}.
+     *
+     * @throws IOException If the snapshot cannot be written or the log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (sheet.getLoadCount() != loads) {
+                    restart();
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package sheep.fun;
 
 import sheep.core.SheetUpdate;
 import sheep.core.UpdateResponse;
+import sheep.sheets.CellReferences;
 
 public class Pascal implements Fun {
     private final int startRow;
@@ -24,8 +25,8 @@ public class Pascal implements Fun {
                 } else if (x > y) {
                     response = sheet.update(row, column, "1");
                 } else {
-                    String leftColumn = Character.toString(column - 1 + 65);
-                    String rightColumn = Character.toString(column + 65);
+                    String leftColumn = CellReferences.columnName(column - 1);
+                    String rightColumn = CellReferences.columnName(column);
                     response = sheet.update(row, column,
                             "" + leftColumn + (row - 1) + " + "
                                     + rightColumn + (row - 1));
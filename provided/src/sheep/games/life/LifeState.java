@@ -50,12 +50,15 @@ public class LifeState {
      */
     public void readState(Sheet sheet) {
         clearState();
-        for (int i = 0; i <  sheet.getRows(); i++) {
-            for (int j = 0; j < sheet.getColumns(); j++) {
+        int rows = sheet.getRows();
+        int columns = sheet.getColumns();
+        String[] values = new String[rows * columns];
+        sheet.renderValues(0, 0, rows, columns, values);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
 
                 OnOffCellLocation cell = new OnOffCellLocation(i, j, false);
-                String value = sheet.valueAt(cell).render();
-                if (value.equals("1")) {
+                if (values[i * columns + j].equals("1")) {
                     cell.turnOn();
                 }
                 state.add(cell);
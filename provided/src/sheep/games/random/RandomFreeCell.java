@@ -2,6 +2,7 @@ package sheep.games.random;
 
 import sheep.sheets.CellLocation;
 import sheep.sheets.Sheet;
+import sheep.sheets.ValueKind;
 
 import java.util.Random;
 
@@ -15,11 +16,13 @@ public class RandomFreeCell implements RandomCell {
     }
 
     private boolean isBoardFull() {
-        for (int row = 0; row < sheet.getRows(); row++) {
-            for (int column = 0; column < sheet.getColumns(); column++) {
-                if (sheet.valueAt(row, column).getContent().equals("")) {
-                    return false;
-                }
+        int rows = sheet.getRows();
+        int columns = sheet.getColumns();
+        ValueKind[] kinds = new ValueKind[rows * columns];
+        sheet.readKinds(0, 0, rows, columns, kinds);
+        for (ValueKind kind : kinds) {
+            if (kind == ValueKind.EMPTY) {
+                return false;
             }
         }
         return true;
@@ -63,16 +63,11 @@ public class SnakeSheetManager {
     public List<CellLocation> readFood() {
         List<CellLocation> foodCells = new ArrayList<>();
 
-        for (int i = 0; i < gameSheet.getRows(); i++) {
-            for (int j = 0; j < gameSheet.getColumns(); j++) {
-
-                CellLocation cell = new CellLocation(i, j);
-                String value = gameSheet.valueAt(cell).render();
-                if (value.equals("2")) {
-                    foodCells.add(cell);
-                }
+        gameSheet.forEachOccupied((row, column) -> {
+            if (gameSheet.valueAt(row, column).getContent().equals("2")) {
+                foodCells.add(new CellLocation(row, column));
             }
-        }
+        });
         return foodCells;
     }
 
@@ -5,6 +5,7 @@ import sheep.expression.basic.Constant;
 import sheep.expression.basic.Nothing;
 import sheep.sheets.CellLocation;
 import sheep.sheets.Sheet;
+import sheep.sheets.ValueKind;
 
 /**
  * An object that manages interaction with the sheet for a game of tetros. It handles both reading
@@ -120,8 +121,10 @@ public class TetrosSheetManager {
      * @return True if the row is full, false otherwise.
      */
     private boolean isRowFull(int row) {
-        for (int col = 0; col < gameSheet.getColumns(); col++) {
-            if (gameSheet.valueAt(row, col).getContent().equals("")) {
+        ValueKind[] kinds = new ValueKind[gameSheet.getColumns()];
+        gameSheet.readKinds(row, 0, 1, kinds.length, kinds);
+        for (ValueKind kind : kinds) {
+            if (kind == ValueKind.EMPTY) {
                 return false;
             }
         }
@@ -0,0 +1,113 @@
+package sheep.parsing;
+
+import sheep.expression.Expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parser which remembers the expressions parsed by another parser.
+ * <p>
+ * Expressions are immutable, so the same expression can be returned
+ * every time the same input is parsed. Inputs are normalised by
+ * removing leading and trailing whitespace, which never affects parsing.
+ * Only the most recently used inputs are remembered, up to a fixed capacity.
+ * Inputs that fail to parse are never remembered.
+ * <p>
+ * The cache may be shared between threads.
+ */
+public class CachingParser implements Parser {
+    /** Capacity used when none is given. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Parser parser;
+    private final Map<String, Expression> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Construct a cache in front of a parser with the default capacity.
+     *
+     * @param parser Parser used for inputs that are not cached.
+     */
+    public CachingParser(Parser parser) {
+        this(parser, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct a cache in front of a parser.
+     *
+     * @param parser Parser used for inputs that are not cached.
+     * @param capacity Maximum amount of inputs to remember.
+     * @requires capacity &gt; 0
+     */
+    public CachingParser(Parser parser, int capacity) {
+        this.parser = parser;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Attempt to parse a string expression into an expression,
+     * reusing the result of a previous parse of the same input if possible.
+     *
+     * @param input A string to attempt to parse.
+     * @return The result of parsing the expression.
+     * @throws ParseException If the string input is not recognisable as an expression.
+     */
+    @Override
+    public Expression parse(String input) throws ParseException {
+        String key = input.strip();
+        Expression expression;
+        synchronized (cache) {
+            expression = cache.get(key);
+        }
+        if (expression != null) {
+            hits.incrementAndGet();
+            return expression;
+        }
+        misses.incrementAndGet();
+        expression = parser.parse(key);
+        synchronized (cache) {
+            cache.put(key, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * @return The amount of parses answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The amount of parses that were passed to the underlying parser.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The amount of inputs currently remembered.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Forget every remembered input, the statistics are kept.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package sheep.parsing;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass lexer which splits an input into operator tokens and the atoms between them.
+ * <p>
+ * The input is scanned exactly once and only the position and precedence of
+ * each operator is recorded, the atoms are never copied out of the input.
+ * An input with n operators has n + 1 atoms, where atom i lies between
+ * operator i - 1 and operator i. Atoms may be empty or only contain whitespace.
+ * <p>
+ * Operators within parentheses, such as the arguments of a function call,
+ * are part of the atom containing the parentheses rather than operators of the input.
+ */
+class Lexer {
+    /**
+     * Operator names in order of increasing precedence,
+     * i.e. the index of an operator is its precedence level.
+     */
+    static final String OPERATORS = "=<+-*/";
+
+    /** Precedence level of an atom, higher than every operator. */
+    static final int ATOM = OPERATORS.length();
+
+    private final CharSequence input;
+    private int[] positions = new int[8];
+    private byte[] levels = new byte[8];
+    private int count = 0;
+    private boolean balanced = true;
+
+    /**
+     * Scan an input for operators.
+     *
+     * @param input Input to scan.
+     */
+    Lexer(CharSequence input) {
+        this.input = input;
+        int depth = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char character = input.charAt(i);
+            if (character == '(') {
+                depth++;
+            } else if (character == ')') {
+                balanced &= depth > 0;
+                depth = Math.max(0, depth - 1);
+            } else if (depth == 0) {
+                int level = levelOf(character);
+                if (level >= 0) {
+                    record(i, level);
+                }
+            }
+        }
+        balanced &= depth == 0;
+    }
+
+    private static int levelOf(char character) {
+        return switch (character) {
+            case '=' -> 0;
+            case '<' -> 1;
+            case '+' -> 2;
+            case '-' -> 3;
+            case '*' -> 4;
+            case '/' -> 5;
+            default -> -1;
+        };
+    }
+
+    private void record(int position, int level) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+            levels = Arrays.copyOf(levels, count * 2);
+        }
+        positions[count] = position;
+        levels[count] = (byte) level;
+        count++;
+    }
+
+    /**
+     * @return The input that was scanned.
+     */
+    CharSequence input() {
+        return input;
+    }
+
+    /**
+     * @return True iff every opening parenthesis of the input is closed,
+     *         and no parenthesis is closed before it is opened.
+     */
+    boolean isBalanced() {
+        return balanced;
+    }
+
+    /**
+     * @return The amount of operators within the input.
+     */
+    int operators() {
+        return count;
+    }
+
+    /**
+     * The precedence level of an operator, or -1 past the last operator
+     * so that the end of the input ends an expression at every level.
+     *
+     * @param operator Index of the operator.
+     * @return The precedence level of the operator.
+     */
+    int level(int operator) {
+        return operator < count ? levels[operator] : -1;
+    }
+
+    /**
+     * @param atom Index of the atom.
+     * @return The position of the first character of the atom.
+     */
+    int atomStart(int atom) {
+        return atom == 0 ? 0 : positions[atom - 1] + 1;
+    }
+
+    /**
+     * @param atom Index of the atom.
+     * @return The position after the last character of the atom.
+     */
+    int atomEnd(int atom) {
+        return atom == count ? input.length() : positions[atom];
+    }
+
+    /**
+     * @param atom Index of the atom.
+     * @return True iff the atom does not contain any characters.
+     */
+    boolean isEmptyAtom(int atom) {
+        return atomStart(atom) == atomEnd(atom);
+    }
+
+    /**
+     * @param atom Index of the atom.
+     * @return True iff the atom only contains whitespace.
+     */
+    boolean isBlankAtom(int atom) {
+        for (int i = atomStart(atom); i < atomEnd(atom); i++) {
+            if (!Character.isWhitespace(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
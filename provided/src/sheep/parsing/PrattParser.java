@@ -0,0 +1,317 @@
+package sheep.parsing;
+
+import sheep.expression.Expression;
+import sheep.expression.ExpressionFactory;
+import sheep.expression.InvalidExpression;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precedence climbing parser of basic expressions, arithmetic expressions and function calls.
+ * <p>
+ * Accepts the same inputs as {@link SimpleParser} and makes the same
+ * calls to the expression factory, in the same order.
+ * In addition, an atom may be a function call: a name followed by arguments separated by
+ * commas within parentheses, e.g. "MAX(A1, 4 * 2)", which is created by
+ * {@link ExpressionFactory#createOperator(String, Object[])} with the name of the function
+ * and the parsed arguments. Operators within the parentheses belong to the arguments.
+ * However, the input is scanned once by a {@link Lexer} and each operand is
+ * parsed directly from the input, without splitting, stripping or copying fragments.
+ * Numbers are recognised without relying on {@link NumberFormatException}.
+ * <p>
+ * Operators are parsed in order of increasing precedence:
+ * = &lt; + - * /, where each operator takes every operand of higher precedence
+ * until the next operator of lower or equal precedence, i.e. 4 + 5 + 6 is
+ * Plus(4, 5, 6) and 4 + 5 * 6 is Plus(4, Times(5, 6)).
+ */
+public class PrattParser implements Parser {
+    /** Precedence levels of the operators which may also be the sign of a number. */
+    private static final int PLUS = Lexer.OPERATORS.indexOf('+');
+    private static final int MINUS = Lexer.OPERATORS.indexOf('-');
+
+    private final ExpressionFactory factory;
+
+    /**
+     * Construct a new parser.
+     * Parsed expressions are constructed using the expression factory.
+     *
+     * @param factory Factory used to construct parsed expressions.
+     */
+    public PrattParser(ExpressionFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Attempt to parse a string expression into an expression.
+     * See {@link SimpleParser#parse(String)} for the accepted inputs.
+     *
+     * @param input A string to attempt to parse.
+     * @return The result of parsing the expression.
+     * @throws ParseException If the string input is not recognisable as an expression.
+     */
+    @Override
+    public Expression parse(String input) throws ParseException {
+        return parse((CharSequence) input);
+    }
+
+    /**
+     * Attempt to parse a sequence of characters into an expression,
+     * without copying the sequence.
+     *
+     * @param input Characters to attempt to parse.
+     * @return The result of parsing the expression.
+     * @throws ParseException If the input is not recognisable as an expression.
+     */
+    public Expression parse(CharSequence input) throws ParseException {
+        Lexer lexer = new Lexer(input);
+        if (!lexer.isBalanced()) {
+            throw new ParseException("Unbalanced parentheses: " + input);
+        }
+        try {
+            return new Parse(lexer).expression(0);
+        } catch (InvalidExpression e) {
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * State of parsing a single input.
+     */
+    private class Parse {
+        private final Lexer lexer;
+        private final CharSequence input;
+        /** Index of the next operator, which is also the index of the current atom. */
+        private int next = 0;
+        /** Value of the last number recognised by {@link #number(int, int, boolean)}. */
+        private long number;
+
+        private Parse(Lexer lexer) {
+            this.lexer = lexer;
+            this.input = lexer.input();
+        }
+
+        /**
+         * Parse an expression from the current atom up to the next operator
+         * with a precedence lower than the given level.
+         */
+        private Expression expression(int level) throws ParseException, InvalidExpression {
+            if (level == Lexer.ATOM) {
+                return atom();
+            }
+            if (level <= MINUS && signedNumber(level)) {
+                return factory.createConstant(number);
+            }
+            String name = String.valueOf(Lexer.OPERATORS.charAt(level));
+
+            // an operator without any operands, e.g. "+" or "* *"
+            int end = emptyRun(next, level, true);
+            if (end > next && endsExpression(end, level)) {
+                next = end;
+                return factory.createOperator(name, new Object[0]);
+            }
+            // atoms before this index are known not to begin a run of trailing empty operands
+            int checked = end + 1;
+
+            Expression first = expression(level + 1);
+            if (lexer.level(next) != level) {
+                return first;
+            }
+            List<Expression> operands = new ArrayList<>();
+            operands.add(first);
+            while (lexer.level(next) == level) {
+                next++;
+                if (next >= checked) {
+                    // trailing empty operands are dropped, like String.split
+                    end = emptyRun(next, level, false);
+                    if (endsExpression(end, level)) {
+                        next = end;
+                        break;
+                    }
+                    checked = end + 1;
+                }
+                operands.add(expression(level + 1));
+            }
+            return factory.createOperator(name, operands.toArray());
+        }
+
+        /**
+         * Skip over a run of empty atoms separated by operators of the given level.
+         * The leading atom of an expression is empty if it only contains whitespace,
+         * as whitespace surrounding an expression is ignored.
+         *
+         * @return The index of the first atom that is not followed by an operator of the level,
+         *         or the first non-empty atom, whichever comes first.
+         */
+        private int emptyRun(int atom, int level, boolean leading) {
+            while ((leading ? lexer.isBlankAtom(atom) : lexer.isEmptyAtom(atom))
+                    && lexer.level(atom) == level) {
+                atom++;
+                leading = false;
+            }
+            return atom;
+        }
+
+        /**
+         * Whether the atom is the last atom of the expression at the given level
+         * and is empty once trailing whitespace is ignored.
+         */
+        private boolean endsExpression(int atom, int level) {
+            return lexer.isBlankAtom(atom) && lexer.level(atom) < level;
+        }
+
+        /**
+         * Recognise a number with a leading sign, e.g. "-42", that makes up the entire
+         * expression from the current atom at the given level.
+         * Consumes the number and stores it in {@link #number} if found.
+         */
+        private boolean signedNumber(int level) {
+            int sign = next;
+            int operand = sign + 1;
+            int signLevel = lexer.level(sign);
+            if ((signLevel != PLUS && signLevel != MINUS) || signLevel < level
+                    || !lexer.isBlankAtom(sign)
+                    || lexer.level(operand) >= level) {
+                return false;
+            }
+            int start = lexer.atomStart(operand);
+            int end = lexer.atomEnd(operand);
+            while (end > start && Character.isWhitespace(input.charAt(end - 1))) {
+                end--;
+            }
+            boolean negative = signLevel == MINUS;
+            if (!number(start, end, negative)) {
+                return false;
+            }
+            next = operand;
+            return true;
+        }
+
+        /**
+         * Parse the current atom as an empty expression, constant, reference or function call.
+         */
+        private Expression atom() throws ParseException, InvalidExpression {
+            int start = lexer.atomStart(next);
+            int end = lexer.atomEnd(next);
+            while (start < end && Character.isWhitespace(input.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(input.charAt(end - 1))) {
+                end--;
+            }
+            if (start == end) {
+                return factory.createEmpty();
+            }
+            if (number(start, end, false)) {
+                return factory.createConstant(number);
+            }
+            for (int i = start; i < end; i++) {
+                if (input.charAt(i) == '(') {
+                    return call(start, i, end);
+                }
+            }
+            for (int i = start; i < end; i++) {
+                char character = input.charAt(i);
+                if (!(Character.isAlphabetic(character) || Character.isDigit(character))) {
+                    throw new ParseException("Unknown input: " + input.subSequence(start, end));
+                }
+            }
+            return factory.createReference(input.subSequence(start, end).toString());
+        }
+
+        /**
+         * Parse a function call between start and end, whose arguments open at the given
+         * parenthesis, e.g. "MAX(A1, 4)". Each argument is parsed as an expression of its own.
+         */
+        private Expression call(int start, int open, int end)
+                throws ParseException, InvalidExpression {
+            int nameEnd = open;
+            while (nameEnd > start && Character.isWhitespace(input.charAt(nameEnd - 1))) {
+                nameEnd--;
+            }
+            if (nameEnd == start || !Character.isAlphabetic(input.charAt(start))
+                    || input.charAt(end - 1) != ')') {
+                throw new ParseException("Unknown input: " + input.subSequence(start, end));
+            }
+            for (int i = start; i < nameEnd; i++) {
+                char character = input.charAt(i);
+                if (!(Character.isAlphabetic(character) || Character.isDigit(character))) {
+                    throw new ParseException("Unknown function: " + input.subSequence(start, end));
+                }
+            }
+
+            List<Expression> arguments = new ArrayList<>();
+            int depth = 0;
+            int argument = open + 1;
+            for (int i = open + 1; i < end - 1; i++) {
+                char character = input.charAt(i);
+                if (character == '(') {
+                    depth++;
+                } else if (character == ')') {
+                    if (depth == 0) {
+                        // the call closed before the end of the atom, e.g. "F(1)(2)"
+                        throw new ParseException("Unknown input: " + input.subSequence(start, end));
+                    }
+                    depth--;
+                } else if (character == ',' && depth == 0) {
+                    arguments.add(argument(argument, i));
+                    argument = i + 1;
+                }
+            }
+            if (!arguments.isEmpty() || !isBlank(argument, end - 1)) {
+                arguments.add(argument(argument, end - 1));
+            }
+            String name = input.subSequence(start, nameEnd).toString();
+            return factory.createOperator(name, arguments.toArray());
+        }
+
+        /**
+         * Parse the argument of a function call between start and end,
+         * without copying the input.
+         */
+        private Expression argument(int start, int end) throws ParseException {
+            if (isBlank(start, end)) {
+                throw new ParseException("Missing argument: " + input);
+            }
+            return parse(CharBuffer.wrap(input, start, end));
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!Character.isWhitespace(input.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Recognise the digits between start and end as a long,
+         * by the rules of {@link Long#parseLong(String)}.
+         * The value is stored in {@link #number} if the digits are a valid long.
+         */
+        private boolean number(int start, int end, boolean negative) {
+            if (start == end) {
+                return false;
+            }
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long multiplicationLimit = limit / 10;
+            // accumulate negatively, as the magnitude of MIN_VALUE exceeds MAX_VALUE
+            long result = 0;
+            for (int i = start; i < end; i++) {
+                int digit = Character.digit(input.charAt(i), 10);
+                if (digit < 0 || result < multiplicationLimit) {
+                    return false;
+                }
+                result *= 10;
+                if (result < limit + digit) {
+                    return false;
+                }
+                result -= digit;
+            }
+            number = negative ? result : -result;
+            return true;
+        }
+    }
+}
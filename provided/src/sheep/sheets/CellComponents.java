@@ -0,0 +1,154 @@
+package sheep.sheets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Partitions the cells of a sheet into connected components of the dependency graph.
+ * <p>
+ * Components are maintained incrementally using a union-find structure.
+ * Whenever a formula is inserted, the cell and all of its dependencies are merged
+ * into a single component. Components are never split when a dependency is removed,
+ * so a component may contain cells that are no longer connected.
+ * This is conservative: two cells in different components never affect each other.
+ * <p>
+ * Each component has a lock which must be held whilst any cell within the
+ * component is being updated. As writers to disjoint components hold different locks,
+ * they are able to update the sheet concurrently.
+ */
+class CellComponents {
+    private final Map<CellLocation, CellLocation> parents = new HashMap<>();
+    private final Map<CellLocation, Integer> sizes = new HashMap<>();
+    private final Map<CellLocation, ReentrantLock> locks = new HashMap<>();
+
+    /**
+     * The representative cell of the component containing the given cell.
+     *
+     * @param location A cell location within the sheet.
+     * @return The root of the component containing the location.
+     */
+    synchronized CellLocation find(CellLocation location) {
+        CellLocation root = location;
+        CellLocation parent = parents.get(root);
+        while (parent != null) {
+            root = parent;
+            parent = parents.get(root);
+        }
+        // path compression
+        CellLocation current = location;
+        while (!current.equals(root)) {
+            CellLocation next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    /**
+     * Acquire the locks of every component containing one of the given cells,
+     * then merge those components into a single component.
+     * <p>
+     * Locks are always acquired in the same order to prevent deadlocks.
+     * If another writer merges one of the components before all the locks are acquired,
+     * the locks are released and the attempt is repeated.
+     *
+     * @param members Cells which must belong to the same component.
+     * @requires members is not empty
+     * @return The locks that were acquired, to be released with {@link #unlock(List)}.
+     */
+    List<ReentrantLock> lockAndMerge(Collection<CellLocation> members) {
+        while (true) {
+            List<CellLocation> roots = new ArrayList<>();
+            List<ReentrantLock> acquired = new ArrayList<>();
+            synchronized (this) {
+                for (CellLocation member : members) {
+                    CellLocation root = find(member);
+                    if (!roots.contains(root)) {
+                        roots.add(root);
+                    }
+                }
+                Collections.sort(roots);
+                for (CellLocation root : roots) {
+                    acquired.add(locks.computeIfAbsent(root, key -> new ReentrantLock()));
+                }
+            }
+            for (ReentrantLock lock : acquired) {
+                lock.lock();
+            }
+            if (tryMerge(roots)) {
+                return acquired;
+            }
+            unlock(acquired);
+        }
+    }
+
+    /**
+     * Merge the components containing the given cells without acquiring their locks.
+     * Must only be called whilst no writers are updating the sheet.
+     *
+     * @param members Cells which must belong to the same component.
+     */
+    synchronized void merge(Collection<CellLocation> members) {
+        CellLocation merged = null;
+        for (CellLocation member : members) {
+            CellLocation root = find(member);
+            if (merged == null) {
+                merged = root;
+            } else if (!merged.equals(root)) {
+                merged = union(merged, root);
+            }
+        }
+    }
+
+    /**
+     * Release locks acquired by {@link #lockAndMerge(Collection)}.
+     *
+     * @param acquired The locks to release.
+     */
+    void unlock(List<ReentrantLock> acquired) {
+        for (int i = acquired.size() - 1; i >= 0; i--) {
+            acquired.get(i).unlock();
+        }
+    }
+
+    private synchronized boolean tryMerge(List<CellLocation> roots) {
+        for (CellLocation root : roots) {
+            if (parents.containsKey(root)) {
+                // merged by another writer since the lock was looked up
+                return false;
+            }
+        }
+        CellLocation merged = roots.get(0);
+        for (int i = 1; i < roots.size(); i++) {
+            merged = union(merged, roots.get(i));
+        }
+        return true;
+    }
+
+    private CellLocation union(CellLocation first, CellLocation second) {
+        int firstSize = sizes.getOrDefault(first, 1);
+        int secondSize = sizes.getOrDefault(second, 1);
+        CellLocation root = firstSize >= secondSize ? first : second;
+        CellLocation child = root == first ? second : first;
+        parents.put(child, root);
+        sizes.put(root, firstSize + secondSize);
+        sizes.remove(child);
+        locks.remove(child);
+        return root;
+    }
+
+    /**
+     * Forget all components so that every cell is in its own component.
+     * Must only be called whilst no component locks are held.
+     */
+    synchronized void clear() {
+        parents.clear();
+        sizes.clear();
+        locks.clear();
+    }
+}
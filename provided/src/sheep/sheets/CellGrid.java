@@ -0,0 +1,103 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.Arrays;
+
+/**
+ * Dense row-major storage of the rendered form of every cell value in a sheet.
+ * <p>
+ * Each value is rendered and classified once when it is stored,
+ * so that reading the sheet does not render or allocate per cell.
+ * Ranges of cells are copied into caller-provided buffers,
+ * where the cell at (row, column) of the range is stored at index
+ * {@code row * columns + column}.
+ */
+class CellGrid {
+    private final int rows;
+    private final int columns;
+    private final String[] contents;
+    private final long[] numbers;
+    private final ValueKind[] kinds;
+
+    /**
+     * Construct a grid of the given dimensions where every cell is empty.
+     *
+     * @param rows Amount of rows in the grid.
+     * @param columns Amount of columns in the grid.
+     */
+    CellGrid(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.contents = new String[rows * columns];
+        this.numbers = new long[rows * columns];
+        this.kinds = new ValueKind[rows * columns];
+        Arrays.fill(contents, "");
+        Arrays.fill(kinds, ValueKind.EMPTY);
+    }
+
+    /**
+     * Store the value of a cell, ignored if the cell is outside the grid.
+     *
+     * @param row The row of the cell.
+     * @param column The column of the cell.
+     * @param value The value of the cell.
+     * @return The rendered value, or null if the cell is outside the grid.
+     */
+    String set(int row, int column, Expression value) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            return null;
+        }
+        int index = row * columns + column;
+        String content = value.render();
+        long number = 0;
+        ValueKind kind = content.isEmpty() ? ValueKind.EMPTY : ValueKind.OTHER;
+        if (value.isError()) {
+            kind = ValueKind.ERROR;
+        } else if (value.isNumeric()) {
+            try {
+                number = value.value();
+                kind = ValueKind.NUMBER;
+            } catch (TypeError ignored) {
+                // not numeric after all
+            }
+        }
+        contents[index] = content;
+        numbers[index] = number;
+        kinds[index] = kind;
+        return content;
+    }
+
+    /**
+     * The rendered value of a cell within the grid.
+     *
+     * @param row The row of the cell.
+     * @param column The column of the cell.
+     * @return The rendered value of the cell.
+     */
+    String contentAt(int row, int column) {
+        return contents[row * columns + column];
+    }
+
+    void copyContents(int row, int column, int rows, int columns, String[] into) {
+        for (int offset = 0; offset < rows; offset++) {
+            System.arraycopy(contents, (row + offset) * this.columns + column,
+                    into, offset * columns, columns);
+        }
+    }
+
+    void copyNumbers(int row, int column, int rows, int columns, long[] into) {
+        for (int offset = 0; offset < rows; offset++) {
+            System.arraycopy(numbers, (row + offset) * this.columns + column,
+                    into, offset * columns, columns);
+        }
+    }
+
+    void copyKinds(int row, int column, int rows, int columns, ValueKind[] into) {
+        for (int offset = 0; offset < rows; offset++) {
+            System.arraycopy(kinds, (row + offset) * this.columns + column,
+                    into, offset * columns, columns);
+        }
+    }
+}
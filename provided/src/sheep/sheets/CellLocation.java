@@ -1,20 +1,25 @@
 package sheep.sheets;
 
 
-import java.util.Objects;
 import java.util.Optional;
 
 /**
  * A location of a cell within a grid.
  * This class represents a location via a row, column coordinate system.
  * <p>
- * Notably columns are represented as character, e.g. in cell A1,
- * the column is 0 and the row is 1.
+ * Notably columns are represented as letters, e.g. in cell A1,
+ * the column is 0 and the row is 1, and in cell AB3 the column is 27.
+ * See {@link CellReferences} for the naming of columns.
+ * <p>
+ * Cell locations are ordered in row-major order,
+ * that is, by row and then by column.
  * @stage2
  */
-public class CellLocation {
+public class CellLocation implements Comparable<CellLocation> {
     private final int row;
     private final int column;
+    /* The name of the cell, computed when first requested as it is used as a key of states. */
+    private String name;
 
     /**
      * Construct a new cell location at the given row and column.
@@ -47,7 +52,7 @@ public class CellLocation {
      * }</pre>
      *
      * @requires row and column are greater than or equal to zero.
-     * @requires column is less than 26.
+     * @requires column is less than {@link CellReferences#MAX_COLUMNS}.
      * @param row A number representing the row number.
      * @param column A number representing the column (see description of method).
      */
@@ -59,12 +64,14 @@ public class CellLocation {
     /**
      * Attempt to parse a string as a reference to a cell location.
      * If the string is not a reference to a cell location, returns {@link Optional#empty()}.
-     * The format of the reference is a single uppercase character followed by
-     * an integer without spaces and without extraneous characters after the integer or before the character.
+     * The format of the reference is one to three uppercase characters followed by
+     * an integer without spaces and without extraneous characters after the integer or before the characters,
+     * as parsed by {@link CellReferences#parse(CharSequence)}.
      *
      * <pre>
      * {@code
      * CellLocation.maybeReference("A2") // Optional.of(new CellLocation(2, 'A'))
+     * CellLocation.maybeReference("AB2") // Optional.of(new CellLocation(2, 27))
      * CellLocation.maybeReference("2A") // Optional.empty()
      * CellLocation.maybeReference("A 2") // Optional.empty()
      * CellLocation.maybeReference(" A2 ") // Optional.empty()
@@ -76,19 +83,12 @@ public class CellLocation {
      *         otherwise the empty optional.
      */
     public static Optional<CellLocation> maybeReference(String ref) {
-        if (ref.length() < 2 || ref.charAt(0) < 'A' || ref.charAt(0) > 'Z') {
+        long reference = CellReferences.parse(ref);
+        if (reference == CellReferences.NONE) {
             return Optional.empty();
         }
-        char column = ref.charAt(0);
-        StringBuilder rowString = new StringBuilder();
-        for (int i = 1; i < ref.length(); i++) {
-            if (!Character.isDigit(ref.charAt(i))) {
-                return Optional.empty();
-            }
-            rowString.append(ref.charAt(i));
-        }
-        int row = Integer.parseInt(rowString.toString());
-        return Optional.of(new CellLocation(row, column));
+        return Optional.of(new CellLocation(CellReferences.row(reference),
+                CellReferences.column(reference)));
     }
 
     /**
@@ -128,16 +128,35 @@ public class CellLocation {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(row, column);
+        return 31 * row + column;
+    }
+
+    /**
+     * Compare cell locations in row-major order.
+     * @param other another cell location to compare against.
+     * @return a negative number, zero, or a positive number if this location
+     *         is before, equal to, or after the other location in row-major order.
+     */
+    @Override
+    public int compareTo(CellLocation other) {
+        if (row != other.row) {
+            return Integer.compare(row, other.row);
+        }
+        return Integer.compare(column, other.column);
     }
 
     /**
      * A string representation of a cell location.
-     * @return A string representation of this cell location, e.g. A2 or C23.
+     * @return A string representation of this cell location, e.g. A2, C23 or AB4.
      */
     @Override
     public String toString() {
-        return "" + Character.toString(getColumn() + 'A') + getRow();
+        String result = name;
+        if (result == null) {
+            result = CellReferences.format(row, column);
+            name = result;
+        }
+        return result;
     }
 }
 
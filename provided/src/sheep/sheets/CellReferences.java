@@ -0,0 +1,208 @@
+package sheep.sheets;
+
+/**
+ * Parses and formats A1 style references to cells, e.g. A0, Z12 or AA3.
+ * <p>
+ * Columns are named by one to three uppercase letters in the order
+ * A, B, ..., Z, AA, AB, ..., ZZ, AAA, ..., XFD, so there are at most {@link #MAX_COLUMNS} columns.
+ * Rows are named by their number, which may be any non-negative int.
+ * <p>
+ * A reference is represented as a packed long holding its row and column,
+ * so parsing a reference does not allocate.
+ * <pre>
+ * {@code
+ * long reference = CellReferences.parse("AB12");
+ * CellReferences.row(reference) // 12
+ * CellReferences.column(reference) // 27
+ * CellReferences.format(reference) // "AB12"
+ * CellReferences.parse("A 2") // CellReferences.NONE
+ * }</pre>
+ */
+public final class CellReferences {
+    /** The result of parsing text which is not a reference. */
+    public static final long NONE = -1;
+    /** The amount of columns which can be named, i.e. the columns A to XFD. */
+    public static final int MAX_COLUMNS = 16384;
+
+    /* The column occupies the low bits of a packed reference, the row the bits above. */
+    private static final int COLUMN_BITS = 14;
+    private static final int COLUMN_MASK = (1 << COLUMN_BITS) - 1;
+    /* The longest column name, i.e. XFD. */
+    private static final int MAX_LETTERS = 3;
+
+    private CellReferences() {
+    }
+
+    /**
+     * Pack a row and column into a reference.
+     *
+     * @param row The row of the reference.
+     * @param column The column of the reference.
+     * @requires 0 &lt;= row and 0 &lt;= column &lt; MAX_COLUMNS
+     * @return The packed reference.
+     */
+    public static long pack(int row, int column) {
+        return (long) row << COLUMN_BITS | column;
+    }
+
+    /**
+     * @param reference A packed reference other than {@link #NONE}.
+     * @return The row of the reference.
+     */
+    public static int row(long reference) {
+        return (int) (reference >>> COLUMN_BITS);
+    }
+
+    /**
+     * @param reference A packed reference other than {@link #NONE}.
+     * @return The column of the reference.
+     */
+    public static int column(long reference) {
+        return (int) (reference & COLUMN_MASK);
+    }
+
+    /**
+     * Parse the whole of the text as a reference.
+     *
+     * @param text Text which may be a reference.
+     * @requires text != null
+     * @return The packed reference, or {@link #NONE} if the text is not a reference.
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parse a range of the text as a reference.
+     * <p>
+     * A reference is one to three uppercase letters naming a column
+     * followed by one or more digits naming a row, without any other characters.
+     *
+     * @param text Text which may contain a reference.
+     * @param start The index of the first character of the range.
+     * @param end The index after the last character of the range.
+     * @requires 0 &lt;= start &lt;= end &lt;= text.length()
+     * @return The packed reference, or {@link #NONE} if the range is not a reference.
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        int index = start;
+        int column = 0;
+        while (index < end && index - start < MAX_LETTERS) {
+            char letter = text.charAt(index);
+            if (letter < 'A' || letter > 'Z') {
+                break;
+            }
+            column = column * 26 + (letter - 'A' + 1);
+            index++;
+        }
+        if (index == start || index == end || column > MAX_COLUMNS) {
+            return NONE;
+        }
+        long row = 0;
+        for (; index < end; index++) {
+            int digit = text.charAt(index) - '0';
+            if (digit < 0 || digit > 9) {
+                return NONE;
+            }
+            row = row * 10 + digit;
+            if (row > Integer.MAX_VALUE) {
+                return NONE;
+            }
+        }
+        return pack((int) row, column - 1);
+    }
+
+    /**
+     * The amount of characters in the name of a column.
+     *
+     * @param column A column index.
+     * @requires 0 &lt;= column &lt; MAX_COLUMNS
+     * @return The length of the name of the column.
+     */
+    public static int columnLength(int column) {
+        if (column < 26) {
+            return 1;
+        }
+        return column < 26 + 26 * 26 ? 2 : 3;
+    }
+
+    /**
+     * Write the name of a column into a buffer, e.g. column 27 is written as "AB".
+     *
+     * @param column A column index.
+     * @param buffer The buffer to write the name into.
+     * @param offset The index in the buffer to write the first letter at.
+     * @requires 0 &lt;= column &lt; MAX_COLUMNS
+     * @return The index in the buffer after the last letter written.
+     */
+    public static int formatColumn(int column, char[] buffer, int offset) {
+        int end = offset + columnLength(column);
+        int remaining = column + 1;
+        for (int index = end - 1; index >= offset; index--) {
+            remaining--;
+            buffer[index] = (char) ('A' + remaining % 26);
+            remaining /= 26;
+        }
+        return end;
+    }
+
+    /**
+     * Write a reference into a buffer, e.g. row 12 of column 27 is written as "AB12".
+     * The buffer must have space for at least three letters and ten digits after the offset.
+     *
+     * @param row The row of the reference.
+     * @param column The column of the reference.
+     * @param buffer The buffer to write the reference into.
+     * @param offset The index in the buffer to write the first character at.
+     * @requires 0 &lt;= row and 0 &lt;= column &lt; MAX_COLUMNS
+     * @return The index in the buffer after the last character written.
+     */
+    public static int format(int row, int column, char[] buffer, int offset) {
+        int digits = 1;
+        for (int remaining = row / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        int end = formatColumn(column, buffer, offset) + digits;
+        int remaining = row;
+        for (int index = end - 1; digits > 0; index--, digits--) {
+            buffer[index] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * The name of a column, e.g. "A", "Z" or "AA".
+     *
+     * @param column A column index.
+     * @requires 0 &lt;= column &lt; MAX_COLUMNS
+     * @return The name of the column.
+     */
+    public static String columnName(int column) {
+        char[] buffer = new char[MAX_LETTERS];
+        return new String(buffer, 0, formatColumn(column, buffer, 0));
+    }
+
+    /**
+     * The A1 style name of a cell, e.g. "A0" or "AB12".
+     *
+     * @param row The row of the cell.
+     * @param column The column of the cell.
+     * @requires 0 &lt;= row and 0 &lt;= column &lt; MAX_COLUMNS
+     * @return The name of the cell.
+     */
+    public static String format(int row, int column) {
+        char[] buffer = new char[MAX_LETTERS + 10];
+        return new String(buffer, 0, format(row, column, buffer, 0));
+    }
+
+    /**
+     * The A1 style name of a packed reference.
+     *
+     * @param reference A packed reference other than {@link #NONE}.
+     * @return The name of the referenced cell.
+     */
+    public static String format(long reference) {
+        return format(row(reference), column(reference));
+    }
+}
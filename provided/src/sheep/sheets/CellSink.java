@@ -0,0 +1,30 @@
+package sheep.sheets;
+
+/**
+ * Callback which receives the source text of cells being loaded into a sheet,
+ * see {@link CellSource}.
+ */
+@FunctionalInterface
+public interface CellSink {
+    /**
+     * Called with the source text of each loaded cell.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param source The source text of the formula of the cell.
+     */
+    void accept(int row, int column, String source);
+
+    /**
+     * Called with each loaded cell whose formula is a literal number,
+     * for sources which store numbers without their source text.
+     * By default, the number is passed to {@link #accept(int, int, String)} as text.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @param number The number the formula of the cell consists of.
+     */
+    default void acceptNumber(int row, int column, long number) {
+        accept(row, column, Long.toString(number));
+    }
+}
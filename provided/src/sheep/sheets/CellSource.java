@@ -0,0 +1,20 @@
+package sheep.sheets;
+
+/**
+ * Supplies the source text of cells to load into a sheet one cell at a time,
+ * see {@link Sheet#load(int, int, CellSource)}, so that the cells
+ * never need to be held in memory all at once.
+ *
+ * @param <E> The type of exception thrown if the cells cannot be supplied.
+ */
+@FunctionalInterface
+public interface CellSource<E extends Exception> {
+    /**
+     * Pass the source text of every cell to load to the sink.
+     * Cells which are not passed to the sink are left with the default formula.
+     *
+     * @param sink The callback to pass each cell to.
+     * @throws E If the cells cannot be supplied.
+     */
+    void supply(CellSink sink) throws E;
+}
@@ -11,6 +11,7 @@ import java.util.Map;
  * that renders cells different colours based on the content.
  * <p>
  * Cells containing a value of 1-8 will have a different background colour.
+ * Stale values are drawn in the same foreground colour as in a sheet.
  */
 public class GameSheet extends Sheet {
     /**
@@ -24,7 +25,7 @@ public class GameSheet extends Sheet {
      * @param rows              Amount of rows for the new sheet.
      * @param columns           Amount of columns for the new sheet.
      * @requires rows &gt; 0
-     * @requires columns &gt; 0 &amp;&amp; columns &lt; 26
+     * @requires columns &gt; 0 &amp;&amp; columns &lt;= CellReferences.MAX_COLUMNS
      */
     public GameSheet(Parser parser, Map<String, Expression> builtins,
                      Expression defaultExpression, int rows, int columns) {
@@ -33,8 +34,9 @@ public class GameSheet extends Sheet {
 
     @Override
     public ViewElement valueAt(int row, int column) {
-        ViewElement result = super.valueAt(row, column);
-        return new ViewElement(result.getContent(), colourOf(result.getContent()), "black");
+        ViewElement element = super.valueAt(row, column);
+        return new ViewElement(element.getContent(), colourOf(element.getContent()),
+                element.getForeground());
     }
 
     /**
@@ -0,0 +1,174 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.parsing.ParseException;
+import sheep.parsing.Parser;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A formula loaded into a sheet that has not necessarily been parsed yet.
+ * <p>
+ * Literal numbers are kept as a primitive and stand in for the constant they parse to:
+ * they have no dependencies, evaluate to themselves and render as the number.
+ * Every parser must construct literal numbers as constants
+ * (see {@link sheep.parsing.SimpleParser#parse(String)}), so a sheet full of numbers
+ * can be loaded without parsing any of them.
+ * Any other formula is kept as its source text and is parsed the first time
+ * it is evaluated or its dependencies are requested.
+ * <p>
+ * {@link #materialize()} parses the source to obtain the expression the formula stands for,
+ * which the sheet uses whenever a formula leaves the sheet.
+ */
+class LazyFormula extends Expression {
+    private final String source;
+    private final Parser parser;
+    private final boolean literal;
+    private final long number;
+    private volatile Expression parsed;
+
+    private LazyFormula(String source, Parser parser, boolean literal, long number) {
+        this.source = source;
+        this.parser = parser;
+        this.literal = literal;
+        this.number = number;
+    }
+
+    /**
+     * Create a formula from source text, recognising literal numbers without parsing.
+     *
+     * @param source The source text of the formula.
+     * @param parser The parser used when the formula is materialized.
+     * @return A formula standing for the parsed source.
+     */
+    static LazyFormula of(String source, Parser parser) {
+        int start = 0;
+        int end = source.length();
+        while (start < end && Character.isWhitespace(source.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(source.charAt(end - 1))) {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (source.charAt(start) == '-' || source.charAt(start) == '+')) {
+            negative = source.charAt(start) == '-';
+            start++;
+        }
+        if (start == end) {
+            return new LazyFormula(source, parser, false, 0);
+        }
+        // accumulate negatively, as the magnitude of MIN_VALUE exceeds MAX_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(source.charAt(i), 10);
+            if (digit < 0 || result < limit / 10 || result * 10 < limit + digit) {
+                return new LazyFormula(source, parser, false, 0);
+            }
+            result = result * 10 - digit;
+        }
+        return new LazyFormula(source, parser, true, negative ? result : -result);
+    }
+
+    /**
+     * Create a formula from a literal number, whose source text is the number.
+     *
+     * @param number The number the formula consists of.
+     * @param parser The parser used when the formula is materialized.
+     * @return A formula standing for the parsed number.
+     */
+    static LazyFormula of(long number, Parser parser) {
+        return new LazyFormula(null, parser, true, number);
+    }
+
+    /**
+     * @return True iff the formula is a literal number.
+     */
+    boolean isLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return True iff the source text of the formula is only whitespace.
+     */
+    boolean isBlank() {
+        return !literal && source.isBlank();
+    }
+
+    /**
+     * Parse the source text of the formula, at most once.
+     *
+     * @return The expression that the formula stands for.
+     * @throws ParseException If the source text cannot be parsed.
+     */
+    Expression materialize() throws ParseException {
+        Expression expression = parsed;
+        if (expression == null) {
+            expression = parser.parse(source != null ? source : Long.toString(number));
+            parsed = expression;
+        }
+        return expression;
+    }
+
+    private Expression parsed() {
+        try {
+            return materialize();
+        } catch (ParseException e) {
+            throw new IllegalStateException("Unable to parse loaded formula: " + source, e);
+        }
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return literal ? Set.of() : parsed().dependencies();
+    }
+
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        return literal ? this : parsed().value(state);
+    }
+
+    @Override
+    public long value() throws TypeError {
+        return literal ? number : parsed().value();
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return literal || parsed().isNumeric();
+    }
+
+    @Override
+    public boolean isReference() {
+        return !literal && parsed().isReference();
+    }
+
+    @Override
+    public String render() {
+        return literal ? Long.toString(number) : parsed().render();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof LazyFormula other)) {
+            return false;
+        }
+        return literal && other.literal && number == other.number;
+    }
+
+    @Override
+    public int hashCode() {
+        return literal ? Long.hashCode(number) : System.identityHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return literal ? Long.toString(number) : parsed().toString();
+    }
+}
@@ -1,15 +1,25 @@
 package sheep.sheets;
 
+import sheep.core.CellVisitor;
+import sheep.core.IncrementalCalculation;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.UpdateResponse;
 import sheep.core.ViewElement;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
+import sheep.expression.basic.ErrorValue;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Spreadsheet that evaluates its expressions and updates dependant cells.
@@ -19,17 +29,49 @@ import java.util.*;
  * Each cell location of a spreadsheet has a formula and a value.
  * The formula is what has been written in the cell by a user
  * whereas the value is what value the cell contains.
+ * <p>
+ * Updates to cells are safe to perform from multiple threads.
+ * The cells are partitioned into connected components of the dependency graph,
+ * updates to cells in disjoint components are performed concurrently,
+ * whereas updates within the same component are serialized.
  * @stage2
  */
-public class Sheet implements SheetView, SheetUpdate {
-
-    private final Map<CellLocation, Expression> formulas = new HashMap<>();
-    private final Map<CellLocation, Expression> values = new HashMap<>();
-    private final Map<CellLocation, Set<CellLocation>> usages = new HashMap<>();
+public class Sheet implements SheetView, SheetUpdate, IncrementalCalculation {
+    private final Map<CellLocation, Expression> formulas = new ConcurrentHashMap<>();
+    private final Map<CellLocation, Expression> values = new ConcurrentHashMap<>();
+    private final Map<CellLocation, Set<CellLocation>> usages = new ConcurrentHashMap<>();
+    /* Cells whose formula is not the default formula, in row-major order. */
+    private final Set<CellLocation> occupied = new ConcurrentSkipListSet<>();
+    /* Rendered values of the cells within the current dimensions. */
+    private volatile CellGrid grid;
+    private final CellComponents components = new CellComponents();
+    /* Cell updates hold the read lock, changes to the whole sheet hold the write lock. */
+    private final ReadWriteLock structure = new ReentrantReadWriteLock();
     private final Map<String, Expression> builtins;
+    /* State used to evaluate formulas without dependencies. */
+    private final Map<String, Expression> builtinState;
     private final Expression defaultExpression;
-    private int rows;
-    private int columns;
+    private final String defaultRender;
+    private volatile int rows;
+    private volatile int columns;
+    /* Passes over each reference loop when calculating iteratively, zero if disabled. */
+    private volatile int maxIterations = 0;
+    /* Whether updates defer evaluation until the sheet is recalculated. */
+    private volatile boolean manual = false;
+    /* Cells whose value is out of date in manual calculation mode, closed under usages. */
+    private final Set<CellLocation> stale = ConcurrentHashMap.newKeySet();
+    /* Whether updates only evaluate the updated cell, leaving its usages stale. */
+    private volatile boolean incremental = false;
+    /* Order in which the stale cells are calculated, null once more cells become stale. */
+    private volatile List<CellLocation> plan;
+    /* Index of the next cell of the plan to calculate. */
+    private int planned;
+    /* Values of the cells and builtins, by name, without copying. */
+    private final Map<String, Expression> cellState = new CellState();
+    /* Counts changes to formulas and dimensions. */
+    private final LongAdder modifications = new LongAdder();
+    /* Counts clears, resizes and loads, which change many cells at once. Guarded by structure. */
+    private volatile long loads = 0;
 
     private final Parser parser;
 
@@ -44,7 +86,7 @@ public class Sheet implements SheetView, SheetUpdate {
      * @param rows Amount of rows for the new sheet.
      * @param columns Amount of columns for the new sheet.
      * @requires rows &gt; 0
-     * @requires columns &gt; 0 &amp;&amp; columns &lt; 26
+     * @requires columns &gt; 0 &amp;&amp; columns &lt;= CellReferences.MAX_COLUMNS
      */
     protected Sheet(Parser parser, Map<String, Expression> builtins,
           Expression defaultExpression, int rows, int columns) {
@@ -52,7 +94,10 @@ public class Sheet implements SheetView, SheetUpdate {
         this.rows = rows;
         this.columns = columns;
         this.defaultExpression = defaultExpression;
+        this.defaultRender = defaultExpression.render();
         this.builtins = new HashMap<>(builtins);
+        this.builtinState = Collections.unmodifiableMap(this.builtins);
+        this.grid = new CellGrid(rows, columns);
         this.populate();
     }
 
@@ -61,10 +106,20 @@ public class Sheet implements SheetView, SheetUpdate {
      * formula in every cell.
      */
     public void clear() {
-        populate();
+        structure.writeLock().lock();
+        try {
+            loads++;
+            populate();
+            components.clear();
+        } finally {
+            structure.writeLock().unlock();
+        }
     }
 
     private void populate() {
+        occupied.clear();
+        stale.clear();
+        plan = null;
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < columns; j++) {
                 CellLocation location = new CellLocation(i, j);
@@ -74,9 +129,9 @@ public class Sheet implements SheetView, SheetUpdate {
     }
 
     private void populate(CellLocation location) {
-        values.put(location, defaultExpression);
-        formulas.put(location, defaultExpression);
-        usages.put(location, new HashSet<>());
+        setValue(location, defaultExpression);
+        setFormula(location, defaultExpression);
+        usages.put(location, ConcurrentHashMap.newKeySet());
     }
 
     /**
@@ -89,18 +144,32 @@ public class Sheet implements SheetView, SheetUpdate {
      * @param columns New number of columns.
      */
     public void updateDimensions(int rows, int columns) {
-        for (int newRow = 0; newRow < rows - this.rows; newRow++) {
-            for (int column = 0; column < columns; column++) {
-                populate(new CellLocation(newRow + this.rows, column));
+        structure.writeLock().lock();
+        try {
+            for (int newRow = 0; newRow < rows - this.rows; newRow++) {
+                for (int column = 0; column < columns; column++) {
+                    populate(new CellLocation(newRow + this.rows, column));
+                }
             }
-        }
-        for (int newCol = 0; newCol < columns - this.columns; newCol++) {
-            for (int row = 0; row < columns; row++) {
-                populate(new CellLocation(row, newCol + this.columns));
+            for (int newCol = 0; newCol < columns - this.columns; newCol++) {
+                for (int row = 0; row < rows; row++) {
+                    populate(new CellLocation(row, newCol + this.columns));
+                }
+            }
+            CellGrid resized = new CellGrid(rows, columns);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    resized.set(row, column, values.get(new CellLocation(row, column)));
+                }
             }
+            this.grid = resized;
+            this.rows = rows;
+            this.columns = columns;
+            loads++;
+            modifications.increment();
+        } finally {
+            structure.writeLock().unlock();
         }
-        this.rows = rows;
-        this.columns = columns;
     }
 
     /**
@@ -121,6 +190,98 @@ public class Sheet implements SheetView, SheetUpdate {
         return columns;
     }
 
+    /**
+     * Enable or disable iterative calculation of reference loops.
+     * <p>
+     * By default, the behaviour of a reference loop is unspecified.
+     * When iterative calculation is enabled, the cells affected by an update are
+     * partitioned into strongly connected components of the dependency graph.
+     * Components without a loop are evaluated once in topological order,
+     * whereas the cells of a loop are evaluated repeatedly, in row-major order and
+     * each using the latest values of the others, until no value changes
+     * or the maximum amount of passes is reached.
+     *
+     * @param maxIterations The maximum amount of passes over each loop,
+     *                      or zero to disable iterative calculation.
+     * @requires maxIterations &geq; 0
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * The maximum amount of passes over each reference loop, see {@link #setMaxIterations(int)}.
+     * @return The maximum amount of passes, or zero if iterative calculation is disabled.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Switch the sheet into or out of manual calculation mode.
+     * <p>
+     * In manual calculation mode, {@link #update(CellLocation, Expression)} only stores
+     * the new formula and marks the cell, and every cell which transitively uses it, as stale.
+     * Stale cells keep their previous value, rendered in grey, until {@link #recalculate()}
+     * evaluates every stale cell once.
+     * Switching back to automatic calculation recalculates the sheet.
+     *
+     * @param manual Whether to use manual calculation.
+     */
+    public void setManualCalculation(boolean manual) {
+        this.manual = manual;
+        if (!manual) {
+            recalculate();
+        }
+    }
+
+    /**
+     * Whether the sheet is in manual calculation mode, see {@link #setManualCalculation(boolean)}.
+     * @return True iff updates defer evaluation until the sheet is recalculated.
+     */
+    public boolean isManualCalculation() {
+        return manual;
+    }
+
+    /**
+     * Switch the sheet into or out of incremental calculation mode.
+     * <p>
+     * In incremental calculation mode, {@link #update(CellLocation, Expression)} evaluates
+     * only the updated cell and marks the cells which transitively use it as stale,
+     * so an update takes time independent of the amount of cells using it.
+     * The stale cells are brought up to date by a series of calls to {@link #calculate(long)},
+     * each bounded in time, e.g. between the events of a user interface.
+     * Switching back to evaluating every update in full recalculates the sheet.
+     *
+     * @param incremental Whether to use incremental calculation.
+     */
+    public void setIncrementalCalculation(boolean incremental) {
+        this.incremental = incremental;
+        if (!incremental) {
+            recalculate();
+        }
+    }
+
+    /**
+     * Whether the sheet is in incremental calculation mode,
+     * see {@link #setIncrementalCalculation(boolean)}.
+     * @return True iff updates defer the evaluation of the cells using the updated cell.
+     */
+    public boolean isIncrementalCalculation() {
+        return incremental;
+    }
+
+    /**
+     * Whether the value of the cell is out of date as the sheet
+     * is in manual calculation mode and has not been recalculated.
+     *
+     * @param location A cell location within the spreadsheet.
+     * @return True iff the value of the cell is stale.
+     */
+    public boolean isStale(CellLocation location) {
+        return !stale.isEmpty() && stale.contains(location);
+    }
+
     /**
      * Whether the given cell location exists within the sheet.
      *
@@ -148,7 +309,150 @@ public class Sheet implements SheetView, SheetUpdate {
      */
     @Override
     public ViewElement valueAt(int row, int column) {
-        return new ViewElement(valueAt(new CellLocation(row, column)).render(), "white", "black");
+        String foreground = isStale(new CellLocation(row, column)) ? "gray" : "black";
+        return new ViewElement(grid.contentAt(row, column), "white", foreground);
+    }
+
+    /**
+     * Render the values of a rectangular range of cells into the given buffer.
+     * <p>
+     * Values are rendered when they are calculated, so reading a range
+     * does not allocate or render any values.
+     *
+     * @param row The row index of the top-left cell of the range.
+     * @param column The column index of the top-left cell of the range.
+     * @param rows The number of rows in the range.
+     * @param columns The number of columns in the range.
+     * @param contents The buffer to store the rendered values in.
+     * @requires the range is within the bounds of the spreadsheet
+     * @requires contents.length &geq; rows * columns
+     */
+    @Override
+    public void renderValues(int row, int column, int rows, int columns, String[] contents) {
+        grid.copyContents(row, column, rows, columns, contents);
+    }
+
+    /**
+     * Visit every occupied cell of the spreadsheet in row-major order.
+     * <p>
+     * A cell is occupied if its formula does not render the same as the default expression.
+     * The sheet keeps an index of occupied cells, so visiting is proportional to the number
+     * of occupied cells rather than the size of the sheet.
+     *
+     * @param visitor The callback to invoke with the row and column of each occupied cell.
+     */
+    @Override
+    public void forEachOccupied(CellVisitor visitor) {
+        int rows = this.rows;
+        int columns = this.columns;
+        for (CellLocation location : occupied) {
+            if (location.getRow() >= rows) {
+                // remembered cells beyond the current dimensions
+                return;
+            }
+            if (location.getColumn() < columns) {
+                visitor.visit(location.getRow(), location.getColumn());
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot of the formulas and values of the occupied cells of the sheet.
+     * <p>
+     * The sheet is locked against updates while the occupied cells are copied,
+     * which takes time proportional to the amount of occupied cells.
+     * Expressions are not copied or rendered, so the snapshot is cheap to take and
+     * may then be read on any thread while the sheet continues to change.
+     *
+     * @return A view of the sheet as it is now.
+     */
+    public SheetSnapshot snapshot() {
+        structure.writeLock().lock();
+        try {
+            int rows = this.rows;
+            int columns = this.columns;
+            List<CellLocation> locations = new ArrayList<>();
+            for (CellLocation location : occupied) {
+                if (location.getRow() >= rows) {
+                    break;
+                }
+                if (location.getColumn() < columns) {
+                    locations.add(location);
+                }
+            }
+            CellLocation[] cells = locations.toArray(new CellLocation[0]);
+            Expression[] cellFormulas = new Expression[cells.length];
+            Expression[] cellValues = new Expression[cells.length];
+            for (int index = 0; index < cells.length; index++) {
+                cellFormulas[index] = formulas.get(cells[index]);
+                cellValues[index] = values.get(cells[index]);
+            }
+            return new SheetSnapshot(rows, columns, cells, cellFormulas, cellValues,
+                    defaultExpression);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The amount of changes made to the formulas and dimensions of the sheet.
+     * The count only increases, so comparing it with an earlier count
+     * tells whether the sheet has changed since.
+     *
+     * @return The amount of changes made to the sheet.
+     */
+    public long getModificationCount() {
+        return modifications.sum();
+    }
+
+    /**
+     * The amount of times the sheet has been cleared, resized or loaded,
+     * each of which may change every cell at once.
+     * The count only increases, so comparing it with an earlier count
+     * tells whether the sheet has been replaced since, rather than updated cell by cell.
+     *
+     * @return The amount of times the sheet has been cleared, resized or loaded.
+     */
+    public long getLoadCount() {
+        return loads;
+    }
+
+    /**
+     * Read the numeric values of a rectangular range of cells into the given buffer.
+     * <p>
+     * The value of the cell at ({@code row + r}, {@code column + c}) is stored
+     * at index {@code r * columns + c} of the buffer.
+     * Cells whose value is not numeric (see {@link #readKinds(int, int, int, int, ValueKind[])})
+     * are read as zero.
+     *
+     * @param row The row index of the top-left cell of the range.
+     * @param column The column index of the top-left cell of the range.
+     * @param rows The number of rows in the range.
+     * @param columns The number of columns in the range.
+     * @param numbers The buffer to store the numeric values in.
+     * @requires the range is within the bounds of the spreadsheet
+     * @requires numbers.length &geq; rows * columns
+     */
+    public void readNumbers(int row, int column, int rows, int columns, long[] numbers) {
+        grid.copyNumbers(row, column, rows, columns, numbers);
+    }
+
+    /**
+     * Read the kinds of values of a rectangular range of cells into the given buffer.
+     * <p>
+     * The kind of the cell at ({@code row + r}, {@code column + c}) is stored
+     * at index {@code r * columns + c} of the buffer.
+     *
+     * @param row The row index of the top-left cell of the range.
+     * @param column The column index of the top-left cell of the range.
+     * @param rows The number of rows in the range.
+     * @param columns The number of columns in the range.
+     * @param kinds The buffer to store the kinds of values in.
+     * @requires the range is within the bounds of the spreadsheet
+     * @requires kinds.length &geq; rows * columns
+     */
+    public void readKinds(int row, int column, int rows, int columns, ValueKind[] kinds) {
+        grid.copyKinds(row, column, rows, columns, kinds);
     }
 
     /**
@@ -164,7 +468,8 @@ public class Sheet implements SheetView, SheetUpdate {
      */
     @Override
     public ViewElement formulaAt(int row, int column) {
-        return new ViewElement(formulaAt(new CellLocation(row, column)).render(), "white", "black");
+        // loaded literal numbers render as themselves without being parsed
+        return new ViewElement(formulas.get(new CellLocation(row, column)).render(), "white", "black");
     }
 
     /**
@@ -201,6 +506,314 @@ public class Sheet implements SheetView, SheetUpdate {
         }
     }
 
+    /**
+     * Clear the sheet and then load a formula into each cell from its source text.
+     * <p>
+     * The result is the same as updating each cell with {@link #update(int, int, String)}
+     * in dependency order, ignoring cells that fail to update,
+     * but loading is proportional to the amount of formulas rather than
+     * the amount of cells times the size of the sheet.
+     * Blank cells share a single parsed empty expression
+     * and literal numbers are stored without being parsed (see {@link LazyFormula}).
+     * Every other formula is parsed once and all formulas are evaluated
+     * together in dependency order.
+     *
+     * @param sources The source text of each cell, indexed by row and then column.
+     * @requires sources is within the bounds (row/columns) of the spreadsheet.
+     * @return A successful response if every cell was loaded, otherwise a failed response
+     *         whose message gives the amount of cells which could not be parsed or evaluated,
+     *         and so hold the default formula, and the first of them in row-major order.
+     */
+    public UpdateResponse load(String[][] sources) {
+        return loadCells(sink -> {
+            for (int row = 0; row < sources.length; row++) {
+                for (int column = 0; column < sources[row].length; column++) {
+                    sink.accept(row, column, sources[row][column]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Resize the sheet and load the cells supplied by the source, as per {@link #load(String[][])}.
+     * <p>
+     * Cells are parsed and stored as the source supplies them, so the source
+     * may read them incrementally rather than holding every cell in memory.
+     * Only the formulas which are not literal numbers are kept until
+     * the end of loading, when they are evaluated together in dependency order.
+     * Cells supplied outside the new dimensions are ignored.
+     * <p>
+     * The sheet is locked against updates while loading.
+     * If the source throws, the dimensions and formulas of the sheet
+     * are restored to those before loading and the exception is rethrown.
+     *
+     * @param rows The amount of rows of the loaded sheet.
+     * @param columns The amount of columns of the loaded sheet.
+     * @param source Supplies the source text of the cells to load.
+     * @param <E> The type of exception thrown by the source.
+     * @requires rows &gt; 0 &amp;&amp; columns &gt; 0
+     * @return A successful response if every cell was loaded, otherwise a failed response
+     *         as per {@link #load(String[][])}.
+     * @throws E If the source fails to supply the cells.
+     */
+    public <E extends Exception> UpdateResponse load(int rows, int columns, CellSource<E> source)
+            throws E {
+        structure.writeLock().lock();
+        try {
+            int previousRows = this.rows;
+            int previousColumns = this.columns;
+            Map<CellLocation, Expression> previous = new HashMap<>();
+            for (CellLocation location : occupied) {
+                previous.put(location, formulas.get(location));
+            }
+            updateDimensions(rows, columns);
+            try {
+                return loadCells(source);
+            } catch (Exception e) {
+                updateDimensions(previousRows, previousColumns);
+                restore(previous);
+                throw e;
+            }
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clear the sheet and load the cells supplied by the source.
+     *
+     * @return Whether every cell was loaded, see {@link #load(String[][])}.
+     */
+    private <E extends Exception> UpdateResponse loadCells(CellSource<E> source) throws E {
+        structure.writeLock().lock();
+        try {
+            loads++;
+            populate();
+            components.clear();
+            Loading loading = new Loading();
+            source.supply(loading);
+            loading.parse();
+            evaluate(loading.pending, loading.parsed, loading::reject);
+            return loading.response();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clear the sheet and store the given formulas, which were previously in the sheet.
+     */
+    private void restore(Map<CellLocation, Expression> formulas) {
+        populate();
+        components.clear();
+        List<CellLocation> pending = new ArrayList<>(formulas.keySet());
+        evaluate(pending, formulas, location -> { });
+    }
+
+    /**
+     * Stores each cell supplied while loading, deferring the parsing and evaluation
+     * of formulas which are not literal numbers until every cell has been supplied.
+     * <p>
+     * The deferred formulas are then parsed in the order they were supplied, on the
+     * loading thread, as parsers need not be safe to use from several threads.
+     * Blank formulas are parsed once and shared by every blank cell.
+     */
+    private class Loading implements CellSink {
+        private final Map<CellLocation, LazyFormula> unparsed = new LinkedHashMap<>();
+        private final List<CellLocation> pending = new ArrayList<>();
+        private final Map<CellLocation, Expression> parsed = new HashMap<>();
+        private Expression blank = null;
+        private Expression blankValue = null;
+        /* The amount of cells which could not be loaded, and the first in row-major order. */
+        private int rejected = 0;
+        private CellLocation firstRejected = null;
+
+        @Override
+        public void accept(int row, int column, String source) {
+            if (row >= rows || column >= columns) {
+                return;
+            }
+            CellLocation location = new CellLocation(row, column);
+            LazyFormula formula = LazyFormula.of(source, parser);
+            unparsed.remove(location);
+            if (formula.isLiteral()) {
+                setFormula(location, formula);
+                setValue(location, formula);
+                return;
+            }
+            unparsed.put(location, formula);
+        }
+
+        @Override
+        public void acceptNumber(int row, int column, long number) {
+            if (row >= rows || column >= columns) {
+                return;
+            }
+            CellLocation location = new CellLocation(row, column);
+            LazyFormula formula = LazyFormula.of(number, parser);
+            unparsed.remove(location);
+            setFormula(location, formula);
+            setValue(location, formula);
+        }
+
+        /**
+         * Parse the deferred formulas, dropping those which cannot be parsed.
+         * Blank cells whose formula has no dependencies are stored straight away.
+         */
+        private void parse() {
+            for (Map.Entry<CellLocation, LazyFormula> entry : unparsed.entrySet()) {
+                CellLocation location = entry.getKey();
+                LazyFormula formula = entry.getValue();
+                try {
+                    if (!formula.isBlank()) {
+                        parsed.put(location, formula.materialize());
+                        pending.add(location);
+                        continue;
+                    }
+                    if (blank == null) {
+                        blank = formula.materialize();
+                        blankValue = blank.dependencies().isEmpty()
+                                ? blank.value(builtinState) : null;
+                    }
+                    if (blankValue != null) {
+                        setFormula(location, blank);
+                        setValue(location, blankValue);
+                    } else {
+                        parsed.put(location, blank);
+                        pending.add(location);
+                    }
+                } catch (ParseException | TypeError e) {
+                    // unable to update the cell, it keeps the default formula
+                    reject(location);
+                }
+            }
+        }
+
+        /**
+         * Count a cell which could not be parsed or evaluated, and so keeps the default formula.
+         */
+        private void reject(CellLocation location) {
+            rejected++;
+            if (firstRejected == null || location.compareTo(firstRejected) < 0) {
+                firstRejected = location;
+            }
+        }
+
+        private UpdateResponse response() {
+            if (rejected == 0) {
+                return UpdateResponse.success();
+            }
+            return UpdateResponse.fail(rejected + (rejected == 1 ? " cell" : " cells")
+                    + " could not be loaded, the first at " + firstRejected);
+        }
+    }
+
+    /**
+     * Insert and evaluate parsed formulas into a cleared sheet in dependency order.
+     * Formulas that fail to evaluate leave the default formula in their cell,
+     * and their location is passed to the rejected consumer.
+     */
+    private void evaluate(List<CellLocation> pending, Map<CellLocation, Expression> parsed,
+                          Consumer<CellLocation> rejected) {
+        Map<CellLocation, Integer> waiting = new HashMap<>();
+        for (CellLocation location : pending) {
+            Expression formula = parsed.get(location);
+            List<CellLocation> members = component(location, formula.dependencies());
+            components.merge(members);
+            int count = 0;
+            for (CellLocation dependency : members.subList(1, members.size())) {
+                usages.get(dependency).add(location);
+                if (parsed.containsKey(dependency) && !dependency.equals(location)) {
+                    count++;
+                }
+            }
+            waiting.put(location, count);
+            formulas.put(location, formula);
+        }
+
+        // evaluate formulas after all the formulas they depend on (Kahn's algorithm)
+        Deque<CellLocation> ready = new ArrayDeque<>();
+        for (CellLocation location : pending) {
+            if (waiting.get(location) == 0) {
+                ready.add(location);
+            }
+        }
+        Map<String, Expression> state = createState();
+        Set<CellLocation> evaluated = new HashSet<>();
+        // cells evaluated once a reference loop was found, in the order they were evaluated
+        List<CellLocation> looped = new ArrayList<>();
+        boolean loops = false;
+        int remaining = 0;
+        while (evaluated.size() < pending.size()) {
+            if (ready.isEmpty()) {
+                // the remaining formulas form reference loops, evaluate them in any order
+                loops = true;
+                while (evaluated.contains(pending.get(remaining))) {
+                    remaining++;
+                }
+                ready.add(pending.get(remaining));
+            }
+            CellLocation location = ready.poll();
+            if (!evaluated.add(location)) {
+                continue;
+            }
+            if (!loadValue(location, parsed.get(location), state)) {
+                rejected.accept(location);
+            } else if (loops) {
+                looped.add(location);
+            }
+            for (CellLocation usage : usages.get(location)) {
+                Integer count = waiting.get(usage);
+                if (count != null && !evaluated.contains(usage)) {
+                    waiting.put(usage, count - 1);
+                    if (count == 1) {
+                        ready.add(usage);
+                    }
+                }
+            }
+        }
+
+        // the first pass over the loops has been made, repeat until the values are stable
+        boolean changed = true;
+        for (int iteration = 1; iteration < maxIterations && changed; iteration++) {
+            changed = false;
+            for (CellLocation location : looped) {
+                Expression previous = state.get(location.toString());
+                if (formulas.get(location) == defaultExpression) {
+                    continue;
+                }
+                if (loadValue(location, parsed.get(location), state)) {
+                    changed |= !state.get(location.toString()).equals(previous);
+                } else {
+                    rejected.accept(location);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate a loaded formula and store it in its cell,
+     * or leave the default formula in the cell if it fails to evaluate.
+     *
+     * @return Whether the formula was stored.
+     */
+    private boolean loadValue(CellLocation location, Expression formula,
+                              Map<String, Expression> state) {
+        try {
+            Expression value = formula.value(state);
+            setFormula(location, formula);
+            setValue(location, value);
+            state.put(location.toString(), value);
+            return true;
+        } catch (TypeError e) {
+            updateUsage(location, defaultExpression);
+            formulas.put(location, defaultExpression);
+            setValue(location, defaultExpression);
+            state.put(location.toString(), defaultExpression);
+            return false;
+        }
+    }
+
     /**
      * The formula expression currently stored at the location in the spreadsheet.
      * @param location A cell location within the spreadsheet.
@@ -208,7 +821,8 @@ public class Sheet implements SheetView, SheetUpdate {
      * @return The formula expression at the given cell location.
      */
     public Expression formulaAt(CellLocation location) {
-        return formulas.get(location);
+        Expression formula = formulas.get(location);
+        return formula instanceof LazyFormula lazy ? materialize(location, lazy) : formula;
     }
 
     /**
@@ -223,7 +837,24 @@ public class Sheet implements SheetView, SheetUpdate {
      * @return The value expression at the given cell location.
      */
     public Expression valueAt(CellLocation location) {
-        return values.get(location);
+        Expression value = values.get(location);
+        return value instanceof LazyFormula lazy ? materialize(location, lazy) : value;
+    }
+
+    /**
+     * Replace a loaded literal number with the constant it stands for,
+     * which is both the formula and the value of the cell.
+     */
+    private Expression materialize(CellLocation location, LazyFormula lazy) {
+        Expression parsed;
+        try {
+            parsed = lazy.materialize();
+        } catch (ParseException e) {
+            return lazy;
+        }
+        formulas.replace(location, lazy, parsed);
+        values.replace(location, lazy, parsed);
+        return parsed;
     }
 
     /**
@@ -256,19 +887,18 @@ public class Sheet implements SheetView, SheetUpdate {
      * @return All the cells which use the given cell as a dependency.
      */
     public Set<CellLocation> usedBy(CellLocation location) {
-        Set<CellLocation> usages = new HashSet<>();
-        usedBy(location, usages);
-        return usages;
-    }
-
-    private void usedBy(CellLocation location, Set<CellLocation> seen) {
-        for (CellLocation next : usages.get(location)) {
-            if (seen.contains(next)) {
-                return;
+        Set<CellLocation> seen = new HashSet<>();
+        // explicit work stack, so long chains of references cannot overflow the call stack
+        Deque<CellLocation> work = new ArrayDeque<>();
+        work.push(location);
+        while (!work.isEmpty()) {
+            for (CellLocation next : usages.get(work.pop())) {
+                if (seen.add(next)) {
+                    work.push(next);
+                }
             }
-            seen.add(next);
-            usedBy(next, seen);
         }
+        return seen;
     }
 
     private Map<String, Expression> createState() {
@@ -296,6 +926,20 @@ public class Sheet implements SheetView, SheetUpdate {
      * <p>
      * If a {@link TypeError} is thrown at any point during the update of this cell or any dependant cells,
      * the sheet should return to the same state as before this method was called.
+     * The core expressions never throw whilst being evaluated, type problems and
+     * division by zero evaluate to an {@link sheep.expression.basic.ErrorValue}
+     * which is stored as the value of the cell, so updates with them always commit.
+     * <p>
+     * The cell and its dependencies are merged into a single component of the dependency graph,
+     * whose lock is held for the duration of the update. Updates to other components
+     * may proceed concurrently.
+     * <p>
+     * Writing an expression without dependencies, such as a constant,
+     * into a cell which is not used by any other cell and whose previous formula
+     * had no dependencies, only stores the formula and its value.
+     * <p>
+     * In manual calculation mode (see {@link #setManualCalculation(boolean)}) nothing is evaluated,
+     * the formula is stored and the cell and its usages are marked as stale.
      * <p>
      * The behaviour of inserting a reference loop into the sheet,
      * e.g. A0 refers to A1, A1 refers to A2, A2 refers to A0 or B1 refers to B1,
@@ -308,50 +952,629 @@ public class Sheet implements SheetView, SheetUpdate {
      *                  results in a TypeError being thrown.
      */
     public void update(CellLocation location, Expression cell) throws TypeError {
-        Map<String, Expression> state = createState();
-        state.put(location.toString(), cell.value(state));
-        // recursively pre-calculate all the updated values
+        structure.readLock().lock();
+        try {
+            Set<String> dependencies = cell.dependencies();
+            List<ReentrantLock> locks = components.lockAndMerge(component(location, dependencies));
+            try {
+                if (manual) {
+                    updateUsage(location, cell);
+                    setFormula(location, cell);
+                    markStale(location);
+                } else if (dependencies.isEmpty() && isLeaf(location)) {
+                    // nothing to recalculate and no usages to maintain
+                    storeLeaf(location, cell, cell.value(builtinState));
+                } else if (incremental) {
+                    applyDeferredFormula(location, cell, dependencies);
+                } else {
+                    applyFormula(location, cell);
+                }
+            } finally {
+                components.unlock(locks);
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store a formula in incremental calculation mode.
+     * The cell is evaluated straight away unless it depends upon a stale cell,
+     * in which case it is marked as stale, and every cell using it is marked as stale.
+     */
+    private void applyDeferredFormula(CellLocation location, Expression cell,
+                                      Set<String> dependencies) throws TypeError {
+        boolean ready = true;
+        for (String dependency : dependencies) {
+            CellLocation reference = locate(dependency);
+            if (reference != null && !reference.equals(location) && stale.contains(reference)) {
+                ready = false;
+                break;
+            }
+        }
+        // evaluate before storing anything, so a type error leaves the sheet unchanged
+        Expression value = ready ? cell.value(cellState) : null;
+        updateUsage(location, cell);
+        setFormula(location, cell);
+        if (ready) {
+            setValue(location, value);
+            stale.remove(location);
+            for (CellLocation usage : usages.get(location)) {
+                markStale(usage);
+            }
+        } else {
+            markStale(location);
+        }
+    }
+
+    /**
+     * Mark the cell and every cell which transitively uses it as stale.
+     * Cells which are already stale are not visited again, as the cells using them are stale.
+     * The plan of the calculation is discarded even if the cell was already stale,
+     * as its dependencies may have changed.
+     */
+    private void markStale(CellLocation location) {
+        Deque<CellLocation> work = new ArrayDeque<>();
+        plan = null;
+        if (stale.add(location)) {
+            work.push(location);
+        }
+        while (!work.isEmpty()) {
+            for (CellLocation usage : usages.get(work.pop())) {
+                if (stale.add(usage)) {
+                    work.push(usage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate every stale cell exactly once, in dependency order,
+     * so that the sheet is up to date after updates in manual calculation mode.
+     * <p>
+     * Cells in reference loops are evaluated last, in row-major order,
+     * repeatedly if iterative calculation is enabled (see {@link #setMaxIterations(int)}).
+     * As the updates have already been stored, a cell whose formula throws a
+     * {@link TypeError} is given the value {@link ErrorValue#TYPE}.
+     */
+    public void recalculate() {
+        calculateStale(Long.MAX_VALUE);
+    }
+
+    /**
+     * Whether stale cells are waiting for {@link #calculate(long)}.
+     * In manual calculation mode stale cells wait for {@link #recalculate()} instead,
+     * so none are waiting to be calculated.
+     *
+     * @return True iff stale cells remain outside of manual calculation mode.
+     */
+    @Override
+    public boolean isCalculating() {
+        return !manual && !stale.isEmpty();
+    }
+
+    @Override
+    public boolean isCalculating(int row, int column) {
+        return !manual && isStale(new CellLocation(row, column));
+    }
+
+    /**
+     * Evaluate stale cells, in the order of {@link #recalculate()},
+     * until every stale cell is up to date or the time budget is spent.
+     * <p>
+     * The order of the stale cells is planned once and resumed by later calls,
+     * it is only planned again once an update marks a cell as stale.
+     * Cells are evaluated against the live values of the sheet, so a call
+     * does not copy the values of the whole sheet.
+     * Cells in reference loops are evaluated within a single call.
+     * <p>
+     * In manual calculation mode nothing is evaluated, as stale cells keep their
+     * previous value until {@link #recalculate()} is called.
+     *
+     * @param budgetNanos The time, in nanoseconds, after which no further cells are evaluated.
+     * @return True iff stale cells remain outside of manual calculation mode.
+     */
+    @Override
+    public boolean calculate(long budgetNanos) {
+        return !manual && calculateStale(budgetNanos);
+    }
+
+    /**
+     * Evaluate stale cells until none remain or the time budget is spent,
+     * see {@link #calculate(long)}.
+     */
+    private boolean calculateStale(long budgetNanos) {
+        long start = System.nanoTime();
+        structure.writeLock().lock();
+        try {
+            if (stale.isEmpty()) {
+                return false;
+            }
+            if (plan == null) {
+                plan = planCalculation();
+                planned = 0;
+            }
+            List<CellLocation> order = plan;
+            while (planned < order.size()) {
+                CellLocation location = order.get(planned++);
+                recalculate(location);
+                stale.remove(location);
+                if (System.nanoTime() - start >= budgetNanos) {
+                    return !stale.isEmpty();
+                }
+            }
+
+            // the cells left over are in, or use, reference loops
+            List<CellLocation> looped = new ArrayList<>(stale);
+            Collections.sort(looped);
+            boolean changed = true;
+            for (int iteration = 0; iteration < Math.max(1, maxIterations) && changed; iteration++) {
+                changed = false;
+                for (CellLocation location : looped) {
+                    changed |= recalculate(location);
+                }
+            }
+            stale.clear();
+            plan = null;
+            return false;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Order the stale cells which are not part of, nor use, a reference loop
+     * such that each cell comes after the stale cells it depends upon.
+     */
+    private List<CellLocation> planCalculation() {
+        Map<CellLocation, Integer> waiting = new HashMap<>();
+        for (CellLocation location : stale) {
+            waiting.putIfAbsent(location, 0);
+            for (CellLocation usage : usages.get(location)) {
+                if (!usage.equals(location) && stale.contains(usage)) {
+                    waiting.merge(usage, 1, Integer::sum);
+                }
+            }
+        }
+        Deque<CellLocation> ready = new ArrayDeque<>();
+        for (Map.Entry<CellLocation, Integer> entry : waiting.entrySet()) {
+            if (entry.getValue() == 0) {
+                ready.add(entry.getKey());
+            }
+        }
+
+        List<CellLocation> order = new ArrayList<>(waiting.size());
+        while (!ready.isEmpty()) {
+            CellLocation location = ready.poll();
+            order.add(location);
+            for (CellLocation usage : usages.get(location)) {
+                Integer count = waiting.get(usage);
+                if (count != null && !usage.equals(location)) {
+                    waiting.put(usage, count - 1);
+                    if (count == 1) {
+                        ready.add(usage);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Evaluate the formula of a stale cell and store its value.
+     *
+     * @return Whether the value of the cell changed.
+     */
+    private boolean recalculate(CellLocation location) {
+        Expression value;
+        try {
+            value = formulas.get(location).value(cellState);
+        } catch (TypeError e) {
+            value = ErrorValue.TYPE;
+        }
+        Expression previous = values.get(location);
+        setValue(location, value);
+        return !value.equals(previous);
+    }
+
+    /**
+     * A read-only view of the current values of the cells, by name, and the builtins,
+     * as used to evaluate formulas without copying the values of the sheet.
+     */
+    private class CellState extends AbstractMap<String, Expression> {
+        private CellLocation locate(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            long reference = CellReferences.parse(name);
+            if (reference == CellReferences.NONE) {
+                return null;
+            }
+            CellLocation location = new CellLocation(CellReferences.row(reference),
+                    CellReferences.column(reference));
+            return formulas.containsKey(location) ? location : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return locate(key) != null || builtins.containsKey(key);
+        }
+
+        @Override
+        public Expression get(Object key) {
+            CellLocation location = locate(key);
+            return location != null ? values.get(location) : builtins.get(key);
+        }
+
+        @Override
+        public Set<Entry<String, Expression>> entrySet() {
+            return Collections.unmodifiableMap(createState()).entrySet();
+        }
+    }
+
+    /**
+     * The values of the cells as seen while an update is evaluated, that is, the values
+     * calculated by the update so far over the current values of the sheet.
+     * Only the values calculated by the update are held, so evaluating an update
+     * does not copy the values of the whole sheet.
+     */
+    private class UpdateState extends AbstractMap<String, Expression> {
+        private final Map<String, Expression> calculated = new HashMap<>();
+
+        @Override
+        public boolean containsKey(Object key) {
+            return calculated.containsKey(key) || cellState.containsKey(key);
+        }
+
+        @Override
+        public Expression get(Object key) {
+            Expression value = calculated.get(key);
+            return value != null ? value : cellState.get(key);
+        }
+
+        @Override
+        public Expression put(String key, Expression value) {
+            return calculated.put(key, value);
+        }
+
+        @Override
+        public Set<Entry<String, Expression>> entrySet() {
+            Map<String, Expression> state = createState();
+            state.putAll(calculated);
+            return Collections.unmodifiableMap(state).entrySet();
+        }
+    }
+
+    /**
+     * The cells which must share a component with the location once the cell is inserted,
+     * that is, the location itself and every cell it depends upon.
+     */
+    private List<CellLocation> component(CellLocation location, Set<String> dependencies) {
+        List<CellLocation> members = new ArrayList<>();
+        members.add(location);
+        for (String dependency : dependencies) {
+            CellLocation reference = locate(dependency);
+            if (reference != null) {
+                members.add(reference);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Whether the cell at the location is neither used by any other cell
+     * nor uses any other cell.
+     */
+    private boolean isLeaf(CellLocation location) {
+        Set<CellLocation> usedBy = usages.get(location);
+        return usedBy != null && usedBy.isEmpty()
+                && formulas.get(location).dependencies().isEmpty();
+    }
+
+    private void applyFormula(CellLocation location, Expression cell) throws TypeError {
+        if (maxIterations > 0) {
+            applyIterativeFormula(location, cell);
+            return;
+        }
+        Map<String, Expression> state = new UpdateState();
+        Map<CellLocation, Expression> updated = new HashMap<>();
+        Expression value = cell.value(state);
+        state.put(location.toString(), value);
+        updated.put(location, value);
+        // pre-calculate all the updated values
         // this approach triggers a TypeError before the state is modified
-        applyUpdate(state, location);
+        if (!value.equals(values.get(location))) {
+            applyUpdate(state, location, updated);
+        }
 
         // no type error, update the state
         updateUsage(location, cell);
-        formulas.put(location, cell);
-        for (CellLocation existing : values.keySet()) {
-            if (state.containsKey(existing.toString())) {
-                values.put(existing, state.get(existing.toString()));
-            }
+        setFormula(location, cell);
+        // only the updated cells are written back as other components may be changing
+        for (Map.Entry<CellLocation, Expression> entry : updated.entrySet()) {
+            setValue(entry.getKey(), entry.getValue());
         }
     }
 
-    private void applyUpdate(Map<String, Expression> state, CellLocation location)
+    /**
+     * Insert a formula whilst iterative calculation is enabled.
+     * <p>
+     * The usages of the new formula are recorded before evaluation, so that any loop
+     * the formula closes is found, and are restored if a {@link TypeError} is thrown.
+     */
+    private void applyIterativeFormula(CellLocation location, Expression cell) throws TypeError {
+        Expression previous = formulas.get(location);
+        Map<String, Expression> state = new UpdateState();
+        Map<CellLocation, Expression> updated = new HashMap<>();
+        updateUsage(location, previous, cell);
+        try {
+            Expression value = cell.value(state);
+            state.put(location.toString(), value);
+            updated.put(location, value);
+            applyIterativeUpdate(state, location, cell, updated);
+        } catch (TypeError e) {
+            updateUsage(location, cell, previous);
+            throw e;
+        }
+
+        setFormula(location, cell);
+        for (Map.Entry<CellLocation, Expression> entry : updated.entrySet()) {
+            setValue(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Re-evaluate the cells which use the value of the given location,
+     * one strongly connected component at a time in topological order.
+     * Components that form a reference loop are iterated until stable,
+     * see {@link #setMaxIterations(int)}.
+     */
+    private void applyIterativeUpdate(Map<String, Expression> state, CellLocation location,
+                                      Expression cell, Map<CellLocation, Expression> updated)
             throws TypeError {
-        for (CellLocation usage : usages.get(location)) {
+        Set<CellLocation> dirty = new HashSet<>(usages.get(location));
+        for (List<CellLocation> component : stronglyConnected(location)) {
+            CellLocation first = component.get(0);
+            boolean loop = component.size() > 1 || usages.get(first).contains(first);
+            if (!loop) {
+                if (first.equals(location) || !dirty.contains(first)) {
+                    continue;
+                }
+                Expression previous = state.get(first.toString());
+                Expression value = formulas.get(first).value(state);
+                state.put(first.toString(), value);
+                updated.put(first, value);
+                if (!value.equals(previous)) {
+                    dirty.addAll(usages.get(first));
+                }
+                continue;
+            }
+            if (!component.contains(location) && Collections.disjoint(component, dirty)) {
+                continue;
+            }
+
+            Collections.sort(component);
+            boolean changed = true;
+            for (int iteration = 0; iteration < maxIterations && changed; iteration++) {
+                changed = false;
+                for (CellLocation member : component) {
+                    Expression formula = member.equals(location) ? cell : formulas.get(member);
+                    Expression value = formula.value(state);
+                    changed |= !value.equals(state.get(member.toString()));
+                    state.put(member.toString(), value);
+                    updated.put(member, value);
+                }
+            }
+            for (CellLocation member : component) {
+                if (!state.get(member.toString()).equals(values.get(member))) {
+                    dirty.addAll(usages.get(member));
+                }
+            }
+        }
+    }
+
+    /**
+     * The strongly connected components of the cells which transitively use the given
+     * location, including the location itself, in topological order.
+     * <p>
+     * Uses Tarjan's algorithm with an explicit stack in place of recursion.
+     * Tarjan's algorithm finishes each component after every component it reaches,
+     * so the components are found in reverse topological order.
+     */
+    private List<List<CellLocation>> stronglyConnected(CellLocation location) {
+        Map<CellLocation, Integer> index = new HashMap<>();
+        Map<CellLocation, Integer> lowLink = new HashMap<>();
+        Deque<CellLocation> stack = new ArrayDeque<>();
+        Set<CellLocation> onStack = new HashSet<>();
+        Deque<CellLocation> path = new ArrayDeque<>();
+        Deque<Iterator<CellLocation>> remaining = new ArrayDeque<>();
+        List<List<CellLocation>> components = new ArrayList<>();
+
+        index.put(location, 0);
+        lowLink.put(location, 0);
+        stack.push(location);
+        onStack.add(location);
+        path.push(location);
+        remaining.push(usages.get(location).iterator());
+        while (!path.isEmpty()) {
+            CellLocation current = path.peek();
+            Iterator<CellLocation> next = remaining.peek();
+            if (next.hasNext()) {
+                CellLocation usage = next.next();
+                if (!index.containsKey(usage)) {
+                    index.put(usage, index.size());
+                    lowLink.put(usage, index.get(usage));
+                    stack.push(usage);
+                    onStack.add(usage);
+                    path.push(usage);
+                    remaining.push(usages.get(usage).iterator());
+                } else if (onStack.contains(usage)) {
+                    lowLink.put(current, Math.min(lowLink.get(current), index.get(usage)));
+                }
+                continue;
+            }
+            path.pop();
+            remaining.pop();
+            if (lowLink.get(current).equals(index.get(current))) {
+                List<CellLocation> component = new ArrayList<>();
+                CellLocation member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (!member.equals(current));
+                components.add(component);
+            }
+            if (!path.isEmpty()) {
+                CellLocation parent = path.peek();
+                lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(current)));
+            }
+        }
+        Collections.reverse(components);
+        return components;
+    }
+
+    /**
+     * Store the formula and value of a cell which neither uses nor is used by other cells.
+     * <p>
+     * The value is rendered once, into the grid, and a formula which is its own value,
+     * such as a constant, is not rendered again to decide whether the cell is occupied.
+     * A cell whose previous value rendered as something other than the default is
+     * already occupied, so the index of occupied cells is only changed when
+     * the cell becomes blank or was blank.
+     */
+    private void storeLeaf(CellLocation location, Expression cell, Expression value) {
+        String previous = grid.contentAt(location.getRow(), location.getColumn());
+        formulas.put(location, cell);
+        modifications.increment();
+        values.put(location, value);
+        String content = grid.set(location.getRow(), location.getColumn(), value);
+        if (cell == defaultExpression) {
+            occupied.remove(location);
+            return;
+        }
+        String render = cell == value && content != null ? content : cell.render();
+        if (render.equals(defaultRender)) {
+            occupied.remove(location);
+        } else if (previous.equals(defaultRender) || !defaultRender.isEmpty()) {
+            occupied.add(location);
+        }
+    }
+
+    private void setFormula(CellLocation location, Expression formula) {
+        formulas.put(location, formula);
+        modifications.increment();
+        if (formula == defaultExpression || formula.render().equals(defaultRender)) {
+            occupied.remove(location);
+        } else {
+            occupied.add(location);
+        }
+    }
+
+    private void setValue(CellLocation location, Expression value) {
+        values.put(location, value);
+        grid.set(location.getRow(), location.getColumn(), value);
+    }
+
+    /**
+     * Re-evaluate the cells which use the value of the given location.
+     * <p>
+     * Cells are visited in topological order so that each cell is evaluated at most once.
+     * A cell is only evaluated if the value of one of its dependencies changed,
+     * if a re-evaluated cell produces a value equal to its previous value,
+     * the cells which use it are not re-evaluated on its account.
+     */
+    private void applyUpdate(Map<String, Expression> state, CellLocation location,
+                             Map<CellLocation, Expression> updated) throws TypeError {
+        List<CellLocation> order = topologicalOrder(location);
+
+        Set<CellLocation> dirty = new HashSet<>(usages.get(location));
+        for (CellLocation usage : order) {
+            if (usage.equals(location) || !dirty.contains(usage)) {
+                continue;
+            }
+            Expression previous = state.get(usage.toString());
             Expression value = formulas.get(usage).value(state);
             state.put(usage.toString(), value);
-            applyUpdate(state, usage);
+            updated.put(usage, value);
+            if (!value.equals(previous)) {
+                dirty.addAll(usages.get(usage));
+            }
         }
     }
 
+    /**
+     * The cells which transitively use the given location, including the location itself,
+     * ordered such that every cell comes before the cells which use it.
+     * <p>
+     * The depth-first search keeps its own stack of partially visited cells rather than
+     * recursing, so it is not limited by the length of a chain of references.
+     */
+    private List<CellLocation> topologicalOrder(CellLocation location) {
+        List<CellLocation> order = new ArrayList<>();
+        Set<CellLocation> seen = new HashSet<>();
+        Deque<CellLocation> path = new ArrayDeque<>();
+        Deque<Iterator<CellLocation>> remaining = new ArrayDeque<>();
+        seen.add(location);
+        path.push(location);
+        remaining.push(usages.get(location).iterator());
+        while (!remaining.isEmpty()) {
+            Iterator<CellLocation> next = remaining.peek();
+            if (next.hasNext()) {
+                CellLocation usage = next.next();
+                if (seen.add(usage)) {
+                    path.push(usage);
+                    remaining.push(usages.get(usage).iterator());
+                }
+            } else {
+                // every usage has been ordered, so the cell is finished
+                remaining.pop();
+                order.add(path.pop());
+            }
+        }
+        Collections.reverse(order);
+        return order;
+    }
+
     private void updateUsage(CellLocation location, Expression newExpression) {
+        updateUsage(location, formulas.get(location), newExpression);
+    }
+
+    private void updateUsage(CellLocation location, Expression oldExpression,
+                             Expression newExpression) {
         // remove all usages of old formula
-        Expression oldExpression = formulas.get(location);
         for (String oldDep : oldExpression.dependencies()) {
-            Optional<CellLocation> ref = CellLocation.maybeReference(oldDep);
-            if (ref.isPresent()) {
-                usages.get(ref.get()).remove(location);
+            CellLocation reference = locate(oldDep);
+            if (reference != null) {
+                usages.get(reference).remove(location);
             }
         }
 
         // insert all new usages
         for (String dep : newExpression.dependencies()) {
-            Optional<CellLocation> ref = CellLocation.maybeReference(dep);
-            if (ref.isPresent()) {
-                usages.get(ref.get()).add(location);
+            CellLocation reference = locate(dep);
+            if (reference != null) {
+                usages.get(reference).add(location);
             }
         }
     }
 
+    /**
+     * The cell referred to by a dependency of a formula.
+     *
+     * @return The referenced cell, or null if the dependency
+     *         is not a reference to a cell of the sheet.
+     */
+    private CellLocation locate(String dependency) {
+        long reference = CellReferences.parse(dependency);
+        if (reference == CellReferences.NONE) {
+            return null;
+        }
+        CellLocation location = new CellLocation(CellReferences.row(reference),
+                CellReferences.column(reference));
+        return usages.containsKey(location) ? location : null;
+    }
+
     /**
      * Create an appropriate string representation of the current spreadsheet.
      * A spreadsheet is represented as cells separated by pipes (|) and
@@ -0,0 +1,107 @@
+package sheep.sheets;
+
+import java.util.Arrays;
+
+import sheep.core.CellVisitor;
+import sheep.core.SheetView;
+import sheep.core.ViewElement;
+import sheep.expression.Expression;
+
+/**
+ * An unchanging view of the formulas and values of a {@link Sheet} at the moment
+ * it was taken, see {@link Sheet#snapshot()}.
+ * <p>
+ * A snapshot only holds the occupied cells, in row-major order, and renders them on demand,
+ * so it may be read on another thread, for example to be saved,
+ * while the sheet continues to change.
+ */
+public final class SheetSnapshot implements SheetView {
+    private final int rows;
+    private final int columns;
+    private final CellLocation[] locations;
+    private final Expression[] formulas;
+    private final Expression[] values;
+    private final Expression defaultExpression;
+    /* The index after the cell last looked up, which is checked before searching. */
+    private int next = 0;
+
+    SheetSnapshot(int rows, int columns, CellLocation[] locations,
+                  Expression[] formulas, Expression[] values, Expression defaultExpression) {
+        this.rows = rows;
+        this.columns = columns;
+        this.locations = locations;
+        this.formulas = formulas;
+        this.values = values;
+        this.defaultExpression = defaultExpression;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * The value of the cell when the snapshot was taken.
+     *
+     * @param row A row within the snapshot.
+     * @param column A column within the snapshot.
+     * @return The value rendered at this location.
+     */
+    @Override
+    public ViewElement valueAt(int row, int column) {
+        int index = indexOf(row, column);
+        Expression value = index < 0 ? defaultExpression : values[index];
+        return new ViewElement(value.render(), "white", "black");
+    }
+
+    /**
+     * The formula of the cell when the snapshot was taken.
+     *
+     * @param row A row within the snapshot.
+     * @param column A column within the snapshot.
+     * @return The formula rendered at this location.
+     */
+    @Override
+    public ViewElement formulaAt(int row, int column) {
+        int index = indexOf(row, column);
+        Expression formula = index < 0 ? defaultExpression : formulas[index];
+        return new ViewElement(formula.render(), "white", "black");
+    }
+
+    /**
+     * The index of the cell among the occupied cells, or a negative number if it is not occupied.
+     * Cells visited by {@link #forEachOccupied(CellVisitor)} are usually looked up in order,
+     * so the cell after the last one looked up is checked before searching.
+     */
+    private int indexOf(int row, int column) {
+        // the hint may be written by other threads, it is only used once checked
+        int hint = next;
+        if (hint < locations.length && locations[hint].getRow() == row
+                && locations[hint].getColumn() == column) {
+            next = hint + 1;
+            return hint;
+        }
+        int index = Arrays.binarySearch(locations, new CellLocation(row, column));
+        if (index >= 0) {
+            next = index + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Visit every cell which was occupied when the snapshot was taken, in row-major order.
+     *
+     * @param visitor The callback to invoke with the row and column of each occupied cell.
+     */
+    @Override
+    public void forEachOccupied(CellVisitor visitor) {
+        for (CellLocation location : locations) {
+            visitor.visit(location.getRow(), location.getColumn());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package sheep.sheets;
+
+/**
+ * The kind of value stored within a cell of a {@link Sheet}.
+ * Used to tag the results of bulk reads such as
+ * {@link Sheet#readKinds(int, int, int, int, ValueKind[])}.
+ */
+public enum ValueKind {
+    /** The cell value renders as the empty string, e.g. an empty expression. */
+    EMPTY,
+    /** The cell value is numeric, see {@link sheep.expression.Expression#isNumeric()}. */
+    NUMBER,
+    /** The cell value is an error, see {@link sheep.expression.Expression#isError()}. */
+    ERROR,
+    /** Any other value, e.g. an unresolved reference. */
+    OTHER
+}
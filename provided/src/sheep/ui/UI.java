@@ -107,6 +107,17 @@ public abstract class UI {
         this.keys.get(keyName).add(new Feature(name, action));
     }
 
+    /**
+     * Show a short message about work in progress, such as loading a file,
+     * in place of the previous message. An empty message clears it.
+     * By default, the message is not shown.
+     * May be called from any thread.
+     *
+     * @param message The message to show.
+     */
+    public void status(String message) {
+    }
+
     /**
      * An abstract method that will start the user interface.
      * This will be overridden in implementing classes.
@@ -0,0 +1,60 @@
+package sheep.ui.graphical;
+
+import sheep.core.IncrementalCalculation;
+
+import javax.swing.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates a spreadsheet on the Swing event dispatch thread in bounded time slices.
+ * <p>
+ * Each slice is run by a {@link Timer}, so events queued while a slice runs,
+ * such as painting and user input, are handled before the next slice starts.
+ * The timer stops once no cells are waiting to be calculated
+ * and is started again by {@link #schedule()}.
+ */
+class CalculationScheduler {
+    /** The longest time a single slice may calculate for. */
+    static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private final IncrementalCalculation calculation;
+    private final Timer timer;
+
+    /**
+     * Construct a new scheduler.
+     *
+     * @param calculation The spreadsheet to calculate.
+     * @param refresh Invoked on the event dispatch thread after each slice.
+     */
+    CalculationScheduler(IncrementalCalculation calculation, Runnable refresh) {
+        this.calculation = calculation;
+        this.timer = new Timer(0, e -> {
+            if (!calculation.calculate(SLICE_NANOS)) {
+                ((Timer) e.getSource()).stop();
+            }
+            refresh.run();
+        });
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Start calculating in slices if any cells are waiting to be calculated.
+     * Must be called on the event dispatch thread.
+     */
+    void schedule() {
+        if (!timer.isRunning() && calculation.isCalculating()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Whether the cell is waiting to be calculated.
+     *
+     * @param row The row index of the cell.
+     * @param column The column index of the cell.
+     * @return True iff the value of the cell is out of date.
+     */
+    boolean isCalculating(int row, int column) {
+        return calculation.isCalculating(row, column);
+    }
+}
@@ -15,13 +15,24 @@ import java.awt.*;
 class CellRenderer extends DefaultTableCellRenderer {
 
     private final SheetView view;
+    private final CalculationScheduler scheduler;
 
     /**
      * Construct a new cell renderer.
      * @param view The view to use for rendering values.
      */
     public CellRenderer(SheetView view) {
+        this(view, null);
+    }
+
+    /**
+     * Construct a new cell renderer which renders cells waiting to be calculated in italics.
+     * @param view The view to use for rendering values.
+     * @param scheduler The scheduler calculating the sheet, or null if it is not calculated incrementally.
+     */
+    public CellRenderer(SheetView view, CalculationScheduler scheduler) {
         this.view = view;
+        this.scheduler = scheduler;
     }
 
     /**
@@ -53,6 +64,10 @@ class CellRenderer extends DefaultTableCellRenderer {
             ViewElement element = view.valueAt(row - 1, column - 1);
             setBackground(getColorByName(element.getBackground()));
             setForeground(getColorByName(element.getForeground()));
+            if (scheduler != null && scheduler.isCalculating(row - 1, column - 1)) {
+                setFont(getFont().deriveFont(Font.ITALIC));
+                setToolTipText("Calculating...");
+            }
         }
         return result;
     }
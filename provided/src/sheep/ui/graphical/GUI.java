@@ -1,5 +1,6 @@
 package sheep.ui.graphical;
 
+import sheep.core.IncrementalCalculation;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.ViewElement;
@@ -22,6 +23,11 @@ import java.util.Optional;
  * what to render and how to update the sheet respectively.
  */
 public class GUI extends UI {
+    /* The sheet to calculate between events, or null if updates are calculated in full. */
+    private IncrementalCalculation calculation;
+    private CalculationScheduler scheduler;
+    /* Shows the progress of work such as loading a file. */
+    private final JLabel status = new JLabel(" ");
 
     /**
      * Construct a new graphical interface.
@@ -35,6 +41,18 @@ public class GUI extends UI {
         super(view, updater);
     }
 
+    /**
+     * Calculate the sheet in short slices on the user interface thread whenever
+     * cells are waiting to be calculated, rather than within each update,
+     * so that the window keeps responding to events however large the calculation.
+     * Cells waiting to be calculated are rendered in italics.
+     *
+     * @param calculation The sheet to calculate.
+     */
+    public void calculateIncrementally(IncrementalCalculation calculation) {
+        this.calculation = calculation;
+    }
+
     /**
      * The render method will trigger the user interface to be displayed.
      * The interface uses Java Swing and will open a new window.
@@ -55,6 +73,9 @@ public class GUI extends UI {
         SheetModel model = new SheetModel(frame, view, updater);
         JTable table = new JTable(model);
         style(table);
+        if (calculation != null) {
+            scheduler = new CalculationScheduler(calculation, table::repaint);
+        }
 
         table.addKeyListener(new Shortcuts(table));
 
@@ -86,6 +107,7 @@ public class GUI extends UI {
 
         panel.add(formulaView(table));
         panel.add(table);
+        panel.add(status);
 
         frame.add(panel);
 
@@ -93,8 +115,18 @@ public class GUI extends UI {
         frame.setVisible(true);
     }
 
+    /**
+     * Show the message below the sheet, or clear it if it is empty.
+     *
+     * @param message The message to show.
+     */
+    @Override
+    public void status(String message) {
+        SwingUtilities.invokeLater(() -> status.setText(message.isEmpty() ? " " : message));
+    }
+
     private TableColumn configureColumn(TableColumn column) {
-        column.setCellRenderer(new CellRenderer(view));
+        column.setCellRenderer(new CellRenderer(view, scheduler));
         column.setCellEditor(new CellEditor(view, new JTextField()));
         return column;
     }
@@ -112,6 +144,9 @@ public class GUI extends UI {
             }
         }
         table.updateUI();
+        if (scheduler != null) {
+            scheduler.schedule();
+        }
     }
 
     private class Shortcuts implements KeyListener {
@@ -3,6 +3,7 @@ package sheep.ui.textual;
 import sheep.core.UpdateResponse;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
+import sheep.sheets.CellReferences;
 import sheep.ui.UI;
 
 import java.io.PrintStream;
@@ -28,66 +29,66 @@ public class TextUI extends UI {
         this.output = output;
     }
 
-    private String columnHeaders(int columns) {
+    private String columnHeaders(int columns, int[] widths) {
         String[] values = new String[columns];
         for (int column = 0; column < columns; column++) {
-            values[column] = String.valueOf(Character.valueOf((char) (column + 65)));
+            values[column] = CellReferences.columnName(column);
         }
-        return renderRow(-1, values);
+        return renderRow(-1, values, 0, widths);
     }
 
-    private int maxWidth(int column) {
-        int max = 0;
-        for (int row = 0; row < view.getRows(); row++) {
-            int width = view.valueAt(row, column).getContent().length();
-            if (width > max) {
-                max = width;
-            }
+    private int[] maxWidths(String[] values, int columns) {
+        int[] widths = new int[columns];
+        for (int index = 0; index < values.length; index++) {
+            int column = index % columns;
+            widths[column] = Math.max(widths[column], values[index].length());
         }
-        return max;
+        return widths;
     }
 
-    private String renderRow(int row, String[] values) {
+    private String renderRow(int row, String[] values, int offset, int[] widths) {
         StringJoiner renderedRow = new StringJoiner(" | ");
         String rowHeader = row == -1 ? "" : "" + (row + 1);
         int headerPadding = (view.getRows() / 10) - rowHeader.length();
         renderedRow.add(rowHeader + " ".repeat(headerPadding));
         for (int column = 0; column < view.getColumns(); column++) {
-            int maxWidth = maxWidth(column);
-            String cellValue = values[column];
-            int padding = maxWidth - cellValue.length();
-            renderedRow.add(cellValue + " ".repeat(padding));
+            String cellValue = values[offset + column];
+            int padding = widths[column] - cellValue.length();
+            renderedRow.add(cellValue + " ".repeat(Math.max(padding, 0)));
         }
         renderedRow.add("");
         return renderedRow.toString();
     }
 
     public String renderSheet() {
+        int rows = view.getRows();
+        int columns = view.getColumns();
+        String[] values = new String[rows * columns];
+        view.renderValues(0, 0, rows, columns, values);
+        int[] widths = maxWidths(values, columns);
+
         StringJoiner rendered = new StringJoiner("\n");
-        rendered.add(columnHeaders(view.getColumns()));
-        for (int row = 0; row < view.getRows(); row++) {
-            String[] values = new String[view.getColumns()];
-            for (int column = 0; column < view.getColumns(); column++) {
-                values[column] = view.valueAt(row, column).getContent();
-            }
-            rendered.add(renderRow(row, values));
+        rendered.add(columnHeaders(columns, widths));
+        for (int row = 0; row < rows; row++) {
+            rendered.add(renderRow(row, values, row * columns, widths));
         }
         return rendered.toString();
     }
 
     private Optional<Integer> readRow(String input) {
-        try {
-            return Optional.of(Integer.parseInt(input.substring(1)));
-        } catch (NumberFormatException e) {
+        long reference = CellReferences.parse(input);
+        if (reference == CellReferences.NONE) {
             return Optional.empty();
         }
+        return Optional.of(CellReferences.row(reference));
     }
 
     private Optional<Integer> readColumn(String input) {
-        if (Character.isAlphabetic(input.charAt(0))) {
-            return Optional.of(input.charAt(0) - 64);
+        long reference = CellReferences.parse(input);
+        if (reference == CellReferences.NONE) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return Optional.of(CellReferences.column(reference) + 1);
     }
 
     private boolean handleAction(String action) {
@@ -198,4 +198,35 @@ public class ArithmeticTest {
     public void testValue() throws TypeError {
         base.value();
     }
+    /**
+     * Assert that the core operations evaluate one and two arguments
+     * to the same values as performing them over an array of numbers,
+     * including division by zero and arguments which are not numbers.
+     */
+    @Test
+    public void testFixedArityMatchesPerform() throws TypeError {
+        long[] numbers = {0, 1, -1, 7, -12, Long.MAX_VALUE, Long.MIN_VALUE};
+        List<java.util.function.Function<Expression[], Arithmetic>> operations = List.of(
+                Arithmetic::plus, Arithmetic::minus, Arithmetic::times,
+                Arithmetic::divide, Arithmetic::less, Arithmetic::equal);
+        for (java.util.function.Function<Expression[], Arithmetic> operation : operations) {
+            for (long first : numbers) {
+                Arithmetic unary = operation.apply(new Expression[]{new Constant(first)});
+                assertEquals(new Constant(unary.perform(new long[]{first})),
+                        unary.value(new HashMap<>()));
+                for (long second : numbers) {
+                    Arithmetic binary = operation.apply(
+                            new Expression[]{new Constant(first), new Constant(second)});
+                    long[] values = {first, second};
+                    Expression expected = binary.check(values)
+                            .map(error -> (Expression) error)
+                            .orElseGet(() -> new Constant(binary.perform(values)));
+                    assertEquals(binary.render(), expected, binary.value(new HashMap<>()));
+                }
+            }
+            Arithmetic typed = operation.apply(
+                    new Expression[]{new Constant(1), new sheep.expression.basic.Nothing()});
+            assertEquals(sheep.expression.basic.ErrorValue.TYPE, typed.value(new HashMap<>()));
+        }
+    }
 }
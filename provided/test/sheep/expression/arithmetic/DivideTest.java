@@ -4,6 +4,7 @@ import org.junit.Test;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
 
 import java.util.HashMap;
 
@@ -63,4 +64,10 @@ public class DivideTest {
         long result = arith.perform(new long[]{20, 2, 2, 2});
         assertEquals(2, result);
     }
+
+    @Test
+    public void testDivideByZero() throws TypeError {
+        Arithmetic arith = new Divide(new Expression[]{new Constant(20), new Constant(0)});
+        assertEquals(ErrorValue.DIV0, arith.value(new HashMap<>()));
+    }
 }
@@ -0,0 +1,60 @@
+package sheep.expression.basic;
+
+import org.junit.Test;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Arithmetic;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ErrorValueTest {
+    public static final double testWeight = 1;
+
+    @Test
+    public void testRender() {
+        assertEquals("#DIV0", ErrorValue.DIV0.render());
+        assertEquals("#TYPE", ErrorValue.TYPE.render());
+        assertEquals("ERROR(#TYPE)", ErrorValue.TYPE.toString());
+    }
+
+    @Test
+    public void testValueIsItself() {
+        assertSame(ErrorValue.DIV0, ErrorValue.DIV0.value(new HashMap<>()));
+        assertTrue(ErrorValue.DIV0.dependencies().isEmpty());
+        assertTrue(ErrorValue.DIV0.isError());
+        assertFalse(ErrorValue.DIV0.isNumeric());
+    }
+
+    @Test(expected = TypeError.class)
+    public void testValue() throws TypeError {
+        ErrorValue.TYPE.value();
+    }
+
+    @Test
+    public void testEquals() {
+        assertEquals(new ErrorValue("#DIV0"), ErrorValue.DIV0);
+        assertNotEquals(ErrorValue.TYPE, ErrorValue.DIV0);
+        assertNotEquals(ErrorValue.TYPE, new Constant(0));
+    }
+
+    @Test
+    public void testNotNumericIsTypeError() throws TypeError {
+        Expression plus = Arithmetic.plus(new Expression[]{new Constant(1), new Nothing()});
+        assertEquals(ErrorValue.TYPE, plus.value(new HashMap<>()));
+        Expression missing = Arithmetic.times(new Expression[]{new Reference("A1")});
+        assertEquals(ErrorValue.TYPE, missing.value(new HashMap<>()));
+    }
+
+    @Test
+    public void testPropagates() throws TypeError {
+        Map<String, Expression> state = Map.of("A1", ErrorValue.DIV0);
+        Expression plus = Arithmetic.plus(new Expression[]{new Nothing(), new Reference("A1")});
+        // the first error or non-numeric operand determines the result
+        assertEquals(ErrorValue.TYPE, plus.value(state));
+        Expression less = Arithmetic.less(new Expression[]{new Reference("A1"), new Nothing()});
+        assertEquals(ErrorValue.DIV0, less.value(state));
+    }
+}
@@ -0,0 +1,108 @@
+package sheep.expression.function;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.InvalidExpression;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Reference;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FunctionRegistryTest {
+    public static final double testWeight = 2;
+
+    private FunctionRegistry functions;
+
+    @Before
+    public void setUp() {
+        functions = FunctionRegistry.standard();
+    }
+
+    private static long evaluate(Expression expression) throws TypeError {
+        return expression.value(new HashMap<>()).value();
+    }
+
+    @Test
+    public void testArityDispatch() throws InvalidExpression {
+        Constant one = new Constant(1);
+        assertTrue(functions.create("MAX", new Expression[]{one}) instanceof UnaryCall);
+        assertTrue(functions.create("MAX", new Expression[]{one, one}) instanceof BinaryCall);
+        assertTrue(functions.create("MAX", new Expression[]{one, one, one}) instanceof VariadicCall);
+        assertTrue(functions.create("CLAMP", new Expression[]{one, one, one}) instanceof TernaryCall);
+    }
+
+    @Test
+    public void testStandardFunctions() throws InvalidExpression, TypeError {
+        assertEquals(5, evaluate(functions.create("ABS", new Expression[]{new Constant(-5)})));
+        assertEquals(-1, evaluate(functions.create("SIGN", new Expression[]{new Constant(-5)})));
+        assertEquals(2, evaluate(functions.create("MOD",
+                new Expression[]{new Constant(17), new Constant(5)})));
+        assertEquals(10, evaluate(functions.create("CLAMP",
+                new Expression[]{new Constant(42), new Constant(0), new Constant(10)})));
+        assertEquals(-3, evaluate(functions.create("MIN",
+                new Expression[]{new Constant(4), new Constant(-3), new Constant(8)})));
+        assertEquals(8, evaluate(functions.create("MAX",
+                new Expression[]{new Constant(4), new Constant(-3), new Constant(8)})));
+        assertEquals(9, evaluate(functions.create("SUM",
+                new Expression[]{new Constant(4), new Constant(-3), new Constant(8)})));
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void testWrongArity() throws InvalidExpression {
+        functions.create("ABS", new Expression[]{new Constant(1), new Constant(2)});
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void testBelowMinimum() throws InvalidExpression {
+        functions.create("MAX", new Expression[0]);
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void testUnknown() throws InvalidExpression {
+        functions.create("NOPE", new Expression[]{new Constant(1)});
+    }
+
+    @Test
+    public void testReferences() throws InvalidExpression, TypeError {
+        Expression call = functions.create("MAX",
+                new Expression[]{new Reference("A1"), new Reference("B2")});
+        assertEquals(Set.of("A1", "B2"), call.dependencies());
+        Map<String, Expression> state = Map.of("A1", new Constant(3), "B2", new Constant(7));
+        assertEquals(new Constant(7), call.value(state));
+    }
+
+    @Test(expected = TypeError.class)
+    public void testValueThrows() throws InvalidExpression, TypeError {
+        functions.create("ABS", new Expression[]{new Constant(1)}).value();
+    }
+
+    @Test
+    public void testRender() throws InvalidExpression {
+        Expression call = functions.create("CLAMP",
+                new Expression[]{new Reference("A1"), new Constant(0), new Constant(10)});
+        assertEquals("CLAMP(A1, 0, 10)", call.render());
+    }
+
+    @Test
+    public void testCustomFunction() throws InvalidExpression, TypeError {
+        CoreFactory factory = new CoreFactory(new FunctionRegistry()
+                .registerBinary("POW", (x, y) -> (long) Math.pow(x, y)));
+        Expression call = factory.createOperator("POW", new Object[]{new Constant(2), new Constant(10)});
+        assertEquals(1024, evaluate(call));
+        assertTrue(factory.createOperator("+", new Object[]{new Constant(1)})
+                instanceof Arithmetic);
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void testCoreFactoryUnknown() throws InvalidExpression {
+        new CoreFactory().createOperator("NOPE", new Object[]{new Constant(1)});
+    }
+}
@@ -0,0 +1,118 @@
+package sheep.features.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sheep.expression.CoreFactory;
+import sheep.parsing.SimpleParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+import sheep.ui.Prompt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class AutoSaveTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A prompt which answers every question with the given path.
+     */
+    private static Prompt answering(Path path) {
+        return new Prompt() {
+            @Override
+            public Optional<String> ask(String prompt) {
+                return Optional.of(path.toString());
+            }
+
+            @Override
+            public Optional<String[]> askMany(String[] prompts) {
+                throw new AssertionError("Unexpected ask: " + prompts[0]);
+            }
+
+            @Override
+            public boolean askYesNo(String prompt) {
+                throw new AssertionError("Unexpected ask: " + prompt);
+            }
+
+            @Override
+            public void message(String prompt) {
+                throw new AssertionError("Unexpected message: " + prompt);
+            }
+        };
+    }
+
+    private static Sheet sheet() {
+        CoreFactory factory = new CoreFactory();
+        return new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 2);
+    }
+
+    private static void waitForSave(AutoSave autoSave) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (autoSave.isSaving() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertFalse(autoSave.isSaving());
+    }
+
+    /**
+     * Assert that choosing a file saves the sheet straight away, that changes made soon
+     * after a save are saved together once the interval has passed, and that nothing is
+     * saved while the sheet is unchanged.
+     */
+    @Test(timeout = 10000)
+    public void testCoalescing() throws IOException, InterruptedException {
+        Path target = folder.getRoot().toPath().resolve("sheet.txt");
+        Sheet sheet = sheet();
+        sheet.update(0, 0, "1");
+        AutoSave autoSave = new AutoSave(sheet);
+        autoSave.start(answering(target));
+        waitForSave(autoSave);
+        long saved = System.nanoTime();
+        assertEquals(List.of("Sparse:2,2", "0,0,1"), Files.readAllLines(target));
+
+        sheet.update(0, 0, "2");
+        autoSave.save();
+        sheet.update(1, 1, "3");
+        autoSave.save();
+        if (System.nanoTime() - saved < AutoSave.SAVE_INTERVAL_NANOS) {
+            assertFalse(autoSave.isSaving());
+            assertEquals(List.of("Sparse:2,2", "0,0,1"), Files.readAllLines(target));
+        }
+
+        while (System.nanoTime() - saved < AutoSave.SAVE_INTERVAL_NANOS) {
+            Thread.sleep(10);
+        }
+        autoSave.save();
+        waitForSave(autoSave);
+        assertEquals(List.of("Dimensions:2,2", "2, ", ", 3"), Files.readAllLines(target));
+        assertFalse(Files.exists(Path.of(target + ".tmp")));
+
+        long modified = Files.getLastModifiedTime(target).toMillis();
+        Thread.sleep(AutoSave.SAVE_INTERVAL_NANOS / 1_000_000);
+        autoSave.save();
+        assertFalse(autoSave.isSaving());
+        assertEquals(modified, Files.getLastModifiedTime(target).toMillis());
+    }
+
+    /**
+     * Assert that a failed save is recorded and leaves no temporary file behind.
+     */
+    @Test(timeout = 10000)
+    public void testFailedSave() throws IOException {
+        // a file cannot be moved over a directory which is not empty
+        Path target = folder.newFolder("sheet.txt").toPath();
+        Files.createFile(target.resolve("other"));
+        AutoSave autoSave = new AutoSave(sheet());
+        autoSave.start(answering(target));
+        waitForSave(autoSave);
+        assertNotNull(autoSave.getFailure());
+        assertFalse(Files.exists(Path.of(target + ".tmp")));
+    }
+}
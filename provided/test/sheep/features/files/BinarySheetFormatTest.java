@@ -0,0 +1,232 @@
+package sheep.features.files;
+
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.parsing.PrattParser;
+import sheep.sheets.CellSink;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BinarySheetFormatTest {
+    private static Sheet sheet(int rows, int columns) {
+        CoreFactory factory = new CoreFactory();
+        return new SheetBuilder(new PrattParser(factory), factory.createEmpty()).empty(rows, columns);
+    }
+
+    private static byte[] write(Sheet sheet) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySheetFormat.write(sheet, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Read the cells of a binary sheet, keyed by row and column, where numbers are
+     * marked so they can be told apart from formulas.
+     */
+    private static Map<String, String> read(byte[] bytes, int rows, int columns)
+            throws IOException {
+        Map<String, String> cells = new HashMap<>();
+        try (BinarySheetFileReader reader =
+                     new BinarySheetFileReader(new ByteArrayInputStream(bytes))) {
+            assertEquals(rows, reader.getRows());
+            assertEquals(columns, reader.getColumns());
+            reader.supply(new CellSink() {
+                @Override
+                public void accept(int row, int column, String source) {
+                    assertNull(cells.put(row + "," + column, source));
+                }
+
+                @Override
+                public void acceptNumber(int row, int column, long number) {
+                    assertNull(cells.put(row + "," + column, "#" + number));
+                }
+            });
+        }
+        return cells;
+    }
+
+    private static int occurrences(byte[] bytes, String text) {
+        byte[] target = text.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int index = 0; index + target.length <= bytes.length; index++) {
+            if (Arrays.equals(bytes, index, index + target.length, target, 0, target.length)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Assert that variable length integers round trip, including the extremes
+     * of zig-zag encoded negative numbers.
+     */
+    @Test
+    public void testVarints() throws IOException {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, -64, -65,
+                Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinarySheetFormat.Encoder encoder = new BinarySheetFormat.Encoder(bytes);
+        for (long value : values) {
+            encoder.writeVarint(BinarySheetFormat.zigzag(value));
+        }
+        encoder.flush();
+        BinarySheetFormat.Decoder decoder = new BinarySheetFormat.Decoder(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, BinarySheetFormat.unzigzag(decoder.readVarint()));
+        }
+        assertEquals(1, zigzagLength(0));
+        assertEquals(1, zigzagLength(-64));
+        assertEquals(2, zigzagLength(-65));
+        assertEquals(10, zigzagLength(Long.MIN_VALUE));
+    }
+
+    private static int zigzagLength(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinarySheetFormat.Encoder encoder = new BinarySheetFormat.Encoder(bytes);
+        encoder.writeVarint(BinarySheetFormat.zigzag(value));
+        encoder.flush();
+        return bytes.size();
+    }
+
+    /**
+     * Assert that strings longer than the buffer of the decoder, and strings split
+     * across its blocks, are read whole, and that a string cut short is a reading failure.
+     */
+    @Test
+    public void testStrings() throws IOException {
+        String[] strings = {"x".repeat(70000), "A0 + 1", "\u00e9".repeat(40000), ""};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinarySheetFormat.Encoder encoder = new BinarySheetFormat.Encoder(bytes);
+        for (String string : strings) {
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            encoder.writeVarint(encoded.length);
+            encoder.write(encoded);
+        }
+        encoder.flush();
+        BinarySheetFormat.Decoder decoder = new BinarySheetFormat.Decoder(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        for (String string : strings) {
+            assertEquals(string, decoder.readString(decoder.readInt(Integer.MAX_VALUE)));
+        }
+
+        BinarySheetFormat.Decoder truncated = new BinarySheetFormat.Decoder(
+                new ByteArrayInputStream(Arrays.copyOf(bytes.toByteArray(), 70000)));
+        try {
+            truncated.readString(truncated.readInt(Integer.MAX_VALUE));
+            fail("A string cut short should not be read");
+        } catch (SheetFileReadingException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Assert that only formulas written exactly as a long is rendered are stored as numbers.
+     */
+    @Test
+    public void testLiterals() {
+        for (String literal : new String[]{"0", "-1", "42", "9223372036854775807",
+                "-9223372036854775808"}) {
+            assertTrue(literal, BinarySheetFormat.isLiteral(literal));
+        }
+        for (String formula : new String[]{"", "-", "-0", "007", "+5", "1.5", "A0",
+                "9223372036854775808", "-9223372036854775809", "12345678901234567890"}) {
+            assertFalse(formula, BinarySheetFormat.isLiteral(formula));
+        }
+    }
+
+    /**
+     * Assert that numbers, including negative and large numbers, are stored as numbers,
+     * that repeated formulas are stored once, and that blank cells are not supplied.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Sheet sheet = sheet(200000, 3);
+        String[][] sources = new String[200000][3];
+        for (String[] row : sources) {
+            Arrays.fill(row, "");
+        }
+        sources[0][0] = "-5";
+        sources[0][2] = "9223372036854775807";
+        sources[1][1] = "-9223372036854775808";
+        sources[2][0] = "A0 + 1";
+        sources[2][1] = "A0 + 1";
+        sources[150000][2] = "MAX(A0, 300)";
+        sources[199999][0] = "A0 + 1";
+        sources[199999][2] = "123456789";
+        sheet.load(sources);
+
+        byte[] bytes = write(sheet);
+        assertTrue(BinarySheetFormat.hasMagic(new ByteArrayInputStream(bytes)));
+        assertEquals(1, occurrences(bytes, "A0 + 1"));
+        Map<String, String> cells = read(bytes, 200000, 3);
+        assertEquals(Map.of(
+                "0,0", "#-5",
+                "0,2", "#9223372036854775807",
+                "1,1", "#-9223372036854775808",
+                "2,0", "A0 + 1",
+                "2,1", "A0 + 1",
+                "150000,2", "MAX(A0, 300)",
+                "199999,0", "A0 + 1",
+                "199999,2", "#123456789"), cells);
+    }
+
+    /**
+     * Assert that a sheet without occupied cells round trips as its dimensions only.
+     */
+    @Test
+    public void testEmptySheet() throws IOException {
+        assertEquals(Map.of(), read(write(sheet(4, 7)), 4, 7));
+    }
+
+    /**
+     * Assert that a stream without the magic number is not read.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testBadMagic() throws IOException {
+        byte[] bytes = write(sheet(2, 2));
+        bytes[3] = 'X';
+        new BinarySheetFileReader(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Assert that a stream of another version of the format is not read.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testBadVersion() throws IOException {
+        byte[] bytes = write(sheet(2, 2));
+        bytes[BinarySheetFormat.MAGIC.length] = BinarySheetFormat.VERSION + 1;
+        new BinarySheetFileReader(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Assert that every truncation of a file is reported as a reading failure.
+     */
+    @Test
+    public void testTruncated() throws IOException {
+        Sheet sheet = sheet(300, 2);
+        sheet.update(0, 0, "-70000");
+        sheet.update(1, 1, "A0 * 2");
+        sheet.update(299, 0, "A0 * 2");
+        byte[] bytes = write(sheet);
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            try {
+                read(truncated, 300, 2);
+                fail("Reading " + length + " of " + bytes.length + " bytes should fail");
+            } catch (SheetFileReadingException e) {
+                // expected
+            }
+        }
+    }
+}
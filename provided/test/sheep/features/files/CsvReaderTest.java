@@ -0,0 +1,168 @@
+package sheep.features.files;
+
+import org.junit.Test;
+import sheep.sheets.CellSink;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CsvReaderTest {
+    /**
+     * Read the non-empty fields of the text, keyed by row and column,
+     * where numbers are marked so they can be told apart from text.
+     */
+    private static Map<String, String> read(String text, char delimiter) throws IOException {
+        Map<String, String> cells = new LinkedHashMap<>();
+        try (CsvReader reader = new CsvReader(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), delimiter)) {
+            reader.supply(new CellSink() {
+                @Override
+                public void accept(int row, int column, String source) {
+                    assertNull(cells.put(row + "," + column, source));
+                }
+
+                @Override
+                public void acceptNumber(int row, int column, long number) {
+                    assertNull(cells.put(row + "," + column, "#" + number));
+                }
+            });
+        }
+        return cells;
+    }
+
+    private static Map<String, String> read(String text) throws IOException {
+        return read(text, CsvReader.DEFAULT_DELIMITER);
+    }
+
+    private static int[] dimensions(String text) throws IOException {
+        try (CsvReader reader = new CsvReader(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), ',')) {
+            reader.supply((row, column, source) -> { });
+            return new int[]{reader.getRows(), reader.getColumns()};
+        }
+    }
+
+    /**
+     * Assert that quoted fields may contain delimiters, doubled quotes and line breaks,
+     * and that quotes within a field which is not quoted are kept.
+     */
+    @Test
+    public void testQuotedFields() throws IOException {
+        Map<String, String> cells = read(
+                "\"MAX(A0, 3)\",\"say \"\"hi\"\"\"\r\n\"two\nlines\",a\"b\r\n\"\",\"x\"y\n");
+        assertEquals(Map.of(
+                "0,0", "MAX(A0, 3)",
+                "0,1", "say \"hi\"",
+                "1,0", "two\nlines",
+                "1,1", "a\"b",
+                "2,1", "xy"), cells);
+    }
+
+    /**
+     * Assert that the dimensions are the amount of records and the most fields of any record,
+     * whether or not the file ends with a line break or an empty field.
+     */
+    @Test
+    public void testDimensions() throws IOException {
+        assertArrayEquals(new int[]{2, 3}, dimensions("1,2,3\r\n4\r\n"));
+        assertArrayEquals(new int[]{2, 3}, dimensions("1,2,3\r\n4"));
+        assertArrayEquals(new int[]{2, 2}, dimensions("1\n4,"));
+        assertArrayEquals(new int[]{0, 0}, dimensions(""));
+    }
+
+    /**
+     * Assert that a carriage return and line feed split across blocks of the file
+     * end the record, for fields which are and are not quoted.
+     */
+    @Test
+    public void testLineBreakAcrossBlocks() throws IOException {
+        for (String field : new String[]{"x", "\"x\""}) {
+            StringBuilder text = new StringBuilder();
+            text.append("a".repeat(CsvReader.BUFFER_SIZE - field.length() - 2)).append(",");
+            text.append(field).append("\r\n");
+            // the carriage return is the last byte of the first block
+            assertEquals(CsvReader.BUFFER_SIZE + 1, text.length());
+            text.append("1,2\r\n");
+            Map<String, String> cells = read(text.toString());
+            assertEquals("x", cells.get("0,1"));
+            assertEquals("#1", cells.get("1,0"));
+            assertEquals("#2", cells.get("1,1"));
+            assertEquals(4, cells.size());
+        }
+    }
+
+    /**
+     * Assert that a field longer than a block of the file is read whole.
+     */
+    @Test
+    public void testLongField() throws IOException {
+        String field = "b".repeat(CsvReader.BUFFER_SIZE * 2 + 5);
+        Map<String, String> cells = read("1," + field + "\r\n\"" + field + "\"\r\n");
+        assertEquals(field, cells.get("0,1"));
+        assertEquals(field, cells.get("1,0"));
+    }
+
+    /**
+     * Assert that a quoted field which is not closed is reported as a reading failure.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testUnclosedQuote() throws IOException {
+        read("1,2\r\n\"open, 3\r\n4,5\r\n");
+    }
+
+    /**
+     * Assert that fields are separated by the delimiter given, and commas are kept.
+     */
+    @Test
+    public void testCustomDelimiter() throws IOException {
+        assertEquals(Map.of(
+                "0,0", "MAX(A0, 1)",
+                "0,1", "#2",
+                "1,1", "a;b"), read("MAX(A0, 1);2\n;\"a;b\"\n", ';'));
+        assertEquals(Map.of("0,0", "#1", "0,1", "x,y"), read("1\tx,y\n", '\t'));
+    }
+
+    /**
+     * Assert that a delimiter which cannot separate fields is rejected.
+     */
+    @Test
+    public void testUnsupportedDelimiter() {
+        for (char delimiter : new char[]{'"', '\r', '\n', '\u00e9'}) {
+            try {
+                new CsvReader(new ByteArrayInputStream(new byte[0]), delimiter);
+                fail("The delimiter " + (int) delimiter + " should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Assert that only fields written exactly as a long is rendered, of at most 18 digits,
+     * are passed as numbers, and every other field as text.
+     */
+    @Test
+    public void testNumbers() throws IOException {
+        Map<String, String> cells = read(
+                "0,-5,123456789012345678,-123456789012345678\n"
+                        + "007,-0,1234567890123456789,+5,1.5,-,12a\n");
+        assertEquals("#0", cells.get("0,0"));
+        assertEquals("#-5", cells.get("0,1"));
+        assertEquals("#123456789012345678", cells.get("0,2"));
+        assertEquals("#-123456789012345678", cells.get("0,3"));
+        assertEquals("007", cells.get("1,0"));
+        assertEquals("-0", cells.get("1,1"));
+        assertEquals("1234567890123456789", cells.get("1,2"));
+        assertEquals("+5", cells.get("1,3"));
+        assertEquals("1.5", cells.get("1,4"));
+        assertEquals("-", cells.get("1,5"));
+        assertEquals("12a", cells.get("1,6"));
+        // a quoted number is passed as text
+        assertEquals("12", read("\"12\"").get("0,0"));
+    }
+}
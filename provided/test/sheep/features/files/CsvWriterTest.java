@@ -0,0 +1,162 @@
+package sheep.features.files;
+
+import org.junit.Test;
+import sheep.core.SheetView;
+import sheep.core.ViewElement;
+import sheep.expression.CoreFactory;
+import sheep.parsing.PrattParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CsvWriterTest {
+    /**
+     * A view of cells whose values and formulas are the given text.
+     */
+    private record TextView(String[][] cells) implements SheetView {
+        @Override
+        public int getRows() {
+            return cells.length;
+        }
+
+        @Override
+        public int getColumns() {
+            return cells.length == 0 ? 0 : cells[0].length;
+        }
+
+        @Override
+        public ViewElement valueAt(int row, int column) {
+            return new ViewElement(cells[row][column], "white", "black");
+        }
+
+        @Override
+        public ViewElement formulaAt(int row, int column) {
+            return valueAt(row, column);
+        }
+    }
+
+    private static Sheet sheet(String[][] sources) {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new PrattParser(factory), factory.createEmpty())
+                .empty(sources.length, sources.length == 0 ? 0 : sources[0].length);
+        sheet.load(sources);
+        return sheet;
+    }
+
+    /**
+     * Read every cell of the text, where cells not supplied are empty.
+     */
+    private static String[][] read(String text, char delimiter) throws IOException {
+        try (CsvReader reader = new CsvReader(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), delimiter)) {
+            String[][] cells = new String[256][256];
+            for (String[] row : cells) {
+                Arrays.fill(row, "");
+            }
+            reader.supply((row, column, source) -> cells[row][column] = source);
+            String[][] read = new String[reader.getRows()][];
+            for (int row = 0; row < read.length; row++) {
+                read[row] = Arrays.copyOf(cells[row], reader.getColumns());
+            }
+            return read;
+        }
+    }
+
+    private static String formulas(Sheet sheet, char delimiter) throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvWriter.writeFormulas(sheet, writer, delimiter);
+        return writer.toString();
+    }
+
+    private static String values(Sheet sheet, char delimiter) throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvWriter.writeValues(sheet, writer, delimiter);
+        return writer.toString();
+    }
+
+    /**
+     * Assert that formulas containing the delimiter, quotes or line breaks are quoted,
+     * and that every formula reads back as it was written.
+     */
+    @Test
+    public void testFormulasRoundTrip() throws IOException {
+        String[][] sources = {
+                {"1", "MAX(A0, 2)", ""},
+                {"", "", ""},
+                {"A0 + 1", "-7", "123456789012345678901"},
+        };
+        Sheet sheet = sheet(sources);
+        String text = formulas(sheet, ',');
+        assertEquals("1,\"MAX(A0, 2)\",\r\n,,\r\nA0 + 1,-7,123456789012345678901\r\n", text);
+        assertArrayEquals(sources, read(text, ','));
+
+        text = formulas(sheet, ';');
+        assertEquals("1;MAX(A0, 2);\r\n;;\r\nA0 + 1;-7;123456789012345678901\r\n", text);
+        assertArrayEquals(sources, read(text, ';'));
+    }
+
+    /**
+     * Assert that the rendered values of every cell are written, quoted where needed.
+     */
+    @Test
+    public void testValues() throws IOException {
+        Sheet sheet = sheet(new String[][]{
+                {"2", "A0 * 3", ""},
+                {"", "NOPE(1)", "A0 + 1"},
+        });
+        String text = values(sheet, ',');
+        assertEquals("2,6,\r\n," + sheet.valueAt(1, 1).getContent() + ",3\r\n", text);
+        assertEquals(2, read(text, ',').length);
+    }
+
+    /**
+     * Assert that fields are quoted with their quotes doubled, and contain line breaks.
+     */
+    @Test
+    public void testQuoting() throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvWriter.writeValues(new TextView(new String[][]{
+                {"say \"hi\"", "two\nlines", "a\rb", "plain"},
+        }), writer, ',');
+        String text = writer.toString();
+        assertEquals("\"say \"\"hi\"\"\",\"two\nlines\",\"a\rb\",plain\r\n", text);
+        assertArrayEquals(new String[][]{{"say \"hi\"", "two\nlines", "a\rb", "plain"}},
+                read(text, ','));
+    }
+
+    /**
+     * Assert that a sheet without columns is written as an empty record for each row.
+     */
+    @Test
+    public void testNoColumns() throws IOException {
+        TextView view = new TextView(new String[3][0]);
+        StringWriter writer = new StringWriter();
+        CsvWriter.writeValues(view, writer, ',');
+        assertEquals("\r\n\r\n\r\n", writer.toString());
+        writer = new StringWriter();
+        CsvWriter.writeFormulas(view, writer, ',');
+        assertEquals("\r\n\r\n\r\n", writer.toString());
+    }
+
+    /**
+     * Assert that a sheet of more cells than are rendered at once is written whole.
+     */
+    @Test
+    public void testManyRows() throws IOException {
+        String[][] sources = new String[40000][2];
+        for (int row = 0; row < sources.length; row++) {
+            sources[row] = new String[]{Integer.toString(row), "A" + row + " + 1"};
+        }
+        String text = values(sheet(sources), ',');
+        String[] lines = text.split("\r\n");
+        assertEquals(sources.length, lines.length);
+        assertEquals("39999,40000", lines[39999]);
+    }
+}
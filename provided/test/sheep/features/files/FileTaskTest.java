@@ -0,0 +1,226 @@
+package sheep.features.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sheep.core.CellVisitor;
+import sheep.core.SheetView;
+import sheep.core.ViewElement;
+import sheep.expression.CoreFactory;
+import sheep.parsing.SimpleParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FileTaskTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Sheet sheet(int rows, int columns) {
+        CoreFactory factory = new CoreFactory();
+        return new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(rows, columns);
+    }
+
+    private static void waitFor(FileTask task) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!task.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(task.isDone());
+    }
+
+    /**
+     * A view of a sheet with a single column of numbers, which waits for the latch
+     * after visiting its first cell.
+     */
+    private static SheetView blocking(int rows, CountDownLatch started, CountDownLatch latch) {
+        return new SheetView() {
+            @Override
+            public int getRows() {
+                return rows;
+            }
+
+            @Override
+            public int getColumns() {
+                return 1;
+            }
+
+            @Override
+            public ViewElement valueAt(int row, int column) {
+                return formulaAt(row, column);
+            }
+
+            @Override
+            public ViewElement formulaAt(int row, int column) {
+                return new ViewElement(Integer.toString(row), "white", "black");
+            }
+
+            @Override
+            public void forEachOccupied(CellVisitor visitor) {
+                for (int row = 0; row < rows; row++) {
+                    visitor.visit(row, 0);
+                    if (row == 0) {
+                        started.countDown();
+                        try {
+                            latch.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Assert that a save replaces the file once it is completely written,
+     * reporting the rows and bytes written.
+     */
+    @Test
+    public void testSave() throws IOException, InterruptedException {
+        Path path = folder.getRoot().toPath().resolve("sheet.txt");
+        Files.writeString(path, "previous");
+        Sheet sheet = sheet(3, 2);
+        sheet.update(0, 0, "1");
+        sheet.update(1, 1, "A0 + 1");
+        sheet.update(2, 0, "3");
+        FileTask task = FileTask.save(sheet.snapshot(), path, SheetCompression.DEFAULT);
+        waitFor(task);
+        assertNull(task.getFailure());
+        assertFalse(task.isCancelled());
+        assertEquals(List.of("Dimensions:3,2", "1, ", ", A0 + 1", "3, "),
+                Files.readAllLines(path));
+        assertFalse(Files.exists(Path.of(path + ".tmp")));
+        assertEquals(3, task.getRows());
+        assertEquals(Files.size(path), task.getBytes());
+        assertTrue(task.describe(), task.describe().startsWith("Saving sheet.txt: 3 rows"));
+    }
+
+    /**
+     * Assert that cancelling a save leaves the existing file as it was,
+     * without a temporary file, and is not reported as a failure.
+     */
+    @Test
+    public void testCancelSave() throws IOException, InterruptedException {
+        Path path = folder.getRoot().toPath().resolve("sheet.txt");
+        Files.writeString(path, "previous");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        FileTask task = FileTask.save(blocking(100, started, latch), path,
+                SheetCompression.DEFAULT);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertFalse(task.isDone());
+        task.cancel();
+        latch.countDown();
+        waitFor(task);
+        assertTrue(task.isCancelled());
+        assertNull(task.getFailure());
+        assertEquals("previous", Files.readString(path));
+        assertFalse(Files.exists(Path.of(path + ".tmp")));
+    }
+
+    /**
+     * Assert that a load replaces the cells and dimensions of the sheet,
+     * reporting the rows and bytes read, and that blank cells hold the default formula.
+     */
+    @Test
+    public void testLoad() throws IOException, InterruptedException {
+        Path path = folder.getRoot().toPath().resolve("sheet.txt");
+        Files.writeString(path, "Dimensions:3,2\n1, \n , A0 + 1\n3,  \n");
+        Sheet sheet = sheet(1, 1);
+        sheet.update(0, 0, "9");
+        FileTask task = FileTask.load(sheet, path);
+        waitFor(task);
+        assertNull(task.getFailure());
+        assertEquals(3, sheet.getRows());
+        assertEquals(2, sheet.getColumns());
+        assertEquals("1", sheet.valueAt(0, 0).getContent());
+        assertEquals("2", sheet.valueAt(1, 1).getContent());
+        assertEquals("3", sheet.valueAt(2, 0).getContent());
+        assertEquals("", sheet.formulaAt(1, 0).getContent());
+        List<String> occupied = new ArrayList<>();
+        sheet.forEachOccupied((row, column) -> occupied.add(row + "," + column));
+        assertEquals(List.of("0,0", "1,1", "2,0"), occupied);
+        assertEquals(3, task.getRows());
+        assertEquals(Files.size(path), task.getBytes());
+    }
+
+    /**
+     * Assert that cancelling a load while the file is read leaves the sheet as it was.
+     */
+    @Test
+    public void testCancelLoad() throws IOException, InterruptedException {
+        Path path = folder.getRoot().toPath().resolve("sheet.txt");
+        StringBuilder contents = new StringBuilder("Dimensions:200000,4\n");
+        for (int row = 0; row < 200000; row++) {
+            contents.append(row).append(", A").append(row).append(" + 1, 2, 3\n");
+        }
+        Files.writeString(path, contents);
+        Sheet sheet = sheet(1, 1);
+        sheet.update(0, 0, "9");
+        FileTask task = FileTask.load(sheet, path);
+        task.cancel();
+        waitFor(task);
+        assertTrue(task.isCancelled());
+        assertNull(task.getFailure());
+        assertEquals(1, sheet.getRows());
+        assertEquals("9", sheet.valueAt(0, 0).getContent());
+        assertTrue(task.getBytes() < Files.size(path));
+    }
+
+    /**
+     * Assert that a malformed file is reported as the failure of the load,
+     * leaving the sheet as it was.
+     */
+    @Test
+    public void testLoadFailure() throws IOException, InterruptedException {
+        Path path = folder.getRoot().toPath().resolve("sheet.txt");
+        Files.writeString(path, "Dimensions:2,2\n1, 2\n3\n");
+        Sheet sheet = sheet(1, 1);
+        sheet.update(0, 0, "9");
+        FileTask task = FileTask.load(sheet, path);
+        waitFor(task);
+        assertTrue(task.getFailure() instanceof SheetFileReadingException);
+        assertFalse(task.getFailure() instanceof InterruptedIOException);
+        assertEquals("9", sheet.valueAt(0, 0).getContent());
+    }
+
+    /**
+     * Assert that fields of an imported file which cannot be parsed are left blank,
+     * and reported as the warning of the task with the first of them.
+     */
+    @Test
+    public void testImportDroppedFields() throws IOException, InterruptedException {
+        Path path = folder.getRoot().toPath().resolve("sheet.csv");
+        Files.writeString(path, "name,qty,note\nbob,2,\"hello, world\"\nalice,3.5,x y\n");
+        Sheet sheet = sheet(1, 1);
+        FileTask task = FileTask.importCsv(sheet, path, ',');
+        waitFor(task);
+        assertNull(task.getFailure());
+        assertEquals(3, sheet.getRows());
+        assertEquals(3, sheet.getColumns());
+        assertEquals("2", sheet.valueAt(1, 1).getContent());
+        assertEquals("", sheet.formulaAt(1, 2).getContent());
+        assertEquals("", sheet.formulaAt(2, 1).getContent());
+        assertEquals("", sheet.formulaAt(2, 2).getContent());
+        assertEquals("3 cells could not be loaded, the first at C1", task.getWarning());
+
+        Files.writeString(path, "1,2\n3,A0 + B0\n");
+        task = FileTask.importCsv(sheet, path, ',');
+        waitFor(task);
+        assertNull(task.getFailure());
+        assertNull(task.getWarning());
+        assertEquals("3", sheet.valueAt(1, 1).getContent());
+    }
+}
@@ -0,0 +1,162 @@
+package sheep.features.files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sheep.expression.CoreFactory;
+import sheep.parsing.PrattParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class MappedSheetFileReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Path write(String contents) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.writeString(path, contents, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    /**
+     * Read every cell of the file with a mapped reader, where cells not supplied are empty.
+     */
+    private String[][] read(Path path) throws IOException {
+        try (MappedSheetFileReader reader = MappedSheetFileReader.open(path, pool)) {
+            String[][] cells = new String[reader.getRows()][reader.getColumns()];
+            for (String[] row : cells) {
+                Arrays.fill(row, "");
+            }
+            reader.supply((row, column, source) -> cells[row][column] = source);
+            assertEquals(Files.size(path), reader.getPosition());
+            return cells;
+        }
+    }
+
+    /**
+     * Read every cell of the file as loading a small file does.
+     */
+    private static String[][] readLines(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path);
+        return SheetFileFormat.readCells(SheetFileFormat.readDimensions(lines), lines);
+    }
+
+    private Sheet sheet(int rows, int columns, int every) {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new PrattParser(factory), factory.createEmpty())
+                .empty(rows, columns);
+        String[][] sources = new String[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            Arrays.fill(sources[row], "");
+            for (int column = 0; column < columns; column += every) {
+                sources[row][column] = switch ((row + column) % 3) {
+                    case 0 -> Integer.toString(row * column);
+                    case 1 -> "MAX(A" + row + ", " + column + ")";
+                    default -> "A0 + " + row;
+                };
+            }
+        }
+        sheet.load(sources);
+        return sheet;
+    }
+
+    /**
+     * Assert that a dense file spanning several chunks reads the same cells as reading its lines,
+     * including quoted cells containing commas.
+     */
+    @Test
+    public void testDenseRoundTrip() throws IOException {
+        StringWriter writer = new StringWriter();
+        SheetFileFormat.writeSheet(sheet(4000, 6, 1), writer);
+        assertTrue(writer.toString().startsWith(SheetFileFormat.DENSE_HEADER));
+        assertTrue(writer.toString().length() > 2 * MappedSheetFileReader.MIN_CHUNK_SIZE);
+        Path path = write(writer.toString());
+        String[][] cells = read(path);
+        assertArrayEquals(readLines(path), cells);
+        assertEquals("MAX(A1, 0)", cells[1][0]);
+        assertEquals(" A0 + 1", cells[1][1]);
+    }
+
+    /**
+     * Assert that a sparse file reads only its occupied cells.
+     */
+    @Test
+    public void testSparseRoundTrip() throws IOException {
+        StringWriter writer = new StringWriter();
+        SheetFileFormat.writeSheet(sheet(3000, 8, 4), writer);
+        assertTrue(writer.toString().startsWith(SheetFileFormat.SPARSE_HEADER));
+        Path path = write(writer.toString());
+        String[][] cells = read(path);
+        assertArrayEquals(readLines(path), cells);
+        assertEquals("MAX(A1, 0)", cells[1][0]);
+        assertEquals("", cells[1][1]);
+    }
+
+    /**
+     * Assert that carriage returns ending lines are not part of the last cell.
+     */
+    @Test
+    public void testCarriageReturns() throws IOException {
+        Path path = write("Dimensions:2,2\r\n1, 2\r\n\"MAX(A0, B0)\", A0\r\n");
+        String[][] cells = read(path);
+        assertArrayEquals(new String[]{"1", " 2"}, cells[0]);
+        assertArrayEquals(new String[]{"MAX(A0, B0)", " A0"}, cells[1]);
+    }
+
+    /**
+     * Assert that a file without dimensions cannot be opened.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testMissingDimensions() throws IOException {
+        read(write("1, 2\n3, 4\n"));
+    }
+
+    /**
+     * Assert that a line with fewer cells than the sheet has columns is malformed.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testShortLine() throws IOException {
+        read(write("Dimensions:2,3\n1, 2, 3\n4, 5\n"));
+    }
+
+    /**
+     * Assert that a file with more lines than the sheet has rows is malformed.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testExtraLine() throws IOException {
+        read(write("Dimensions:1,2\n1, 2\n3, 4\n"));
+    }
+
+    /**
+     * Assert that an occupied cell outside the sheet is malformed.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testSparseOutOfBounds() throws IOException {
+        read(write("Sparse:2,2\n0,0,1\n2,0,3\n"));
+    }
+}
@@ -0,0 +1,243 @@
+package sheep.features.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sheep.expression.CoreFactory;
+import sheep.parsing.PrattParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.*;
+
+public class SheetCompressionTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Sheet sheet(int rows, int columns) {
+        CoreFactory factory = new CoreFactory();
+        return new SheetBuilder(new PrattParser(factory), factory.createEmpty()).empty(rows, columns);
+    }
+
+    /**
+     * A sheet of repetitive numbers and formulas, which compresses well.
+     */
+    private static Sheet filled() {
+        String[][] sources = new String[2000][4];
+        for (int row = 0; row < sources.length; row++) {
+            sources[row] = new String[]{Integer.toString(row % 10), "A" + row + " + 1",
+                    "MAX(A" + row + ", 3)", ""};
+        }
+        Sheet sheet = sheet(sources.length, 4);
+        sheet.load(sources);
+        return sheet;
+    }
+
+    private Path save(Sheet sheet, String name, int level) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(name);
+        FileSaving.save(sheet.snapshot(), path, Files.newOutputStream(path), level);
+        return path;
+    }
+
+    private static Sheet load(Path path) throws IOException, InterruptedException {
+        Sheet loaded = sheet(1, 1);
+        FileTask task = FileTask.load(loaded, path);
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!task.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(task.isDone());
+        assertNull(task.getFailure());
+        return loaded;
+    }
+
+    private static void assertSameCells(Sheet expected, Sheet actual) {
+        assertEquals(expected.getRows(), actual.getRows());
+        assertEquals(expected.getColumns(), actual.getColumns());
+        assertEquals(expected.encode(), actual.encode());
+        assertEquals("10", actual.valueAt(1999, 1).getContent());
+    }
+
+    private static byte[] decompressed(Path path) throws IOException {
+        try (InputStream input = SheetCompression.newInputStream(path)) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * Assert that a text sheet named with the compressed extension is compressed
+     * at every level, and loads back the same cells.
+     */
+    @Test
+    public void testTextRoundTrip() throws IOException, InterruptedException {
+        Sheet sheet = filled();
+        Path plain = save(sheet, "plain.txt", SheetCompression.DEFAULT);
+        assertFalse(SheetCompression.isCompressed(plain));
+        long[] sizes = new long[3];
+        int[] levels = {SheetCompression.FASTEST, SheetCompression.DEFAULT, SheetCompression.SMALLEST};
+        for (int index = 0; index < levels.length; index++) {
+            Path path = save(sheet, "sheet" + index + ".txt.gz", levels[index]);
+            assertTrue(SheetCompression.isCompressed(path));
+            assertArrayEquals(Files.readAllBytes(plain), decompressed(path));
+            assertSameCells(sheet, load(path));
+            sizes[index] = Files.size(path);
+            assertTrue(sizes[index] < Files.size(plain) / 2);
+        }
+        assertTrue(Arrays.toString(sizes), sizes[2] <= sizes[0]);
+    }
+
+    /**
+     * Assert that a binary sheet named with both extensions is compressed binary,
+     * and loads back the same cells.
+     */
+    @Test
+    public void testBinaryRoundTrip() throws IOException, InterruptedException {
+        Sheet sheet = filled();
+        Path path = save(sheet, "sheet" + BinarySheetFormat.EXTENSION + SheetCompression.EXTENSION,
+                SheetCompression.FASTEST);
+        assertTrue(SheetCompression.isCompressed(path));
+        assertTrue(BinarySheetFormat.isBinary(path));
+        try (InputStream input = SheetCompression.newInputStream(path)) {
+            assertTrue(BinarySheetFormat.hasMagic(input));
+        }
+        assertSameCells(sheet, load(path));
+    }
+
+    /**
+     * Assert that saving over an existing file keeps it compressed, and binary,
+     * whatever its name.
+     */
+    @Test
+    public void testKeepsExistingFormat() throws IOException, InterruptedException {
+        Sheet sheet = filled();
+        Path path = save(sheet, "sheet.sheepb.gz", SheetCompression.DEFAULT);
+        Path renamed = Files.move(path, path.resolveSibling("renamed"));
+        assertFalse(SheetCompression.hasExtension(renamed));
+
+        sheet.update(0, 3, "42");
+        FileTask task = FileTask.save(sheet.snapshot(), renamed, SheetCompression.DEFAULT);
+        while (!task.isDone()) {
+            Thread.sleep(5);
+        }
+        assertNull(task.getFailure());
+        assertTrue(SheetCompression.isCompressed(renamed));
+        assertTrue(BinarySheetFormat.isBinary(renamed));
+        assertEquals("42", load(renamed).valueAt(0, 3).getContent());
+    }
+
+    /**
+     * Assert that compressed files are recognised by their magic number rather than their name.
+     */
+    @Test
+    public void testDetection() throws IOException {
+        Path compressed = folder.getRoot().toPath().resolve("compressed.txt");
+        try (OutputStream output = SheetCompression.newOutputStream(compressed,
+                SheetCompression.FASTEST)) {
+            output.write("Dimensions:1,1\n7\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertFalse(SheetCompression.hasExtension(compressed));
+        assertTrue(SheetCompression.isCompressed(compressed));
+        assertEquals("Dimensions:1,1\n7\n",
+                new String(decompressed(compressed), StandardCharsets.UTF_8));
+
+        Path plain = folder.getRoot().toPath().resolve("plain.gz");
+        Files.writeString(plain, "Dimensions:1,1\n7\n");
+        assertTrue(SheetCompression.hasExtension(plain));
+        assertFalse(SheetCompression.isCompressed(plain));
+        assertEquals("Dimensions:1,1\n7\n",
+                new String(decompressed(plain), StandardCharsets.UTF_8));
+
+        Path single = folder.getRoot().toPath().resolve("single");
+        Files.write(single, new byte[]{0x1f});
+        assertFalse(SheetCompression.isCompressed(single));
+        assertFalse(SheetCompression.isCompressed(folder.getRoot().toPath()));
+        assertFalse(SheetCompression.isCompressed(folder.getRoot().toPath().resolve("missing")));
+    }
+
+    /**
+     * Assert that a stream with the gzip magic number but a malformed header
+     * is not decompressed, and is closed.
+     */
+    @Test
+    public void testMalformedHeader() throws IOException {
+        boolean[] closed = {false};
+        InputStream input = new ByteArrayInputStream(new byte[]{0x1f, (byte) 0x8b, 99, 0, 0}) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        try {
+            SheetCompression.decompress(input);
+            fail("A malformed gzip header should not be decompressed");
+        } catch (ZipException e) {
+            // expected
+        }
+        assertTrue(closed[0]);
+
+        Path path = folder.getRoot().toPath().resolve("broken.txt.gz");
+        Files.write(path, new byte[]{0x1f, (byte) 0x8b, 99, 0, 0});
+        assertTrue(SheetCompression.isCompressed(path));
+        try {
+            SheetCompression.newInputStream(path).close();
+            fail("A malformed gzip header should not be decompressed");
+        } catch (ZipException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Assert that the file being saved is closed if the format of the existing file
+     * cannot be read, and that the existing file is left as it was.
+     */
+    @Test
+    public void testSaveOverMalformed() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("broken.txt");
+        byte[] broken = {0x1f, (byte) 0x8b, 99, 0, 0};
+        Files.write(path, broken);
+        boolean[] closed = {false};
+        OutputStream file = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        try {
+            FileSaving.save(filled().snapshot(), path, file, SheetCompression.DEFAULT);
+            fail("The format of a malformed compressed file should not be read");
+        } catch (ZipException e) {
+            // expected
+        }
+        assertTrue(closed[0]);
+        assertArrayEquals(broken, Files.readAllBytes(path));
+    }
+
+    /**
+     * Assert that loading a compressed file cut short fails, leaving the sheet as it was.
+     */
+    @Test
+    public void testTruncated() throws IOException, InterruptedException {
+        Path path = save(filled(), "sheet.txt.gz", SheetCompression.DEFAULT);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+        Sheet sheet = sheet(1, 1);
+        sheet.update(0, 0, "9");
+        FileTask task = FileTask.load(sheet, path);
+        while (!task.isDone()) {
+            Thread.sleep(5);
+        }
+        assertNotNull(task.getFailure());
+        assertEquals("9", sheet.valueAt(0, 0).getContent());
+    }
+}
@@ -0,0 +1,225 @@
+package sheep.features.files;
+
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.parsing.PrattParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SheetFileReaderTest {
+    private static Sheet sheet(String[][] sources) {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new PrattParser(factory), factory.createEmpty())
+                .empty(sources.length, sources[0].length);
+        sheet.load(sources);
+        return sheet;
+    }
+
+    private static String encode(Sheet sheet) throws IOException {
+        StringWriter writer = new StringWriter();
+        SheetFileFormat.writeSheet(sheet, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Read every cell of the text with a sheet file reader, where cells not supplied are empty.
+     */
+    private static String[][] read(String text) throws IOException {
+        try (SheetFileReader reader = new SheetFileReader(new BufferedReader(new StringReader(text)))) {
+            String[][] cells = new String[reader.getRows()][reader.getColumns()];
+            for (String[] row : cells) {
+                Arrays.fill(row, "");
+            }
+            reader.supply((row, column, source) -> cells[row][column] = source);
+            return cells;
+        }
+    }
+
+    private static String[][] readLines(String text) throws SheetFileReadingException {
+        List<String> lines = text.lines().toList();
+        return SheetFileFormat.readCells(SheetFileFormat.readDimensions(lines), lines);
+    }
+
+    /**
+     * Assert that a dense file longer than the read-ahead queue reads the same cells
+     * as reading all of its lines, including quoted cells.
+     */
+    @Test
+    public void testDenseRoundTrip() throws IOException {
+        String[][] sources = new String[SheetFileReader.QUEUE_CAPACITY * 4][3];
+        for (int row = 0; row < sources.length; row++) {
+            sources[row] = new String[]{Integer.toString(row), "A" + row + " + 1",
+                    row % 2 == 0 ? "MAX(A" + row + ", 3)" : ""};
+        }
+        String text = encode(sheet(sources));
+        assertTrue(text.startsWith(SheetFileFormat.DENSE_HEADER));
+        String[][] cells = read(text);
+        assertArrayEquals(readLines(text), cells);
+        assertEquals("MAX(A2, 3)", cells[2][2]);
+        assertEquals(" A2 + 1", cells[2][1]);
+        assertEquals(" ", cells[3][2]);
+    }
+
+    /**
+     * Assert that a mostly empty sheet is written as its occupied cells only,
+     * and reads back the same cells, including formulas containing commas.
+     */
+    @Test
+    public void testSparseRoundTrip() throws IOException {
+        String[][] sources = new String[1000][20];
+        for (String[] row : sources) {
+            Arrays.fill(row, "");
+        }
+        sources[0][0] = "-3";
+        sources[7][19] = "MAX(A0, 4)";
+        sources[999][5] = "A0 + B1";
+        String text = encode(sheet(sources));
+        assertEquals(List.of("Sparse:1000,20", "0,0,-3", "7,19,MAX(A0, 4)", "999,5,A0 + B1"),
+                text.lines().toList());
+        String[][] cells = read(text);
+        assertArrayEquals(readLines(text), cells);
+        assertArrayEquals(sources, cells);
+    }
+
+    /**
+     * Assert that a sheet without occupied cells is written as its dimensions only.
+     */
+    @Test
+    public void testSparseEmpty() throws IOException {
+        String[][] sources = new String[3][2];
+        for (String[] row : sources) {
+            Arrays.fill(row, "");
+        }
+        String text = encode(sheet(sources));
+        assertEquals("Sparse:3,2\n", text);
+        assertArrayEquals(sources, read(text));
+    }
+
+    /**
+     * Assert that occupied cells which are malformed or outside the sheet are not read.
+     */
+    @Test
+    public void testSparseMalformed() throws IOException {
+        for (String record : List.of("1", "1,2", "a,0,3", "0,b,3", "-1,0,3", "2,0,3", "0,2,3")) {
+            try {
+                read("Sparse:2,2\n0,0,1\n" + record + "\n");
+                fail("Reading '" + record + "' should fail");
+            } catch (SheetFileReadingException e) {
+                // expected
+            }
+            try {
+                readLines("Sparse:2,2\n" + record + "\n");
+                fail("Reading '" + record + "' from lines should fail");
+            } catch (SheetFileReadingException e) {
+                // expected
+            }
+        }
+        // empty lines are skipped
+        assertEquals("1", read("Sparse:2,2\n\n1,1,1\n")[1][1]);
+    }
+
+    /**
+     * Assert that a line with fewer cells than the sheet has columns is malformed.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testShortLine() throws IOException {
+        read("Dimensions:2,3\n1, 2, 3\n4, 5\n");
+    }
+
+    /**
+     * Assert that a file with more lines than the sheet has rows is malformed.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testExtraLine() throws IOException {
+        read("Dimensions:1,2\n1, 2\n3, 4\n");
+    }
+
+    /**
+     * Assert that a file without dimensions cannot be opened.
+     */
+    @Test(expected = SheetFileReadingException.class)
+    public void testMissingDimensions() throws IOException {
+        read("");
+    }
+
+    /**
+     * Assert that a failure reading the file on the read-ahead thread is thrown by supply,
+     * after the cells read before the failure have been passed to the sink.
+     */
+    @Test(timeout = 6000)
+    public void testReadAheadFailure() throws IOException {
+        int lines = SheetFileReader.QUEUE_CAPACITY * 2;
+        StringBuilder text = new StringBuilder("Dimensions:" + (lines + 1) + ",1\n");
+        for (int line = 0; line < lines; line++) {
+            text.append(line).append('\n');
+        }
+        IOException failure = new IOException("disk removed");
+        Reader failing = new Reader() {
+            private final Reader contents = new StringReader(text.toString());
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = contents.read(buffer, offset, length);
+                if (read < 0) {
+                    throw failure;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        List<String> supplied = new ArrayList<>();
+        try (SheetFileReader reader = new SheetFileReader(new BufferedReader(failing, 64))) {
+            reader.supply((row, column, source) -> supplied.add(source));
+            fail("The failure while reading ahead should be thrown");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(lines, supplied.size());
+        assertEquals(Integer.toString(lines - 1), supplied.get(lines - 1));
+    }
+
+    /**
+     * Assert that the read-ahead thread stops when the sink fails while the queue is full.
+     */
+    @Test(timeout = 6000)
+    public void testSinkFailureStopsReadAhead() throws Exception {
+        StringBuilder text = new StringBuilder("Dimensions:10000,1\n");
+        for (int line = 0; line < 10000; line++) {
+            text.append(line).append('\n');
+        }
+        try (SheetFileReader reader = new SheetFileReader(
+                new BufferedReader(new StringReader(text.toString())))) {
+            reader.supply((row, column, source) -> {
+                if (row == 1) {
+                    throw new IllegalStateException("sink failed");
+                }
+            });
+            fail("The failure of the sink should be thrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        while (readAheadThreads() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long readAheadThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("sheet-file-reader"))
+                .count();
+    }
+}
@@ -0,0 +1,263 @@
+package sheep.features.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import sheep.expression.CoreFactory;
+import sheep.parsing.PrattParser;
+import sheep.sheets.Sheet;
+import sheep.sheets.SheetBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SheetJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Sheet sheet() {
+        CoreFactory factory = new CoreFactory();
+        return new SheetBuilder(new PrattParser(factory), factory.createEmpty()).empty(5, 5);
+    }
+
+    private static Path log(Path snapshot) {
+        return Path.of(snapshot + SheetJournal.LOG_SUFFIX);
+    }
+
+    private static Path oldLog(Path snapshot) {
+        return Path.of(log(snapshot) + SheetJournal.OLD_SUFFIX);
+    }
+
+    /**
+     * Assert that a sheet is recovered from the snapshot written on opening
+     * and the updates logged after it, and that failed updates are not logged.
+     */
+    @Test
+    public void testRecovery() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        Sheet sheet = sheet();
+        sheet.update(0, 0, "2");
+        try (SheetJournal journal = SheetJournal.open(sheet, snapshot, 100)) {
+            assertTrue(Files.exists(snapshot));
+            assertTrue(journal.update(1, 0, "A0 * 3").isSuccess());
+            assertTrue(journal.update(2, 2, "MAX(A1, 10)").isSuccess());
+            assertFalse(journal.update(3, 3, "NOPE(1)").isSuccess());
+            assertTrue(journal.update(0, 0, "4").isSuccess());
+        }
+        assertEquals(List.of("1,0,A0 * 3", "2,2,MAX(A1, 10)", "0,0,4"),
+                Files.readAllLines(log(snapshot)));
+
+        Sheet recovered = sheet();
+        try (SheetJournal journal = SheetJournal.open(recovered, snapshot, 100)) {
+            assertNull(journal.getFailure());
+        }
+        assertEquals("4", recovered.valueAt(0, 0).getContent());
+        assertEquals("12", recovered.valueAt(1, 0).getContent());
+        assertEquals("MAX(A1, 10)", recovered.formulaAt(2, 2).getContent());
+        assertEquals("12", recovered.valueAt(2, 2).getContent());
+        assertEquals("", recovered.formulaAt(3, 3).getContent());
+        // the recovered sheet is written as the new snapshot, with an empty log
+        assertEquals(List.of(), Files.readAllLines(log(snapshot)));
+    }
+
+    /**
+     * Assert that a last line of the log which was not completely written is ignored.
+     */
+    @Test
+    public void testTornLastLine() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        try (SheetJournal journal = SheetJournal.open(sheet(), snapshot, 100)) {
+            journal.update(0, 0, "7");
+            journal.update(0, 1, "A0 + 1");
+        }
+        Files.writeString(log(snapshot), "4,4,12", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        Sheet recovered = sheet();
+        SheetJournal.open(recovered, snapshot, 100).close();
+        assertEquals("8", recovered.valueAt(0, 1).getContent());
+        assertEquals("", recovered.valueAt(4, 4).getContent());
+    }
+
+    /**
+     * Assert that once the log holds enough updates a snapshot is written
+     * and the old log deleted, and that the sheet is recovered from the snapshot.
+     */
+    @Test
+    public void testCompaction() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        try (SheetJournal journal = SheetJournal.open(sheet(), snapshot, 3)) {
+            for (int row = 0; row < 5; row++) {
+                journal.update(row, 0, Integer.toString(row + 10));
+            }
+        }
+        assertFalse(Files.exists(oldLog(snapshot)));
+        // the first three updates are in the snapshot, the log is started again after them
+        assertEquals(List.of("3,0,13", "4,0,14"), Files.readAllLines(log(snapshot)));
+
+        Files.delete(log(snapshot));
+        Sheet recovered = sheet();
+        SheetJournal.open(recovered, snapshot, 3).close();
+        for (int row = 0; row < 3; row++) {
+            assertEquals(Integer.toString(row + 10), recovered.valueAt(row, 0).getContent());
+        }
+    }
+
+    /**
+     * Assert that a failed snapshot is reported and keeps the old log so no update is lost,
+     * and that the following updates do not each start another snapshot.
+     */
+    @Test
+    public void testFailedCompaction() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        Path temporary = Path.of(snapshot + ".tmp");
+        Sheet sheet = sheet();
+        try (SheetJournal journal = SheetJournal.open(sheet, snapshot, 2)) {
+            // the temporary snapshot cannot be written over a directory
+            Files.createDirectory(temporary);
+            journal.update(0, 0, "1");
+            journal.update(0, 1, "2");
+            waitForCompaction(journal);
+            assertNotNull(journal.getFailure());
+            assertTrue(Files.exists(oldLog(snapshot)));
+            // a second snapshot is attempted, and fails, once the new log holds enough updates
+            journal.update(0, 2, "3");
+            journal.update(0, 3, "4");
+            waitForCompaction(journal);
+            assertNotNull(journal.getFailure());
+
+            Files.delete(temporary);
+            journal.update(0, 4, "5");
+            waitForCompaction(journal);
+            assertEquals(List.of("0,2,3", "0,3,4", "0,4,5"), Files.readAllLines(log(snapshot)));
+        }
+        // both logs are kept until a snapshot succeeds
+        assertEquals(List.of("0,0,1", "0,1,2"), Files.readAllLines(oldLog(snapshot)));
+
+        Sheet recovered = sheet();
+        SheetJournal.open(recovered, snapshot, 2).close();
+        assertFalse(Files.exists(oldLog(snapshot)));
+        for (int column = 0; column < 5; column++) {
+            assertEquals(Integer.toString(column + 1), recovered.valueAt(0, column).getContent());
+        }
+    }
+
+    /**
+     * Assert that updates logged after the sheet is loaded with larger dimensions
+     * are recovered onto the loaded sheet, even if the journal is not closed.
+     */
+    @Test
+    public void testRecoveryAfterResizingLoad() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        Sheet sheet = sheet();
+        SheetJournal journal = SheetJournal.open(sheet, snapshot, 100);
+        journal.update(0, 0, "9");
+        sheet.load(40, 40, sink -> {
+            sink.accept(0, 1, "5");
+            sink.accept(39, 39, "B0 * 2");
+        });
+        assertTrue(journal.update(30, 30, "2").isSuccess());
+        assertNull(journal.getFailure());
+        // the program stops without closing the journal
+
+        Sheet recovered = sheet();
+        SheetJournal.open(recovered, snapshot, 100).close();
+        assertEquals(40, recovered.getRows());
+        assertEquals(40, recovered.getColumns());
+        assertEquals("", recovered.formulaAt(0, 0).getContent());
+        assertEquals("5", recovered.valueAt(0, 1).getContent());
+        assertEquals("10", recovered.valueAt(39, 39).getContent());
+        assertEquals("2", recovered.valueAt(30, 30).getContent());
+    }
+
+    /**
+     * Assert that updates logged before the sheet is loaded with the same dimensions
+     * are not replayed onto the loaded sheet.
+     */
+    @Test
+    public void testRecoveryAfterLoad() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        Sheet sheet = sheet();
+        SheetJournal journal = SheetJournal.open(sheet, snapshot, 100);
+        journal.update(0, 0, "1");
+        journal.update(1, 1, "A0 + 1");
+        sheet.load(new String[][]{
+                {"", "7", "", "", ""},
+                {"", "", "", "", ""},
+                {"", "", "", "", ""},
+                {"", "", "", "", ""},
+                {"", "", "", "", "B0 * 3"},
+        });
+        journal.update(2, 2, "3");
+        assertEquals(List.of("2,2,3"), Files.readAllLines(log(snapshot)));
+
+        Sheet recovered = sheet();
+        SheetJournal.open(recovered, snapshot, 100).close();
+        assertEquals("", recovered.formulaAt(0, 0).getContent());
+        assertEquals("", recovered.formulaAt(1, 1).getContent());
+        assertEquals("7", recovered.valueAt(0, 1).getContent());
+        assertEquals("21", recovered.valueAt(4, 4).getContent());
+        assertEquals("3", recovered.valueAt(2, 2).getContent());
+    }
+
+    /**
+     * Assert that a sheet cleared after its last update is written as the snapshot
+     * when the journal is closed.
+     */
+    @Test
+    public void testClearBeforeClose() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        Sheet sheet = sheet();
+        try (SheetJournal journal = SheetJournal.open(sheet, snapshot, 100)) {
+            journal.update(0, 0, "1");
+            sheet.clear();
+        }
+        assertEquals(List.of(), Files.readAllLines(log(snapshot)));
+
+        Sheet recovered = sheet();
+        recovered.update(3, 3, "8");
+        SheetJournal.open(recovered, snapshot, 100).close();
+        assertEquals("", recovered.formulaAt(0, 0).getContent());
+        assertEquals("", recovered.formulaAt(3, 3).getContent());
+    }
+
+    /**
+     * Assert that the snapshot written in the background is the sheet as it was
+     * when the log was started again, not as it was changed while writing.
+     */
+    @Test
+    public void testCompactionSnapshot() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("sheet.sheepb");
+        Sheet sheet = sheet();
+        try (SheetJournal journal = SheetJournal.open(sheet, snapshot, 2)) {
+            journal.update(0, 0, "1");
+            journal.update(0, 1, "2");
+            // changed directly, so not logged
+            sheet.update(4, 4, "6");
+            waitForCompaction(journal);
+            assertNull(journal.getFailure());
+        }
+
+        Sheet recovered = sheet();
+        SheetJournal.open(recovered, snapshot, 2).close();
+        assertEquals("1", recovered.valueAt(0, 0).getContent());
+        assertEquals("2", recovered.valueAt(0, 1).getContent());
+        assertEquals("", recovered.formulaAt(4, 4).getContent());
+    }
+
+    /**
+     * Wait for the snapshot being written in the background to finish.
+     */
+    private static void waitForCompaction(SheetJournal journal) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (journal.isCompacting() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package sheep.parsing;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.basic.Constant;
+
+import static org.junit.Assert.*;
+
+public class CachingParserTest {
+    public static final int testWeight = 5;
+
+    private RecordingFactory factory;
+    private CachingParser parser;
+
+    @Before
+    public void setUp() {
+        factory = new RecordingFactory();
+        parser = new CachingParser(new PrattParser(factory), 2);
+    }
+
+    @Test
+    public void testRepeatedInputSkipsParsing() throws ParseException {
+        Expression first = parser.parse("1 + 2");
+        Expression second = parser.parse("1 + 2");
+        assertSame(first, second);
+        assertEquals(3, factory.calls.size());
+        assertEquals(1, parser.getHits());
+        assertEquals(1, parser.getMisses());
+    }
+
+    @Test
+    public void testWhitespaceNormalised() throws ParseException {
+        Expression first = parser.parse("  A1");
+        assertSame(first, parser.parse("A1   "));
+        assertEquals(1, parser.getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws ParseException {
+        parser.parse("A");
+        parser.parse("B");
+        parser.parse("A");
+        parser.parse("C");
+        assertEquals(2, parser.size());
+        parser.parse("A");
+        assertEquals(2, parser.getHits());
+        parser.parse("B");
+        assertEquals(4, parser.getMisses());
+    }
+
+    @Test
+    public void testFailuresNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                parser.parse("what?");
+                fail("Expected a parse exception");
+            } catch (ParseException expected) {
+                // expected
+            }
+        }
+        assertEquals(0, parser.size());
+        assertEquals(2, parser.getMisses());
+    }
+
+    @Test
+    public void testClear() throws ParseException {
+        CachingParser core = new CachingParser(new SimpleParser(new CoreFactory()));
+        assertEquals(new Constant(5), core.parse("5"));
+        core.clear();
+        assertEquals(new Constant(5), core.parse("5"));
+        assertEquals(0, core.getHits());
+        assertEquals(2, core.getMisses());
+    }
+}
@@ -0,0 +1,160 @@
+package sheep.parsing;
+
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.InvalidExpression;
+import sheep.expression.basic.Constant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records every call made to the factory, in order.
+ */
+class RecordingFactory extends EchoFactory {
+    final List<String> calls = new ArrayList<>();
+
+    @Override
+    public Expression createReference(String identifier) {
+        calls.add("reference " + identifier);
+        return super.createReference(identifier);
+    }
+
+    @Override
+    public Expression createConstant(long value) {
+        calls.add("constant " + value);
+        return super.createConstant(value);
+    }
+
+    @Override
+    public Expression createEmpty() {
+        calls.add("empty");
+        return super.createEmpty();
+    }
+
+    @Override
+    public Expression createOperator(String name, Object[] args) throws InvalidExpression {
+        calls.add("operator " + name + " " + args.length);
+        return super.createOperator(name, args);
+    }
+}
+
+public class PrattParserTest {
+    public static final int testWeight = 10;
+
+    /**
+     * Parse the input with both parsers and return a trace of the factory calls
+     * and the result, or the failure, of each parser.
+     */
+    private static List<String> trace(String input, boolean pratt) {
+        RecordingFactory factory = new RecordingFactory();
+        Parser parser = pratt ? new PrattParser(factory) : new SimpleParser(factory);
+        try {
+            factory.calls.add("result " + parser.parse(input));
+        } catch (ParseException e) {
+            factory.calls.add("failure " + e.getMessage());
+        }
+        return factory.calls;
+    }
+
+    private static void assertSameAsSimple(String input) {
+        assertEquals("Parsing '" + input + "'", trace(input, false), trace(input, true));
+    }
+
+    @Test
+    public void testBasic() {
+        for (String input : List.of("", "   ", "42", "  42  ", "HEY ", "A1", "hello + world",
+                "4 + 5 + 7 * 12 + 3", "1 = 2 < 3 + 4 - 5 * 6 / 7", "what?", "1 + what?")) {
+            assertSameAsSimple(input);
+        }
+    }
+
+    @Test
+    public void testSignedNumbers() {
+        for (String input : List.of("-5", "+5", " -5 ", "- 5", "-5 + 3", "3 + -5", "3 - -5",
+                "2 * -3", "2 -+ 3", "+-3", "-", "--5", "-a", "-9223372036854775808",
+                "9223372036854775807", "9223372036854775808", "-9223372036854775809")) {
+            assertSameAsSimple(input);
+        }
+    }
+
+    @Test
+    public void testEmptyOperands() {
+        for (String input : List.of("+", "++", "+ +", "1+", "1+ ", "+1", "1++2", "1++",
+                "1 + * 2", "1 * + 2", "1 * * + 2", "= <", "*-", "-*", "1*-", "1 - * - 2")) {
+            assertSameAsSimple(input);
+        }
+    }
+
+    @Test
+    public void testRandomInputs() {
+        String alphabet = "019a  +-*/<=?";
+        Random random = new Random(2002);
+        for (int i = 0; i < 20000; i++) {
+            char[] input = new char[random.nextInt(12)];
+            for (int j = 0; j < input.length; j++) {
+                input[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            assertSameAsSimple(new String(input));
+        }
+    }
+
+    @Test
+    public void testCharSequence() throws ParseException {
+        PrattParser parser = new PrattParser(new CoreFactory());
+        StringBuilder input = new StringBuilder("  12 ");
+        assertEquals(new Constant(12), parser.parse(input));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidOperator() throws ParseException {
+        new PrattParser(new CoreFactory()).parse("+");
+    }
+
+    @Test
+    public void testLongInput() throws ParseException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            input.append(i).append(" +");
+        }
+        input.append("+++  ");
+        RecordingFactory factory = new RecordingFactory();
+        new PrattParser(factory).parse(input);
+        assertEquals("operator + 100000", factory.calls.get(factory.calls.size() - 1));
+        assertEquals(Arrays.asList("constant 0", "constant 1"), factory.calls.subList(0, 2));
+    }
+    @Test
+    public void testFunctionCalls() throws ParseException {
+        PrattParser parser = new PrattParser(new CoreFactory());
+        assertEquals("MAX(A1, 4 * 2) + 1", parser.parse(" MAX(A1, 4 * 2) + 1 ").render());
+        assertEquals("SUM(1, MIN(2, 3), CLAMP(A0 - 1, 0, 10))",
+                parser.parse("SUM(1,MIN(2, 3), CLAMP(A0 - 1, 0, 10))").render());
+        assertEquals("SUM()", parser.parse("SUM()").render());
+        assertEquals(Set.of("A0", "B2"), parser.parse("ABS(A0) * MAX(B2, 3)").dependencies());
+
+        RecordingFactory factory = new RecordingFactory();
+        new PrattParser(factory).parse("F(1, G(x))");
+        assertEquals(List.of("constant 1", "reference x", "operator G 1", "operator F 2"),
+                factory.calls);
+    }
+
+    @Test
+    public void testInvalidFunctionCalls() {
+        PrattParser parser = new PrattParser(new CoreFactory());
+        for (String input : List.of("MAX(1", "MAX)1(", "MAX(1,)", "MAX(, 1)", "NOPE(1)",
+                "ABS(1, 2)", "(1)", "1A(2)", "MAX(1)(2)", "MA X(1)", "MAX(1) 2")) {
+            try {
+                parser.parse(input);
+                fail("Parsing '" + input + "' should fail");
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+}
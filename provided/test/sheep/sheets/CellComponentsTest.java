@@ -0,0 +1,112 @@
+package sheep.sheets;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import sheep.expression.CoreFactory;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Reference;
+import sheep.parsing.SimpleParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.*;
+
+public class CellComponentsTest {
+    @Rule
+    public Timeout timeout = new Timeout(60000);
+
+    private CellComponents components;
+
+    @Before
+    public void setUp() {
+        components = new CellComponents();
+    }
+
+    @Test
+    public void testSingleton() {
+        CellLocation location = new CellLocation(2, 3);
+        assertEquals(location, components.find(location));
+    }
+
+    @Test
+    public void testMerge() {
+        CellLocation a0 = new CellLocation(0, 0);
+        CellLocation b1 = new CellLocation(1, 1);
+        CellLocation c2 = new CellLocation(2, 2);
+        components.unlock(components.lockAndMerge(List.of(a0, b1)));
+        assertEquals(components.find(a0), components.find(b1));
+        assertNotEquals(components.find(a0), components.find(c2));
+
+        components.unlock(components.lockAndMerge(List.of(c2, b1)));
+        assertEquals(components.find(a0), components.find(c2));
+    }
+
+    @Test
+    public void testLocksReleased() {
+        CellLocation a0 = new CellLocation(0, 0);
+        CellLocation b1 = new CellLocation(1, 1);
+        List<ReentrantLock> locks = components.lockAndMerge(List.of(a0, b1));
+        for (ReentrantLock lock : locks) {
+            assertTrue(lock.isHeldByCurrentThread());
+        }
+        components.unlock(locks);
+        for (ReentrantLock lock : locks) {
+            assertFalse(lock.isLocked());
+        }
+    }
+
+    @Test
+    public void testClear() {
+        CellLocation a0 = new CellLocation(0, 0);
+        CellLocation b1 = new CellLocation(1, 1);
+        components.unlock(components.lockAndMerge(List.of(a0, b1)));
+        components.clear();
+        assertNotEquals(components.find(a0), components.find(b1));
+    }
+
+    /**
+     * Writers on disjoint columns should be able to update concurrently
+     * and produce the same sheet as sequential writers.
+     */
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(50, 8);
+        List<Thread> writers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int column = 0; column < sheet.getColumns(); column++) {
+            final int col = column;
+            char name = (char) ('A' + column);
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int row = 1; row < sheet.getRows(); row++) {
+                        sheet.update(new CellLocation(row, col),
+                                new Reference(name + String.valueOf(row - 1)));
+                    }
+                    for (int value = 0; value < 20; value++) {
+                        sheet.update(new CellLocation(0, col), new Constant(value));
+                    }
+                } catch (TypeError | RuntimeException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+        for (int column = 0; column < sheet.getColumns(); column++) {
+            assertEquals("19", sheet.valueAt(sheet.getRows() - 1, column).getContent());
+        }
+    }
+}
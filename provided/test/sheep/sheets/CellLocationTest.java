@@ -289,4 +289,11 @@ public class CellLocationTest {
         assertEquals("F10", cell.toString());
     }
 
+
+    @Test
+    public void testCompareRowMajor() {
+        assertTrue(new CellLocation(0, 5).compareTo(new CellLocation(1, 0)) < 0);
+        assertTrue(new CellLocation(2, 1).compareTo(new CellLocation(2, 0)) > 0);
+        assertEquals(0, new CellLocation(3, 'C').compareTo(new CellLocation(3, 2)));
+    }
 }
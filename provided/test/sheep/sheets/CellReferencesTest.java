@@ -0,0 +1,132 @@
+package sheep.sheets;
+
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.parsing.SimpleParser;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class CellReferencesTest {
+    public static final int testWeight = 4;
+
+    /**
+     * Assert that single letter references parse to their row and column.
+     */
+    @Test
+    public void testParseSingleLetter() {
+        long reference = CellReferences.parse("F12");
+        assertEquals(12, CellReferences.row(reference));
+        assertEquals(5, CellReferences.column(reference));
+        assertEquals(0, CellReferences.parse("A0"));
+    }
+
+    /**
+     * Assert that references with several letters parse to their row and column.
+     */
+    @Test
+    public void testParseMultipleLetters() {
+        long reference = CellReferences.parse("AA3");
+        assertEquals(3, CellReferences.row(reference));
+        assertEquals(26, CellReferences.column(reference));
+        assertEquals(27, CellReferences.column(CellReferences.parse("AB0")));
+        assertEquals(701, CellReferences.column(CellReferences.parse("ZZ0")));
+        assertEquals(702, CellReferences.column(CellReferences.parse("AAA0")));
+        assertEquals(CellReferences.MAX_COLUMNS - 1,
+                CellReferences.column(CellReferences.parse("XFD1")));
+    }
+
+    /**
+     * Assert that text which is not a reference parses to NONE.
+     */
+    @Test
+    public void testParseInvalid() {
+        for (String text : new String[]{"", " ", "A", "14", "12F", "A 2", " A2", "A2 ",
+                "a2", "A-1", "XFE1", "AAAA1", "A999999999999"}) {
+            assertEquals(text, CellReferences.NONE, CellReferences.parse(text));
+        }
+    }
+
+    /**
+     * Assert that any int row can be named, and larger rows parse to NONE.
+     */
+    @Test
+    public void testParseLargeRows() {
+        long reference = CellReferences.parse("XFD131072");
+        assertEquals(131072, CellReferences.row(reference));
+        assertEquals(CellReferences.MAX_COLUMNS - 1, CellReferences.column(reference));
+        reference = CellReferences.parse("B2147483647");
+        assertEquals(Integer.MAX_VALUE, CellReferences.row(reference));
+        assertEquals(1, CellReferences.column(reference));
+        assertEquals("B2147483647", CellReferences.format(reference));
+        assertEquals(CellReferences.NONE, CellReferences.parse("B2147483648"));
+    }
+
+    /**
+     * Assert that cells beyond the rows of smaller sheets can be referred to in formulas.
+     */
+    @Test
+    public void testLargeSheet() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(200000, 1);
+        assertTrue(sheet.update(150000, 0, "5").isSuccess());
+        assertTrue(sheet.update(0, 0, "A150000 + 1").isSuccess());
+        assertEquals("6", sheet.valueAt(0, 0).getContent());
+        sheet.update(150000, 0, "7");
+        assertEquals("8", sheet.valueAt(0, 0).getContent());
+    }
+
+    /**
+     * Assert that a range within text can be parsed.
+     */
+    @Test
+    public void testParseRange() {
+        long reference = CellReferences.parse("=B7+C1", 1, 3);
+        assertEquals(7, CellReferences.row(reference));
+        assertEquals(1, CellReferences.column(reference));
+    }
+
+    /**
+     * Assert that columns are named A to Z, then AA onwards.
+     */
+    @Test
+    public void testColumnName() {
+        assertEquals("A", CellReferences.columnName(0));
+        assertEquals("Z", CellReferences.columnName(25));
+        assertEquals("AA", CellReferences.columnName(26));
+        assertEquals("AZ", CellReferences.columnName(51));
+        assertEquals("BA", CellReferences.columnName(52));
+        assertEquals("ZZ", CellReferences.columnName(701));
+        assertEquals("AAA", CellReferences.columnName(702));
+        assertEquals("XFD", CellReferences.columnName(CellReferences.MAX_COLUMNS - 1));
+    }
+
+    /**
+     * Assert that every column round trips through formatting and parsing.
+     */
+    @Test
+    public void testRoundTrip() {
+        char[] buffer = new char[16];
+        for (int column = 0; column < CellReferences.MAX_COLUMNS; column++) {
+            int row = column * 7;
+            int end = CellReferences.format(row, column, buffer, 2);
+            long reference = CellReferences.parse(new String(buffer), 2, end);
+            assertEquals(row, CellReferences.row(reference));
+            assertEquals(column, CellReferences.column(reference));
+            assertEquals(reference, CellReferences.pack(row, column));
+            assertEquals(new String(buffer, 2, end - 2), CellReferences.format(reference));
+        }
+    }
+
+    /**
+     * Assert that cell locations use multi-letter column names.
+     */
+    @Test
+    public void testCellLocation() {
+        assertEquals("AB4", new CellLocation(4, 27).toString());
+        assertEquals(Optional.of(new CellLocation(4, 27)), CellLocation.maybeReference("AB4"));
+        assertEquals(Optional.empty(), CellLocation.maybeReference("AB"));
+    }
+}
@@ -6,11 +6,17 @@ import org.junit.Test;
 import org.junit.rules.Timeout;
 import sheep.core.UpdateResponse;
 import sheep.core.ViewElement;
+import sheep.expression.CoreFactory;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
 import sheep.expression.basic.Reference;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
+import sheep.parsing.PrattParser;
+import sheep.parsing.SimpleParser;
 
 import java.util.*;
 import java.util.function.Function;
@@ -506,4 +512,619 @@ public class SheetTest {
                 )),
                 base.usedBy(new CellLocation(4, 0)));
     }
+
+    /**
+     * Inserts a comparison at B0 which depends on A0, and a counting formula at C0
+     * which depends on B0.
+     * Asserts that changing A0 without changing the value of B0 does not re-evaluate C0.
+     */
+    @Test
+    public void testEarlyCutoff() throws TypeError {
+        int[] evaluations = {0};
+        base.update(new CellLocation(0, 0), new Constant(1));
+        base.update(new CellLocation(0, 1), Arithmetic.less(
+                new Expression[]{new Reference("A0"), new Constant(10)}));
+        base.update(new CellLocation(0, 2), new FormulaExpr("Counter") {
+            @Override
+            public Set<String> dependencies() {
+                return Set.of("B0");
+            }
+
+            @Override
+            public Expression value(Map<String, Expression> state) {
+                evaluations[0]++;
+                return state.get("B0");
+            }
+        });
+        assertEquals(1, evaluations[0]);
+
+        base.update(new CellLocation(0, 0), new Constant(2));
+        assertEquals("1", base.valueAt(0, 1).getContent());
+        assertEquals(1, evaluations[0]);
+
+        base.update(new CellLocation(0, 0), new Constant(20));
+        assertEquals("0", base.valueAt(0, 1).getContent());
+        assertEquals(2, evaluations[0]);
+        assertEquals("0", base.valueAt(0, 2).getContent());
+    }
+
+    /**
+     * Asserts that writing formulas without dependencies into a cell which no other cell uses
+     * only evaluates the formula against the builtins, and gives the same formulas, values and
+     * occupied cells as writing them into a cell which is used, where the usages are recalculated.
+     */
+    @Test
+    public void testLeafFastPath() throws TypeError {
+        CoreFactory factory = new CoreFactory();
+        Parser parser = new SimpleParser(factory);
+        Sheet leaf = new SheetBuilder(parser, factory.createEmpty()).empty(2, 2);
+        Sheet used = new SheetBuilder(parser, factory.createEmpty()).empty(2, 2);
+        used.update(1, 1, "A0");
+
+        List<Map<String, Expression>> states = new ArrayList<>();
+        Expression recording = new FormulaExpr("Recording") {
+            @Override
+            public Expression value(Map<String, Expression> state) {
+                states.add(state);
+                return new Constant(3);
+            }
+        };
+        leaf.update(new CellLocation(0, 0), recording);
+        assertEquals(1, states.size());
+        assertFalse(states.get(0).containsKey("B1"));
+        used.update(new CellLocation(0, 0), recording);
+        assertTrue(states.get(states.size() - 1).containsKey("B1"));
+
+        for (String input : new String[]{"1", "2 + 3", "", "-4", "", "", "7"}) {
+            assertTrue(leaf.update(0, 0, input).isSuccess());
+            assertTrue(used.update(0, 0, input).isSuccess());
+            assertEquals(input, used.formulaAt(0, 0).getContent(),
+                    leaf.formulaAt(0, 0).getContent());
+            assertEquals(input, used.valueAt(0, 0).getContent(), leaf.valueAt(0, 0).getContent());
+            List<CellLocation> occupied = new ArrayList<>();
+            leaf.forEachOccupied((row, column) -> occupied.add(new CellLocation(row, column)));
+            assertEquals(input, input.isEmpty() ? List.of() : List.of(new CellLocation(0, 0)),
+                    occupied);
+        }
+        assertEquals("7", used.valueAt(1, 1).getContent());
+    }
+
+    /**
+     * Asserts that a function call typed into a cell is evaluated with the functions
+     * of the factory, and recalculated when a cell it refers to changes.
+     */
+    @Test
+    public void testFunctionCall() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new PrattParser(factory), factory.createEmpty()).empty(2, 2);
+        assertTrue(sheet.update(0, 0, "4").isSuccess());
+        assertTrue(sheet.update(1, 1, "MAX(A0, 10) + ABS(-3)").isSuccess());
+        assertEquals("MAX(A0, 10) + ABS(-3)", sheet.formulaAt(1, 1).getContent());
+        assertEquals("13", sheet.valueAt(1, 1).getContent());
+        assertTrue(sheet.update(0, 0, "SUM(20, 2 * 3)").isSuccess());
+        assertEquals("26", sheet.valueAt(0, 0).getContent());
+        assertEquals("29", sheet.valueAt(1, 1).getContent());
+        assertFalse(sheet.update(0, 1, "NOPE(1)").isSuccess());
+    }
+
+    /**
+     * Asserts that rendering a range of values matches the content of valueAt for each cell.
+     */
+    @Test
+    public void testRenderValues() throws TypeError {
+        base.update(new CellLocation(1, 1), new FormulaExpr("Middle"));
+        base.update(new CellLocation(2, 2), new RefExpr("B1"));
+        String[] contents = new String[4];
+        base.renderValues(1, 1, 2, 2, contents);
+        assertEquals("Value(Middle)", contents[0]);
+        assertEquals("Formula(Default)", contents[1]);
+        assertEquals("Formula(Default)", contents[2]);
+        assertEquals("Value(Middle)", contents[3]);
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < 2; column++) {
+                assertEquals(base.valueAt(row + 1, column + 1).getContent(), contents[row * 2 + column]);
+            }
+        }
+    }
+
+    /**
+     * Asserts that reading the numbers and kinds of a range identifies numeric cells.
+     */
+    @Test
+    public void testReadNumbersAndKinds() throws TypeError {
+        Sheet sheet = new Sheet(new EchoParser(), new HashMap<>(), new Nothing(), 2, 2);
+        sheet.update(new CellLocation(0, 1), new Constant(42));
+        sheet.update(new CellLocation(1, 0), new Reference("unknown"));
+        long[] numbers = new long[4];
+        ValueKind[] kinds = new ValueKind[4];
+        sheet.readNumbers(0, 0, 2, 2, numbers);
+        sheet.readKinds(0, 0, 2, 2, kinds);
+        assertArrayEquals(new ValueKind[]{ValueKind.EMPTY, ValueKind.NUMBER,
+                ValueKind.OTHER, ValueKind.EMPTY}, kinds);
+        assertEquals(42, numbers[1]);
+        assertEquals(0, numbers[2]);
+    }
+
+    /**
+     * Asserts that only cells without the default formula are visited, in row-major order.
+     */
+    @Test
+    public void testForEachOccupied() throws TypeError {
+        base.update(new CellLocation(3, 0), new FormulaExpr("Later"));
+        base.update(new CellLocation(0, 2), new FormulaExpr("First"));
+        base.update(new CellLocation(1, 1), new FormulaExpr("Removed"));
+        base.update(new CellLocation(1, 1), new FormulaExpr("Default"));
+        List<CellLocation> visited = new ArrayList<>();
+        base.forEachOccupied((row, column) -> visited.add(new CellLocation(row, column)));
+        assertEquals(List.of(new CellLocation(0, 2), new CellLocation(3, 0)), visited);
+
+        base.clear();
+        visited.clear();
+        base.forEachOccupied((row, column) -> visited.add(new CellLocation(row, column)));
+        assertTrue(visited.isEmpty());
+    }
+
+    /**
+     * Asserts that loading a sheet matches updating each cell in dependency order,
+     * and that only formulas other than numbers and blanks are parsed.
+     */
+    @Test
+    public void testLoad() throws TypeError {
+        CoreFactory factory = new CoreFactory();
+        List<String> parsed = new ArrayList<>();
+        Parser simple = new SimpleParser(factory);
+        Parser counting = input -> {
+            parsed.add(input);
+            return simple.parse(input);
+        };
+        String[][] sources = {
+                {"1", " A2 + B1", "", "-7"},
+                {"2", "A0 * A1", "oops?", " "},
+                {"B1 + 1", "C0 + 1", "A2 / B2", "+5"},
+        };
+        Sheet loaded = new SheetBuilder(counting, factory.createEmpty()).empty(3, 4);
+        loaded.update(new CellLocation(0, 3), new Reference("A0"));
+        loaded.load(sources);
+        Sheet expected = new SheetBuilder(simple, factory.createEmpty()).empty(3, 4);
+        // a second pass updates cells which referred to cells that were loaded later
+        for (int pass = 0; pass < 2; pass++) {
+            for (int row = 0; row < sources.length; row++) {
+                for (int column = 0; column < sources[row].length; column++) {
+                    expected.update(row, column, sources[row][column]);
+                }
+            }
+        }
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 4; column++) {
+                CellLocation location = new CellLocation(row, column);
+                assertEquals(location.toString(), expected.formulaAt(location).toString(),
+                        loaded.formulaAt(location).toString());
+                assertEquals(location.toString(), expected.valueAt(location).render(),
+                        loaded.valueAt(location).render());
+                assertEquals(expected.valueAt(row, column).getContent(),
+                        loaded.valueAt(row, column).getContent());
+            }
+        }
+        assertEquals(new Constant(-7), loaded.valueAt(new CellLocation(0, 3)));
+        // one blank, six formulas and the numbers materialized above
+        assertEquals(" A2 + B1", parsed.get(0));
+        assertEquals(6, parsed.stream().filter(input -> !input.isBlank()
+                && !input.strip().matches("[+-]?[0-9]+")).count());
+        assertEquals(1, parsed.stream().filter(String::isBlank).count());
+
+        // dependants of loaded cells are updated
+        loaded.update(0, 0, "10");
+        assertEquals("21", loaded.valueAt(2, 0).getContent());
+    }
+
+    /**
+     * Asserts that updates producing error values commit and propagate to dependants.
+     */
+    @Test
+    public void testErrorValues() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 2);
+        assertTrue(sheet.update(0, 0, "1 / 0").isSuccess());
+        assertTrue(sheet.update(0, 1, "A0 + 1").isSuccess());
+        assertTrue(sheet.update(1, 0, "B1 + 1").isSuccess());
+        assertEquals("#DIV0", sheet.valueAt(0, 0).getContent());
+        assertEquals("#DIV0", sheet.valueAt(0, 1).getContent());
+        assertEquals("#TYPE", sheet.valueAt(1, 0).getContent());
+        ValueKind[] kinds = new ValueKind[4];
+        sheet.readKinds(0, 0, 2, 2, kinds);
+        assertEquals(ValueKind.ERROR, kinds[0]);
+
+        assertTrue(sheet.update(0, 0, "4 / 2").isSuccess());
+        assertEquals("3", sheet.valueAt(0, 1).getContent());
+    }
+
+    /**
+     * Asserts that a long chain of references is recalculated without overflowing the stack.
+     */
+    @Test
+    public void testDeepChain() {
+        CoreFactory factory = new CoreFactory();
+        int rows = 20000;
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty())
+                .empty(rows, 1);
+        String[][] sources = new String[rows][1];
+        sources[0][0] = "1";
+        for (int row = 1; row < rows; row++) {
+            sources[row][0] = "A" + (row - 1) + " + 1";
+        }
+        sheet.load(sources);
+        assertEquals(String.valueOf(rows), sheet.valueAt(rows - 1, 0).getContent());
+
+        assertTrue(sheet.update(0, 0, "2").isSuccess());
+        assertEquals(String.valueOf(rows + 1), sheet.valueAt(rows - 1, 0).getContent());
+        assertEquals(rows - 1, sheet.usedBy(new CellLocation(0, 0)).size());
+    }
+
+    /**
+     * Asserts that reference loops converge when iterative calculation is enabled.
+     */
+    @Test
+    public void testIterativeCalculation() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(3, 3);
+        sheet.setMaxIterations(100);
+        sheet.update(0, 1, "0");
+        sheet.update(0, 0, "B0 / 2 + 10");
+        sheet.update(0, 2, "A0 * 2");
+        assertTrue(sheet.update(0, 1, "A0").isSuccess());
+        // x = x / 2 + 10 converges to 19 with integer division
+        assertEquals("19", sheet.valueAt(0, 0).getContent());
+        assertEquals("19", sheet.valueAt(0, 1).getContent());
+        assertEquals("38", sheet.valueAt(0, 2).getContent());
+
+        // a loop that never converges stops at the iteration cap
+        sheet.setMaxIterations(5);
+        sheet.update(1, 1, "0");
+        sheet.update(1, 0, "B1 + 1");
+        assertTrue(sheet.update(1, 1, "A1").isSuccess());
+        assertEquals("6", sheet.valueAt(1, 0).getContent());
+        assertEquals("6", sheet.valueAt(1, 1).getContent());
+    }
+
+    /**
+     * Asserts that reference loops terminate when iterative calculation is disabled.
+     */
+    @Test
+    public void testLoopWithoutIterativeCalculation() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 2);
+        sheet.update(0, 1, "0");
+        sheet.update(0, 0, "B0 + 1");
+        assertTrue(sheet.update(0, 1, "A0").isSuccess());
+        assertEquals(0, sheet.getMaxIterations());
+        sheet.load(new String[][]{{"B0 + 1", "A0"}});
+        assertEquals("A0", sheet.formulaAt(new CellLocation(0, 1)).render());
+    }
+
+    /**
+     * Asserts that loading reports the amount of cells which could not be parsed or evaluated,
+     * and the first of them in row-major order, leaving them with the default formula.
+     */
+    @Test
+    public void testLoadRejected() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(3, 3);
+        UpdateResponse response = sheet.load(new String[][]{
+                {"1", "A0 + 1", ""},
+                {"", "NOPE(1)", "x y"},
+                {"3.5", "", "B0 * 2"},
+        });
+        assertFalse(response.isSuccess());
+        assertEquals("3 cells could not be loaded, the first at B1", response.getMessage());
+        assertEquals("", sheet.formulaAt(new CellLocation(1, 1)).render());
+        assertEquals("", sheet.formulaAt(new CellLocation(2, 0)).render());
+        assertEquals("4", sheet.valueAt(2, 2).getContent());
+
+        assertTrue(sheet.load(new String[][]{{"1", "A0 + 1"}}).isSuccess());
+    }
+
+    /**
+     * Asserts that updates in manual calculation mode are deferred until recalculation.
+     */
+    @Test
+    public void testManualCalculation() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(3, 3);
+        sheet.update(0, 0, "1");
+        sheet.update(0, 1, "A0 + 1");
+        sheet.update(0, 2, "B0 * 2");
+        sheet.setManualCalculation(true);
+        assertTrue(sheet.isManualCalculation());
+
+        assertTrue(sheet.update(0, 0, "5").isSuccess());
+        assertTrue(sheet.update(1, 0, "A0 + B0").isSuccess());
+        assertEquals("5", sheet.formulaAt(0, 0).getContent());
+        assertEquals("1", sheet.valueAt(0, 0).getContent());
+        assertEquals("4", sheet.valueAt(0, 2).getContent());
+        assertEquals("gray", sheet.valueAt(0, 2).getForeground());
+        assertTrue(sheet.isStale(new CellLocation(0, 2)));
+        assertTrue(sheet.isStale(new CellLocation(1, 0)));
+        assertFalse(sheet.isStale(new CellLocation(2, 2)));
+        assertEquals("black", sheet.valueAt(2, 2).getForeground());
+
+        sheet.recalculate();
+        assertEquals("5", sheet.valueAt(0, 0).getContent());
+        assertEquals("6", sheet.valueAt(0, 1).getContent());
+        assertEquals("12", sheet.valueAt(0, 2).getContent());
+        assertEquals("11", sheet.valueAt(1, 0).getContent());
+        assertEquals("black", sheet.valueAt(0, 2).getForeground());
+        assertFalse(sheet.isStale(new CellLocation(0, 2)));
+
+        // switching back to automatic calculation brings the sheet up to date
+        sheet.update(0, 0, "2");
+        sheet.setManualCalculation(false);
+        assertEquals("6", sheet.valueAt(0, 2).getContent());
+        sheet.update(0, 0, "3");
+        assertEquals("8", sheet.valueAt(0, 2).getContent());
+    }
+
+    /**
+     * Asserts that a game sheet colours the background by value and keeps the
+     * foreground of stale values.
+     */
+    @Test
+    public void testGameSheetStale() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new GameSheet(new SimpleParser(factory), new HashMap<>(),
+                factory.createEmpty(), 2, 2);
+        sheet.update(0, 0, "1");
+        sheet.update(0, 1, "A0 + 1");
+        assertEquals("red", sheet.valueAt(0, 1).getBackground());
+        assertEquals("black", sheet.valueAt(0, 1).getForeground());
+
+        sheet.setManualCalculation(true);
+        sheet.update(0, 0, "4");
+        assertEquals("2", sheet.valueAt(0, 1).getContent());
+        assertEquals("red", sheet.valueAt(0, 1).getBackground());
+        assertEquals("gray", sheet.valueAt(0, 1).getForeground());
+
+        sheet.recalculate();
+        assertEquals("blue", sheet.valueAt(0, 1).getBackground());
+        assertEquals("black", sheet.valueAt(0, 1).getForeground());
+    }
+
+    /**
+     * Asserts that the modification count increases with every change to the formulas
+     * of the sheet, but not when the sheet is only read.
+     */
+    @Test
+    public void testModificationCount() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(3, 3);
+        long count = sheet.getModificationCount();
+        sheet.update(0, 0, "1");
+        assertTrue(sheet.getModificationCount() > count);
+        count = sheet.getModificationCount();
+        sheet.update(1, 1, "A0 + 1");
+        assertTrue(sheet.getModificationCount() > count);
+        count = sheet.getModificationCount();
+        sheet.valueAt(1, 1);
+        sheet.formulaAt(1, 1);
+        sheet.snapshot();
+        assertEquals(count, sheet.getModificationCount());
+        assertFalse(sheet.update(2, 2, "what?").isSuccess());
+        assertEquals(count, sheet.getModificationCount());
+        sheet.load(new String[][]{{"4"}});
+        assertTrue(sheet.getModificationCount() > count);
+        count = sheet.getModificationCount();
+        sheet.clear();
+        assertTrue(sheet.getModificationCount() > count);
+    }
+
+    /**
+     * Asserts that a snapshot holds the formulas, values and occupied cells of the sheet
+     * when it was taken, and is unaffected by later changes to the sheet.
+     */
+    @Test
+    public void testSnapshot() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(3, 3);
+        sheet.update(0, 0, "2");
+        sheet.update(2, 1, "A0 * 5");
+        SheetSnapshot snapshot = sheet.snapshot();
+
+        sheet.update(0, 0, "3");
+        sheet.update(1, 2, "7");
+        sheet.update(2, 1, "");
+        assertEquals(3, snapshot.getRows());
+        assertEquals(3, snapshot.getColumns());
+        assertEquals("2", snapshot.formulaAt(0, 0).getContent());
+        assertEquals("A0 * 5", snapshot.formulaAt(2, 1).getContent());
+        assertEquals("10", snapshot.valueAt(2, 1).getContent());
+        assertEquals("", snapshot.formulaAt(1, 2).getContent());
+        assertEquals("", snapshot.valueAt(1, 2).getContent());
+        List<CellLocation> occupied = new ArrayList<>();
+        snapshot.forEachOccupied((row, column) -> occupied.add(new CellLocation(row, column)));
+        assertEquals(List.of(new CellLocation(0, 0), new CellLocation(2, 1)), occupied);
+
+        assertEquals("3", sheet.valueAt(0, 0).getContent());
+        assertEquals("", sheet.formulaAt(2, 1).getContent());
+        assertEquals("7", sheet.snapshot().valueAt(1, 2).getContent());
+    }
+
+    /**
+     * Asserts that sheets may have more than 26 columns, referred to by multi-letter names.
+     */
+    @Test
+    public void testWideSheet() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 60);
+        sheet.update(0, 26, "3");
+        assertTrue(sheet.update(1, 59, "AA0 * 2").isSuccess());
+        assertTrue(sheet.update(0, 0, "BH1 + AA0").isSuccess());
+        assertEquals("9", sheet.valueAt(0, 0).getContent());
+        sheet.update(0, 26, "4");
+        assertEquals("8", sheet.valueAt(1, 59).getContent());
+        assertEquals("12", sheet.valueAt(0, 0).getContent());
+    }
+
+    /**
+     * Asserts that incremental calculation evaluates the updated cell straight away
+     * and brings the cells using it up to date in bounded steps.
+     */
+    @Test
+    public void testIncrementalCalculation() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(5, 1);
+        sheet.update(0, 0, "1");
+        for (int row = 1; row < 5; row++) {
+            sheet.update(row, 0, "A" + (row - 1) + " + 1");
+        }
+        sheet.setIncrementalCalculation(true);
+        assertTrue(sheet.isIncrementalCalculation());
+
+        assertTrue(sheet.update(0, 0, "10").isSuccess());
+        assertEquals("10", sheet.valueAt(0, 0).getContent());
+        assertEquals("2", sheet.valueAt(1, 0).getContent());
+        assertTrue(sheet.isCalculating());
+        assertFalse(sheet.isCalculating(0, 0));
+        assertTrue(sheet.isCalculating(4, 0));
+
+        // a budget of zero calculates a single cell per call
+        assertTrue(sheet.calculate(0));
+        assertEquals("11", sheet.valueAt(1, 0).getContent());
+        assertTrue(sheet.isCalculating(2, 0));
+
+        // an update of a stale cell's dependency re-plans the remaining calculation
+        assertTrue(sheet.update(1, 0, "A0 * 2").isSuccess());
+        assertEquals("20", sheet.valueAt(1, 0).getContent());
+        int calls = 0;
+        while (sheet.calculate(0)) {
+            calls++;
+        }
+        assertEquals(2, calls);
+        assertFalse(sheet.isCalculating());
+        assertEquals("23", sheet.valueAt(4, 0).getContent());
+
+        // a cell using a stale cell is deferred too
+        sheet.update(0, 0, "1");
+        assertTrue(sheet.update(0, 0, "2").isSuccess());
+        sheet.update(2, 0, "A1 + 100");
+        assertTrue(sheet.isCalculating(2, 0));
+        assertFalse(sheet.calculate(Long.MAX_VALUE));
+        assertEquals("104", sheet.valueAt(2, 0).getContent());
+        assertEquals("106", sheet.valueAt(4, 0).getContent());
+    }
+
+    /**
+     * Asserts that cells left stale by manual calculation are not calculated in time slices,
+     * only by recalculating the sheet.
+     */
+    @Test
+    public void testManualNotCalculatedIncrementally() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 2);
+        sheet.update(0, 0, "1");
+        sheet.update(0, 1, "A0 + 1");
+        sheet.setManualCalculation(true);
+
+        sheet.update(0, 0, "10");
+        assertTrue(sheet.isStale(new CellLocation(0, 1)));
+        assertFalse(sheet.isCalculating());
+        assertFalse(sheet.isCalculating(0, 1));
+        assertFalse(sheet.calculate(8_000_000));
+        assertEquals("2", sheet.valueAt(0, 1).getContent());
+
+        sheet.recalculate();
+        assertFalse(sheet.isStale(new CellLocation(0, 1)));
+        assertEquals("11", sheet.valueAt(0, 1).getContent());
+    }
+
+    /**
+     * Asserts that the cells using an update are evaluated from the values calculated
+     * by the update, with and without iterative calculation.
+     */
+    @Test
+    public void testUpdateState() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 3);
+        sheet.update(0, 0, "1");
+        sheet.update(0, 1, "A0 + 1");
+        sheet.update(0, 2, "B0 + A0");
+        sheet.update(1, 0, "C0 * 2");
+        assertEquals("6", sheet.valueAt(1, 0).getContent());
+
+        assertTrue(sheet.update(0, 0, "5").isSuccess());
+        assertEquals("6", sheet.valueAt(0, 1).getContent());
+        assertEquals("11", sheet.valueAt(0, 2).getContent());
+        assertEquals("22", sheet.valueAt(1, 0).getContent());
+
+        sheet.setMaxIterations(3);
+        assertTrue(sheet.update(0, 0, "2").isSuccess());
+        assertEquals("5", sheet.valueAt(0, 2).getContent());
+        assertEquals("10", sheet.valueAt(1, 0).getContent());
+    }
+
+    /**
+     * Asserts that updating a stale cell to depend upon a stale cell planned after it
+     * plans the calculation again, so the cell is calculated from the up to date value.
+     */
+    @Test
+    public void testIncrementalReplan() {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(4, 2);
+        sheet.update(0, 0, "1");
+        for (int row = 1; row < 4; row++) {
+            sheet.update(row, 0, "A" + (row - 1) + " + 1");
+        }
+        sheet.update(0, 1, "A1 + 1");
+        sheet.setIncrementalCalculation(true);
+
+        sheet.update(0, 0, "10");
+        // plans A1, then A2 and B0, then A3, and calculates A1
+        assertTrue(sheet.calculate(0));
+        assertTrue(sheet.isCalculating(0, 1));
+        assertTrue(sheet.isCalculating(3, 0));
+        assertTrue(sheet.update(0, 1, "A3 * 2").isSuccess());
+        while (sheet.calculate(0)) {
+            // calculate the remaining cells
+        }
+        assertEquals("13", sheet.valueAt(3, 0).getContent());
+        assertEquals("26", sheet.valueAt(0, 1).getContent());
+    }
+
+    /**
+     * Asserts that cells can be streamed into a resized sheet,
+     * and that the sheet is restored if the source fails part way through.
+     */
+    @Test
+    public void testStreamingLoad() throws Exception {
+        CoreFactory factory = new CoreFactory();
+        Sheet sheet = new SheetBuilder(new SimpleParser(factory), factory.createEmpty()).empty(2, 2);
+        sheet.update(0, 0, "5");
+        sheet.update(0, 1, "A0 * 2");
+
+        sheet.load(3, 1, sink -> {
+            sink.accept(0, 0, "A2 + 1");
+            sink.accept(2, 0, "7");
+            sink.accept(0, 1, "ignored");
+        });
+        assertEquals(3, sheet.getRows());
+        assertEquals(1, sheet.getColumns());
+        assertEquals("8", sheet.valueAt(0, 0).getContent());
+        assertEquals("", sheet.valueAt(1, 0).getContent());
+
+        sheet.update(2, 0, "9");
+        try {
+            sheet.load(4, 4, sink -> {
+                sink.accept(0, 0, "1");
+                throw new java.io.IOException("truncated");
+            });
+            fail("Exception from the source should be rethrown");
+        } catch (java.io.IOException e) {
+            assertEquals("truncated", e.getMessage());
+        }
+        assertEquals(3, sheet.getRows());
+        assertEquals(1, sheet.getColumns());
+        assertEquals("A2 + 1", sheet.formulaAt(0, 0).getContent());
+        assertEquals("10", sheet.valueAt(0, 0).getContent());
+        assertEquals("9", sheet.valueAt(2, 0).getContent());
+        sheet.update(2, 0, "1");
+        assertEquals("2", sheet.valueAt(0, 0).getContent());
+    }
 }